@@ -2,8 +2,10 @@ package com.banquito.paymentprocessor.procesatransaccion.banquito;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BanquitoApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,109 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Envuelve el cliente HTTP de Feign con un circuit breaker por servicio remoto
+ * (marca-service, fraude-service, banco-service), configurado en
+ * resilience4j.circuitbreaker.instances.
+ *
+ * Cada intento HTTP, incluidos los reintentos, se registra en el circuito: las fallas
+ * de E/S y las respuestas 5xx/429 cuentan como error, las respuestas lentas como
+ * llamadas lentas y los 4xx como éxito, porque el servicio sí respondió. Con el
+ * circuito abierto la llamada falla de inmediato con {@link CategoriaErrorCliente#CIRCUITO_ABIERTO}
+ * sin esperar el timeout, y el flujo de la transacción la trata como cualquier otro error.
+ */
+@Slf4j
+@Component
+@Order(0)
+@RequiredArgsConstructor
+public class CircuitoClientesCapability implements Capability {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @PostConstruct
+    void registrarTransiciones() {
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(this::registrarTransiciones);
+        circuitBreakerRegistry.getEventPublisher()
+                .onEntryAdded(evento -> registrarTransiciones(evento.getAddedEntry()));
+    }
+
+    private void registrarTransiciones(CircuitBreaker circuito) {
+        circuito.getEventPublisher().onStateTransition(evento ->
+                log.warn("Circuito de {}: {}", evento.getCircuitBreakerName(), evento.getStateTransition()));
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return new ClienteConCircuito(client);
+    }
+
+    private class ClienteConCircuito implements Client {
+
+        private final Client delegate;
+
+        private ClienteConCircuito(Client delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            String servicio = ClientErrorDecoder.nombreServicio(request);
+            CircuitBreaker circuito = circuitBreakerRegistry.circuitBreaker(servicio);
+
+            try {
+                circuito.acquirePermission();
+            } catch (CallNotPermittedException e) {
+                log.warn("Circuito {} abierto, la llamada a {} falla sin enviarse", circuito.getState(), servicio);
+                throw new ClienteRemotoException(servicio, CategoriaErrorCliente.CIRCUITO_ABIERTO, -1,
+                        "Circuito abierto para " + servicio + ", servicio no disponible temporalmente", e);
+            }
+
+            long inicio = System.nanoTime();
+            Response response;
+            try {
+                response = delegate.execute(request, options);
+            } catch (InterruptedIOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Cancelación local (validación ya decidida): no es una falla del servicio
+                    circuito.releasePermission();
+                } else {
+                    circuito.onError(System.nanoTime() - inicio, TimeUnit.NANOSECONDS, e);
+                }
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                circuito.onError(System.nanoTime() - inicio, TimeUnit.NANOSECONDS, e);
+                throw e;
+            }
+
+            long duracion = System.nanoTime() - inicio;
+            if (CategoriaErrorCliente.esFallaDelServicio(response.status())) {
+                circuito.onError(duracion, TimeUnit.NANOSECONDS, new ClienteRemotoException(servicio,
+                        CategoriaErrorCliente.desdeEstadoHttp(response.status()), response.status(),
+                        "Respuesta " + response.status() + " de " + servicio, null));
+            } else {
+                circuito.onSuccess(duracion, TimeUnit.NANOSECONDS);
+            }
+            return response;
+        }
+    }
+}
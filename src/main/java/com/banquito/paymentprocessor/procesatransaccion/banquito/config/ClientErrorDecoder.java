@@ -0,0 +1,66 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.util.Collection;
+
+import org.springframework.stereotype.Component;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+import feign.codec.ErrorDecoder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Convierte las respuestas de error de los servicios remotos en {@link ClienteRemotoException}.
+ * Los errores transitorios se envuelven en {@link RetryableException} para que
+ * {@link ClientRetryer} decida si se reintentan.
+ */
+@Slf4j
+@Component
+public class ClientErrorDecoder implements ErrorDecoder {
+
+    @Override
+    public Exception decode(String methodKey, Response response) {
+        String servicio = nombreServicio(response.request());
+        CategoriaErrorCliente categoria = CategoriaErrorCliente.desdeEstadoHttp(response.status());
+        FeignException original = FeignException.errorStatus(methodKey, response);
+        ClienteRemotoException error = new ClienteRemotoException(servicio, categoria, response.status(),
+                original.getMessage(), original);
+
+        log.debug("Error {} de {} clasificado como {}", response.status(), servicio, categoria);
+        if (!categoria.isReintentable()) {
+            return error;
+        }
+        return new RetryableException(response.status(), original.getMessage(),
+                response.request().httpMethod(), error, retryAfter(response), response.request());
+    }
+
+    /**
+     * Nombre del cliente Feign (marca-service, fraude-service, banco-service).
+     */
+    static String nombreServicio(Request request) {
+        if (request == null || request.requestTemplate() == null
+                || request.requestTemplate().feignTarget() == null) {
+            return "desconocido";
+        }
+        return request.requestTemplate().feignTarget().name();
+    }
+
+    private Long retryAfter(Response response) {
+        Collection<String> valores = response.headers().get("Retry-After");
+        if (valores == null || valores.isEmpty()) {
+            return null;
+        }
+        try {
+            long segundos = Long.parseLong(valores.iterator().next().trim());
+            return System.currentTimeMillis() + segundos * 1000;
+        } catch (NumberFormatException e) {
+            // Formato de fecha HTTP: se ignora y se aplica el backoff normal
+            return null;
+        }
+    }
+}
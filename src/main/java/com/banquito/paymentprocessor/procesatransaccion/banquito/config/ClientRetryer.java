@@ -0,0 +1,136 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.PlazoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+
+import feign.RetryableException;
+import feign.Retryer;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Política de reintentos de los clientes Feign. Feign llama a {@link #clone()} en cada
+ * invocación, por lo que el contador de intentos es propio de cada llamada mientras que
+ * el {@link PresupuestoReintentos} es compartido.
+ *
+ * - Solo se reintentan las categorías transitorias de {@link CategoriaErrorCliente}.
+ * - Los servicios no idempotentes (el core bancario, que debita y acredita) solo se
+ *   reintentan cuando la conexión falló y la solicitud nunca fue enviada.
+ * - La espera es exponencial con jitter completo; si el servicio envía Retry-After
+ *   se respeta mientras no supere la espera máxima.
+ * - No se reintenta si el plazo de la transacción vence antes de terminar la espera.
+ * - Al agotar los intentos o el presupuesto se lanza {@link ClienteRemotoException}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClientRetryer implements Retryer {
+
+    private final PresupuestoReintentos presupuesto;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.clientes.reintentos.intentos-maximos:3}")
+    private int intentosMaximos;
+
+    @Value("${app.clientes.reintentos.espera-inicial-ms:50}")
+    private long esperaInicialMs;
+
+    @Value("${app.clientes.reintentos.espera-maxima-ms:1000}")
+    private long esperaMaximaMs;
+
+    @Value("${app.clientes.reintentos.servicios-no-idempotentes:banco-service}")
+    private List<String> serviciosNoIdempotentes;
+
+    @Override
+    public void continueOrPropagate(RetryableException e) {
+        // Feign siempre usa un clon por llamada; la instancia compartida no reintenta
+        throw convertir(e, ClientErrorDecoder.nombreServicio(e.request()));
+    }
+
+    @Override
+    public Retryer clone() {
+        return new Ejecucion();
+    }
+
+    private ClienteRemotoException convertir(RetryableException e, String servicio) {
+        if (e.getCause() instanceof ClienteRemotoException remoto) {
+            return remoto;
+        }
+        CategoriaErrorCliente categoria = ClienteRemotoException.categoriaDeError(e.getCause());
+        return new ClienteRemotoException(servicio, categoria, e.status(), e.getMessage(), e);
+    }
+
+    private long calcularEspera(int intento, RetryableException e) {
+        long techo = Math.min(esperaMaximaMs, esperaInicialMs << Math.min(intento, 20));
+        long espera = ThreadLocalRandom.current().nextLong(techo + 1);
+        if (e.retryAfter() != null) {
+            long solicitada = e.retryAfter() - System.currentTimeMillis();
+            espera = Math.max(espera, Math.min(solicitada, esperaMaximaMs));
+        }
+        return espera;
+    }
+
+    private void contar(String servicio, String resultado) {
+        meterRegistry.counter("clientes.reintentos", "servicio", servicio, "resultado", resultado).increment();
+    }
+
+    private class Ejecucion implements Retryer {
+
+        private int intento;
+
+        @Override
+        public void continueOrPropagate(RetryableException e) {
+            String servicio = ClientErrorDecoder.nombreServicio(e.request());
+            ClienteRemotoException error = convertir(e, servicio);
+            CategoriaErrorCliente categoria = error.getCategoria();
+
+            if (!categoria.isReintentable()) {
+                throw error;
+            }
+            if (serviciosNoIdempotentes.contains(servicio) && !categoria.isSolicitudNoEnviada()) {
+                log.warn("No se reintenta {} ({}): la operación no es idempotente", servicio, categoria);
+                throw error;
+            }
+            if (++intento >= intentosMaximos) {
+                contar(servicio, "agotado");
+                throw error;
+            }
+            long espera = calcularEspera(intento, e);
+            PlazoTransaccion plazo = TransaccionContextHolder.getPlazo();
+            if (plazo != null && plazo.restanteMs() <= espera) {
+                log.warn("No se reintenta {} ({}): el plazo de la transacción vence antes", servicio, categoria);
+                contar(servicio, "sin_plazo");
+                throw error;
+            }
+            if (!presupuesto.intentarConsumir()) {
+                log.warn("Presupuesto de reintentos agotado, no se reintenta {} ({})", servicio, categoria);
+                contar(servicio, "sin_presupuesto");
+                throw error;
+            }
+
+            log.info("Reintento {} de {} tras {} ms por {}", intento, servicio, espera, categoria);
+            contar(servicio, "reintentado");
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException ie) {
+                // Llamada cancelada (por ejemplo, validación paralela ya decidida)
+                Thread.currentThread().interrupt();
+                throw error;
+            }
+        }
+
+        @Override
+        public Retryer clone() {
+            return ClientRetryer.this.clone();
+        }
+    }
+}
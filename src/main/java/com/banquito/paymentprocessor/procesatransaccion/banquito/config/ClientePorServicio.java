@@ -0,0 +1,99 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cliente HTTP de Feign con un pool de conexiones Apache HttpClient 5 independiente
+ * por servicio remoto. Así un servicio lento no agota las conexiones de los demás, y
+ * cada pool tiene sus propios límites, keep-alive y desalojo de conexiones inactivas.
+ * Las métricas de cada pool (conexiones disponibles, en uso y solicitudes esperando
+ * conexión) se publican como httpcomponents.httpclient.pool.* con la etiqueta httpclient.
+ */
+@Slf4j
+public class ClientePorServicio implements Client, Closeable {
+
+    private final ClientesHttpProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, Pool> pools = new ConcurrentHashMap<>();
+
+    public ClientePorServicio(ClientesHttpProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        String servicio = ClientErrorDecoder.nombreServicio(request);
+        return pools.computeIfAbsent(servicio, this::crearPool).cliente.execute(request, options);
+    }
+
+    private Pool crearPool(String servicio) {
+        ClientesHttpProperties.Pool config = properties.configuracion(servicio);
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(config.getMaximoConexiones())
+                .setMaxConnPerRoute(config.getMaximoConexiones())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setTimeToLive(TimeValue.ofSeconds(config.getTiempoVidaSegundos()))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(config.getValidarTrasInactividadMs()))
+                        .build())
+                .build();
+
+        // Los timeouts de conexión y respuesta los fija Feign en cada solicitud
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(config.getEsperaConexionMs()))
+                .setConnectionKeepAlive(TimeValue.ofSeconds(config.getKeepAliveSegundos()))
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(config.getInactividadMaximaSegundos()))
+                // Los reintentos los decide ClientRetryer
+                .disableAutomaticRetries()
+                .disableCookieManagement()
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, servicio, Tags.empty())
+                .bindTo(meterRegistry);
+        log.info("Pool HTTP creado para {}: {} conexiones, keep-alive {} s",
+                servicio, config.getMaximoConexiones(), config.getKeepAliveSegundos());
+        return new Pool(httpClient, new ApacheHttp5Client(httpClient));
+    }
+
+    @Override
+    public void close() {
+        pools.forEach((servicio, pool) -> {
+            try {
+                pool.httpClient.close();
+            } catch (IOException e) {
+                log.warn("Error al cerrar el pool HTTP de {}: {}", servicio, e.getMessage());
+            }
+        });
+        pools.clear();
+    }
+
+    private record Pool(CloseableHttpClient httpClient, Client cliente) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Configuración de los pools HTTP de los clientes Feign, por nombre de cliente
+ * (app.clientes.http.servicios.marca-service.maximo-conexiones=...). Los servicios
+ * sin configuración propia usan app.clientes.http.predeterminado.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.clientes.http")
+public class ClientesHttpProperties {
+
+    private Pool predeterminado = new Pool();
+    private Map<String, Pool> servicios = new HashMap<>();
+
+    public Pool configuracion(String servicio) {
+        return servicios.getOrDefault(servicio, predeterminado);
+    }
+
+    @Data
+    public static class Pool {
+        /** Conexiones simultáneas hacia el servicio (un solo host por servicio). */
+        private int maximoConexiones = 20;
+        /** Espera máxima para obtener una conexión del pool. */
+        private long esperaConexionMs = 500;
+        /** Tiempo que se mantiene viva una conexión si el servidor no indica Keep-Alive. */
+        private long keepAliveSegundos = 30;
+        /** Vida máxima de una conexión, para repartir carga tras cambios de DNS o del balanceador. */
+        private long tiempoVidaSegundos = 300;
+        /** Las conexiones inactivas por más de este tiempo se cierran en segundo plano. */
+        private long inactividadMaximaSegundos = 30;
+        /** Se valida la conexión antes de reutilizarla si estuvo inactiva este tiempo. */
+        private long validarTrasInactividadMs = 2000;
+    }
+}
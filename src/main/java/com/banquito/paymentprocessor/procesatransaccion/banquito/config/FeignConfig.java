@@ -13,6 +13,10 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import feign.Client;
+import feign.RequestInterceptor;
 import feign.codec.Decoder;
 import feign.codec.Encoder;
 
@@ -42,4 +46,20 @@ public class FeignConfig {
                 () -> new HttpMessageConverters(jacksonConverter);
         return new SpringEncoder(objectFactory);
     }
+
+    /**
+     * Cada solicitud a un servicio remoto aporta al presupuesto global de reintentos
+     */
+    @Bean
+    public RequestInterceptor presupuestoReintentosInterceptor(PresupuestoReintentos presupuestoReintentos) {
+        return template -> presupuestoReintentos.registrarSolicitud();
+    }
+
+    /**
+     * Transporte HTTP de los clientes Feign: un pool de conexiones persistentes por servicio
+     */
+    @Bean(destroyMethod = "close")
+    public Client feignClient(ClientesHttpProperties clientesHttpProperties, MeterRegistry meterRegistry) {
+        return new ClientePorServicio(clientesHttpProperties, meterRegistry);
+    }
 }
@@ -0,0 +1,59 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.PlazoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ajusta los timeouts de cada llamada remota al tiempo que le queda a la transacción
+ * (ver {@link TransaccionContextHolder#getPlazo()}). Si el plazo ya venció la llamada
+ * falla con {@link CategoriaErrorCliente#PLAZO_VENCIDO} sin enviarse. Sin plazo en el
+ * hilo se usan los timeouts configurados.
+ *
+ * Se aplica por fuera del circuit breaker (orden mayor), para que una llamada que no
+ * se envía no cuente como falla del servicio.
+ */
+@Slf4j
+@Component
+@Order(10)
+public class PlazoClientesCapability implements Capability {
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, options) -> ejecutar(client, request, options);
+    }
+
+    private Response ejecutar(Client delegate, Request request, Request.Options options) throws IOException {
+        PlazoTransaccion plazo = TransaccionContextHolder.getPlazo();
+        if (plazo == null) {
+            return delegate.execute(request, options);
+        }
+
+        long restanteMs = plazo.restanteMs();
+        if (restanteMs <= 0) {
+            String servicio = ClientErrorDecoder.nombreServicio(request);
+            log.warn("Plazo de la transacción vencido, no se llama a {}", servicio);
+            throw new ClienteRemotoException(servicio, CategoriaErrorCliente.PLAZO_VENCIDO, -1,
+                    "Plazo de la transacción vencido antes de llamar a " + servicio, null);
+        }
+
+        Request.Options acotadas = new Request.Options(
+                Math.min(options.connectTimeoutMillis(), restanteMs), TimeUnit.MILLISECONDS,
+                Math.min(options.readTimeoutMillis(), restanteMs), TimeUnit.MILLISECONDS,
+                options.isFollowRedirects());
+        return delegate.execute(request, acotadas);
+    }
+}
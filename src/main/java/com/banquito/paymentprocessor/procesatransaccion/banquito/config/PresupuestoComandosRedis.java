@@ -0,0 +1,30 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.util.Set;
+
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.protocol.RedisCommand;
+
+/**
+ * Plazo de cada comando de Redis según su tipo. Las lecturas simples se hacen en el
+ * camino de las consultas de estado, donde esperar más que una consulta a la base de
+ * datos no tiene sentido; el resto (escrituras, scripts, pipelines) tiene un plazo algo
+ * mayor.
+ */
+public class PresupuestoComandosRedis extends TimeoutOptions.TimeoutSource {
+
+    private static final Set<String> LECTURAS = Set.of("GET", "MGET", "EXISTS", "HGET", "HGETALL", "LRANGE", "PING");
+
+    private final long lecturaMs;
+    private final long predeterminadoMs;
+
+    public PresupuestoComandosRedis(long lecturaMs, long predeterminadoMs) {
+        this.lecturaMs = lecturaMs;
+        this.predeterminadoMs = predeterminadoMs;
+    }
+
+    @Override
+    public long getTimeout(RedisCommand<?, ?, ?> command) {
+        return command.getType() != null && LECTURAS.contains(command.getType().name()) ? lecturaMs : predeterminadoMs;
+    }
+}
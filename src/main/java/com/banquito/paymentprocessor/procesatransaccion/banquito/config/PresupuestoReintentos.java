@@ -0,0 +1,54 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Presupuesto global de reintentos compartido por todos los clientes Feign.
+ * Cada solicitud deposita una fracción de token y cada reintento consume un token
+ * completo, por lo que los reintentos nunca superan esa proporción del tráfico.
+ * Durante una degradación del servicio remoto el presupuesto se agota y las fallas
+ * se propagan de inmediato en lugar de multiplicar la carga.
+ */
+@Component
+@RequiredArgsConstructor
+public class PresupuestoReintentos {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.clientes.reintentos.proporcion-presupuesto:0.1}")
+    private double proporcion;
+
+    @Value("${app.clientes.reintentos.maximo-tokens:20}")
+    private int maximoTokens;
+
+    private PresupuestoTokens tokens;
+
+    @PostConstruct
+    void inicializar() {
+        tokens = new PresupuestoTokens(proporcion, maximoTokens);
+        Gauge.builder("clientes.reintentos.presupuesto", this, PresupuestoReintentos::getTokensDisponibles)
+                .description("Tokens disponibles para reintentos de clientes remotos")
+                .register(meterRegistry);
+    }
+
+    public void registrarSolicitud() {
+        tokens.registrarSolicitud();
+    }
+
+    /**
+     * @return true si había un token disponible y fue consumido
+     */
+    public boolean intentarConsumir() {
+        return tokens.intentarConsumir();
+    }
+
+    public double getTokensDisponibles() {
+        return tokens.getTokensDisponibles();
+    }
+}
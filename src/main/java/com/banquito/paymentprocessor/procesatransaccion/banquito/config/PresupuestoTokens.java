@@ -0,0 +1,46 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cubeta de tokens proporcional al tráfico: cada solicitud deposita una fracción de
+ * token (la proporción) y cada operación adicional (reintento, solicitud de cobertura)
+ * consume un token completo. Las operaciones adicionales quedan así limitadas a esa
+ * proporción del tráfico, con una reserva máxima para ráfagas.
+ */
+public class PresupuestoTokens {
+
+    private static final long MILESIMAS_POR_TOKEN = 1000;
+
+    private final long deposito;
+    private final long maximo;
+    private final AtomicLong milesimas;
+
+    public PresupuestoTokens(double proporcion, int maximoTokens) {
+        this.deposito = Math.round(proporcion * MILESIMAS_POR_TOKEN);
+        this.maximo = maximoTokens * MILESIMAS_POR_TOKEN;
+        this.milesimas = new AtomicLong(maximo);
+    }
+
+    public void registrarSolicitud() {
+        milesimas.getAndUpdate(actual -> Math.min(maximo, actual + deposito));
+    }
+
+    /**
+     * @return true si había un token disponible y fue consumido
+     */
+    public boolean intentarConsumir() {
+        long actual;
+        do {
+            actual = milesimas.get();
+            if (actual < MILESIMAS_POR_TOKEN) {
+                return false;
+            }
+        } while (!milesimas.compareAndSet(actual, actual - MILESIMAS_POR_TOKEN));
+        return true;
+    }
+
+    public double getTokensDisponibles() {
+        return (double) milesimas.get() / MILESIMAS_POR_TOKEN;
+    }
+}
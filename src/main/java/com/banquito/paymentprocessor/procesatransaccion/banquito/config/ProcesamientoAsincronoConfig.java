@@ -0,0 +1,115 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ProcesamientoAsincronoConfig {
+
+    @Value("${app.procesamiento.asincrono.hilos-minimos:8}")
+    private int hilosMinimos;
+
+    @Value("${app.procesamiento.asincrono.hilos-maximos:32}")
+    private int hilosMaximos;
+
+    @Value("${app.procesamiento.asincrono.capacidad-cola:500}")
+    private int capacidadCola;
+
+    @Value("${app.procesamiento.asincrono.espera-apagado-segundos:30}")
+    private int esperaApagadoSegundos;
+
+    @Value("${app.reversos.hilos:4}")
+    private int hilosReversos;
+
+    @Value("${app.recuperacion.hilos:2}")
+    private int hilosRecuperacion;
+
+    /**
+     * Executor acotado para el procesamiento asíncrono de transacciones.
+     * Cuando la cola se llena rechaza la tarea (AbortPolicy) en lugar de ejecutarla
+     * en el hilo de Tomcat, de modo que el llamador pueda responder 503.
+     * Al apagar espera a que terminen las transacciones en curso para no dejar
+     * débitos sin su crédito correspondiente.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor procesamientoAsincronoExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilosMinimos);
+        executor.setMaxPoolSize(hilosMaximos);
+        executor.setQueueCapacity(capacidadCola);
+        executor.setThreadNamePrefix("procesa-trx-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(esperaApagadoSegundos);
+        return executor;
+    }
+
+    /**
+     * Executor de los reversos de débito. Su tamaño acota cuántos reversos se envían al
+     * core a la vez; la cola solo cubre lo ya tomado de la tabla en un ciclo.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reversoExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilosReversos);
+        executor.setMaxPoolSize(hilosReversos);
+        executor.setQueueCapacity(hilosReversos);
+        executor.setThreadNamePrefix("reverso-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(esperaApagadoSegundos);
+        return executor;
+    }
+
+    /**
+     * Executor de la recuperación de transacciones detenidas. Es pequeño a propósito:
+     * tras un incidente puede haber miles de transacciones por recuperar y no deben
+     * ocupar los hilos ni las conexiones que necesita el tráfico en línea.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor recuperacionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilosRecuperacion);
+        executor.setMaxPoolSize(hilosRecuperacion);
+        executor.setQueueCapacity(hilosRecuperacion);
+        executor.setThreadNamePrefix("recuperacion-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(esperaApagadoSegundos);
+        return executor;
+    }
+
+    /**
+     * Hilo único que envía a Redis las escrituras de la caché de transacciones. Un solo
+     * hilo conserva el orden de los estados de cada transacción; solo hay una tarea a la
+     * vez, que vacía todo lo pendiente.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor redisEscrituraExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("redis-escritura-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(esperaApagadoSegundos);
+        return executor;
+    }
+
+    /**
+     * Executor de hilos virtuales para las consultas remotas que se ejecutan en paralelo
+     * (validación de marca y fraude). Cada consulta bloquea su propio hilo virtual sin
+     * ocupar hilos de plataforma, y la cancelación interrumpe la E/S pendiente.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService validacionExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -1,10 +1,14 @@
 package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
 
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.CacheLocalTransaccionesService;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.RegistroGatewayService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,14 +17,46 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+
+import java.time.Duration;
+
 @Configuration
 public class RedisConfig {
 
     @Value("${spring.redis.enabled:true}")
     private boolean redisEnabled;
 
+    @Value("${spring.data.redis.connect-timeout:2s}")
+    private Duration tiempoConexion;
+
+    @Value("${app.redis.presupuesto.lectura-ms:100}")
+    private long presupuestoLecturaMs;
+
+    @Value("${app.redis.presupuesto.predeterminado-ms:500}")
+    private long presupuestoPredeterminadoMs;
+
+    /**
+     * Opciones del cliente Lettuce para que Redis falle rápido en lugar de bloquear:
+     * mientras la conexión está caída los comandos se rechazan de inmediato (por defecto
+     * quedan en cola hasta reconectar), y cada comando tiene su propio plazo.
+     */
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer redisFallaRapida() {
+        return builder -> builder.clientOptions(ClientOptions.builder()
+                .socketOptions(SocketOptions.builder().connectTimeout(tiempoConexion).build())
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .timeoutOptions(TimeoutOptions.builder()
+                        .timeoutSource(new PresupuestoComandosRedis(presupuestoLecturaMs, presupuestoPredeterminadoMs))
+                        .build())
+                .build());
+    }
+
     @Bean
     public ObjectMapper redisObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -63,8 +99,9 @@ public class RedisConfig {
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
         
-        // Serializer específico para Transaccion
-        Jackson2JsonRedisSerializer<Transaccion> serializer = new Jackson2JsonRedisSerializer<>(redisObjectMapper, Transaccion.class);
+        // Formato binario compacto; el JSON de versiones anteriores se sigue leyendo
+        TransaccionRedisSerializer serializer = new TransaccionRedisSerializer(
+                new Jackson2JsonRedisSerializer<>(redisObjectMapper, Transaccion.class));
         
         template.setValueSerializer(serializer);
         template.setHashValueSerializer(serializer);
@@ -73,4 +110,19 @@ public class RedisConfig {
         
         return template;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Contenedor de suscripciones pub/sub usado para las invalidaciones entre nodos.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.redis.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+            RegistroGatewayService registroGatewayService, CacheLocalTransaccionesService cacheLocalTransacciones) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(registroGatewayService, new ChannelTopic(RegistroGatewayService.CANAL_INVALIDACION));
+        container.addMessageListener(cacheLocalTransacciones,
+                new ChannelTopic(CacheLocalTransaccionesService.CANAL_INVALIDACION));
+        return container;
+    }
+}
@@ -0,0 +1,299 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.TransaccionService;
+
+/**
+ * Serializador binario de {@link Transaccion} para Redis. Reemplaza al JSON con metadatos
+ * de tipo: una transacción ocupa del orden de un tercio de los bytes y no pasa por
+ * reflexión.
+ *
+ * Formato (versión 1), en orden:
+ * - Versión (1 byte) y marcas de presencia de id, monto y fecha (1 byte).
+ * - id: long. Monto: escala (1 byte) y valor sin escala (long, o bytes si no cabe).
+ *   Fecha: microsegundos desde 1970 (la precisión de PostgreSQL).
+ * - Estado: índice en la tabla de estados conocidos (1 byte), o 255 seguido del texto.
+ * - Número de tarjeta de 16 dígitos empaquetado en un long, o el texto si no lo es.
+ * - Los demás campos de texto: longitud + 1 como varint (0 es null) y UTF-8.
+ *
+ * Los valores que empiezan con '{' o '[' son JSON escrito por versiones anteriores y se leen
+ * con el serializador JSON, para que el despliegue no invalide la caché. Los campos
+ * nuevos deben agregarse al final con una versión nueva, sin cambiar el orden de los
+ * existentes.
+ */
+public class TransaccionRedisSerializer implements RedisSerializer<Transaccion> {
+
+    static final byte VERSION = 1;
+    private static final byte INICIO_JSON = '{';
+    // Con tipado por defecto Jackson escribe ["clase", {...}]
+    private static final byte INICIO_JSON_TIPADO = '[';
+    private static final int ESTADO_TEXTO = 0xFF;
+    private static final int CON_ID = 1;
+    private static final int CON_MONTO = 2;
+    private static final int CON_FECHA = 4;
+    private static final int ESCALA_GRANDE = 0x80;
+    private static final int TARJETA_EMPAQUETADA = 1;
+    private static final int TARJETA_TEXTO = 0;
+
+    // Solo se agregan estados al final: el índice es parte del formato
+    private static final List<String> ESTADOS = List.of(
+            TransaccionService.ESTADO_PENDIENTE,
+            TransaccionService.ESTADO_VALIDACION_MARCA,
+            TransaccionService.ESTADO_VALIDACION_FRAUDE,
+            TransaccionService.ESTADO_PROCESO_DEBITO,
+            TransaccionService.ESTADO_PROCESO_CREDITO,
+            TransaccionService.ESTADO_COMPLETADA,
+            TransaccionService.ESTADO_RECHAZADA,
+            TransaccionService.ESTADO_ERROR,
+            TransaccionService.ESTADO_FRAUDE,
+            TransaccionService.ESTADO_PROCESO_REVERSO,
+            TransaccionService.ESTADO_REVERSADA,
+            TransaccionService.ESTADO_ERROR_IRRECUPERABLE);
+
+    private final RedisSerializer<Transaccion> serializadorJson;
+
+    /**
+     * Serializador solo binario, para copias que nunca se guardaron como JSON.
+     */
+    public TransaccionRedisSerializer() {
+        this(null);
+    }
+
+    /**
+     * @param serializadorJson Lee los valores JSON guardados antes de este formato
+     */
+    public TransaccionRedisSerializer(RedisSerializer<Transaccion> serializadorJson) {
+        this.serializadorJson = serializadorJson;
+    }
+
+    @Override
+    public byte[] serialize(Transaccion transaccion) throws SerializationException {
+        if (transaccion == null) {
+            return new byte[0];
+        }
+        Escritor escritor = new Escritor();
+        int marcas = (transaccion.getId() != null ? CON_ID : 0)
+                | (transaccion.getMonto() != null ? CON_MONTO : 0)
+                | (transaccion.getFechaTransaccion() != null ? CON_FECHA : 0);
+        escritor.byte_(VERSION);
+        escritor.byte_(marcas);
+        if (transaccion.getId() != null) {
+            escritor.long_(transaccion.getId());
+        }
+        if (transaccion.getMonto() != null) {
+            escribirMonto(escritor, transaccion.getMonto());
+        }
+        if (transaccion.getFechaTransaccion() != null) {
+            LocalDateTime fecha = transaccion.getFechaTransaccion();
+            escritor.long_(fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + fecha.getNano() / 1_000);
+        }
+
+        int estado = ESTADOS.indexOf(transaccion.getEstado());
+        if (estado >= 0) {
+            escritor.byte_(estado);
+        } else {
+            escritor.byte_(ESTADO_TEXTO);
+            escritor.texto(transaccion.getEstado());
+        }
+
+        String tarjeta = transaccion.getNumeroTarjeta();
+        if (tarjeta != null && tarjeta.length() == 16 && tarjeta.chars().allMatch(Character::isDigit)
+                && tarjeta.charAt(0) != '0') {
+            escritor.byte_(TARJETA_EMPAQUETADA);
+            escritor.long_(Long.parseLong(tarjeta));
+        } else {
+            escritor.byte_(TARJETA_TEXTO);
+            escritor.texto(tarjeta);
+        }
+
+        escritor.texto(transaccion.getCodTransaccion());
+        escritor.texto(transaccion.getCodigoUnico());
+        escritor.texto(transaccion.getCodigoGtw());
+        escritor.texto(transaccion.getCvv());
+        escritor.texto(transaccion.getFechaCaducidad());
+        escritor.texto(transaccion.getCodigoMoneda());
+        escritor.texto(transaccion.getMarca());
+        escritor.texto(transaccion.getReferencia());
+        escritor.texto(transaccion.getPais());
+        escritor.texto(transaccion.getTipo());
+        escritor.texto(transaccion.getSwiftBancoComercio());
+        escritor.texto(transaccion.getCuentaIbanComercio());
+        escritor.texto(transaccion.getSwiftBancoTarjeta());
+        escritor.texto(transaccion.getTransaccionEncriptada());
+        return escritor.bytes();
+    }
+
+    @Override
+    public Transaccion deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (serializadorJson != null && (bytes[0] == INICIO_JSON || bytes[0] == INICIO_JSON_TIPADO)) {
+            return serializadorJson.deserialize(bytes);
+        }
+        if (bytes[0] != VERSION) {
+            throw new SerializationException("Versión de transacción en Redis no soportada: " + bytes[0]);
+        }
+        try {
+            ByteBuffer lector = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+            Transaccion transaccion = new Transaccion();
+            int marcas = lector.get();
+            if ((marcas & CON_ID) != 0) {
+                transaccion.setId(lector.getLong());
+            }
+            if ((marcas & CON_MONTO) != 0) {
+                transaccion.setMonto(leerMonto(lector));
+            }
+            if ((marcas & CON_FECHA) != 0) {
+                long micros = lector.getLong();
+                transaccion.setFechaTransaccion(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC));
+            }
+
+            int estado = Byte.toUnsignedInt(lector.get());
+            transaccion.setEstado(estado == ESTADO_TEXTO ? leerTexto(lector) : ESTADOS.get(estado));
+
+            if (lector.get() == TARJETA_EMPAQUETADA) {
+                transaccion.setNumeroTarjeta(Long.toString(lector.getLong()));
+            } else {
+                transaccion.setNumeroTarjeta(leerTexto(lector));
+            }
+
+            transaccion.setCodTransaccion(leerTexto(lector));
+            transaccion.setCodigoUnico(leerTexto(lector));
+            transaccion.setCodigoGtw(leerTexto(lector));
+            transaccion.setCvv(leerTexto(lector));
+            transaccion.setFechaCaducidad(leerTexto(lector));
+            transaccion.setCodigoMoneda(leerTexto(lector));
+            transaccion.setMarca(leerTexto(lector));
+            transaccion.setReferencia(leerTexto(lector));
+            transaccion.setPais(leerTexto(lector));
+            transaccion.setTipo(leerTexto(lector));
+            transaccion.setSwiftBancoComercio(leerTexto(lector));
+            transaccion.setCuentaIbanComercio(leerTexto(lector));
+            transaccion.setSwiftBancoTarjeta(leerTexto(lector));
+            transaccion.setTransaccionEncriptada(leerTexto(lector));
+            return transaccion;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Transacción en Redis incompleta", e);
+        }
+    }
+
+    private static void escribirMonto(Escritor escritor, BigDecimal monto) {
+        BigInteger sinEscala = monto.unscaledValue();
+        if (sinEscala.bitLength() < Long.SIZE && monto.scale() >= 0 && monto.scale() < ESCALA_GRANDE) {
+            escritor.byte_(monto.scale());
+            escritor.long_(sinEscala.longValue());
+        } else {
+            // Caso raro: escala negativa o valor fuera de un long
+            escritor.byte_(ESCALA_GRANDE);
+            escritor.varint(monto.scale());
+            byte[] valor = sinEscala.toByteArray();
+            escritor.varint(valor.length);
+            escritor.bytes(valor);
+        }
+    }
+
+    private static BigDecimal leerMonto(ByteBuffer lector) {
+        int escala = Byte.toUnsignedInt(lector.get());
+        if (escala != ESCALA_GRANDE) {
+            return BigDecimal.valueOf(lector.getLong(), escala);
+        }
+        int escalaGrande = leerVarint(lector);
+        byte[] valor = new byte[leerVarint(lector)];
+        lector.get(valor);
+        return new BigDecimal(new BigInteger(valor), escalaGrande);
+    }
+
+    private static String leerTexto(ByteBuffer lector) {
+        int longitud = leerVarint(lector) - 1;
+        if (longitud < 0) {
+            return null;
+        }
+        String texto = new String(lector.array(), lector.position(), longitud, StandardCharsets.UTF_8);
+        lector.position(lector.position() + longitud);
+        return texto;
+    }
+
+    private static int leerVarint(ByteBuffer lector) {
+        int valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 32; desplazamiento += 7) {
+            int b = lector.get();
+            valor |= (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new SerializationException("Varint inválido en transacción de Redis");
+    }
+
+    /**
+     * Buffer de escritura que crece según se necesita; la mayoría de transacciones caben
+     * en el tamaño inicial.
+     */
+    private static final class Escritor {
+
+        private byte[] buffer = new byte[256];
+        private int posicion;
+
+        void byte_(int valor) {
+            asegurar(1);
+            buffer[posicion++] = (byte) valor;
+        }
+
+        void long_(long valor) {
+            asegurar(Long.BYTES);
+            for (int i = Long.BYTES - 1; i >= 0; i--) {
+                buffer[posicion++] = (byte) (valor >>> (i * 8));
+            }
+        }
+
+        void varint(int valor) {
+            asegurar(5);
+            while ((valor & ~0x7F) != 0) {
+                buffer[posicion++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            buffer[posicion++] = (byte) valor;
+        }
+
+        void texto(String texto) {
+            if (texto == null) {
+                varint(0);
+                return;
+            }
+            byte[] utf8 = texto.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1);
+            bytes(utf8);
+        }
+
+        void bytes(byte[] valor) {
+            asegurar(valor.length);
+            System.arraycopy(valor, 0, buffer, posicion, valor.length);
+            posicion += valor.length;
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(buffer, posicion);
+        }
+
+        private void asegurar(int adicional) {
+            if (posicion + adicional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, posicion + adicional));
+            }
+        }
+    }
+}
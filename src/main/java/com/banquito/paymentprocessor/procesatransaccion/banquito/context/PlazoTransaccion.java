@@ -0,0 +1,22 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plazo de la transacción: momento a partir del cual ya nadie espera su resultado.
+ * Se mide con el reloj monotónico del nodo, por lo que solo es válido dentro de él.
+ */
+public record PlazoTransaccion(long vencimientoNanos) {
+
+    public static PlazoTransaccion enMilisegundos(long milisegundos) {
+        return new PlazoTransaccion(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milisegundos));
+    }
+
+    public long restanteMs() {
+        return TimeUnit.NANOSECONDS.toMillis(vencimientoNanos - System.nanoTime());
+    }
+
+    public boolean vencido() {
+        return vencimientoNanos - System.nanoTime() <= 0;
+    }
+}
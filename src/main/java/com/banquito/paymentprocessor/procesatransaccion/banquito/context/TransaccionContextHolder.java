@@ -1,5 +1,8 @@
 package com.banquito.paymentprocessor.procesatransaccion.banquito.context;
 
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
 /**
  * Clase utilitaria para mantener datos de contexto de la transacción actual.
  * Se utiliza para pasar datos que no están presentes en el modelo de datos.
@@ -8,6 +11,7 @@ public class TransaccionContextHolder {
     
     private static final ThreadLocal<Boolean> diferidoContext = new ThreadLocal<>();
     private static final ThreadLocal<Integer> cuotasContext = new ThreadLocal<>();
+    private static final ThreadLocal<PlazoTransaccion> plazoContext = new ThreadLocal<>();
     
     private TransaccionContextHolder() {
         // Constructor privado para evitar instanciación
@@ -45,11 +49,62 @@ public class TransaccionContextHolder {
         return cuotasContext.get();
     }
     
+    /**
+     * Establece el plazo de la transacción actual
+     * @param plazo plazo de la transacción, null si no tiene
+     */
+    public static void setPlazo(PlazoTransaccion plazo) {
+        plazoContext.set(plazo);
+    }
+    
+    /**
+     * Obtiene el plazo de la transacción actual
+     * @return el plazo, null si no está definido
+     */
+    public static PlazoTransaccion getPlazo() {
+        return plazoContext.get();
+    }
+    
+    /**
+     * Envuelve una tarea para que se ejecute en otro hilo con el plazo del hilo actual
+     * @param tarea tarea a ejecutar en un executor
+     * @return la tarea con el plazo capturado
+     */
+    public static <T> Callable<T> conPlazo(Callable<T> tarea) {
+        PlazoTransaccion plazo = plazoContext.get();
+        return () -> {
+            PlazoTransaccion anterior = plazoContext.get();
+            plazoContext.set(plazo);
+            try {
+                return tarea.call();
+            } finally {
+                plazoContext.set(anterior);
+            }
+        };
+    }
+    
+    /**
+     * Ejecuta una llamada sin plazo, para operaciones que deben completarse aunque
+     * nadie espere ya la respuesta (crédito y reverso de un débito aplicado)
+     * @param llamada llamada a ejecutar
+     * @return el resultado de la llamada
+     */
+    public static <T> T sinPlazo(Supplier<T> llamada) {
+        PlazoTransaccion anterior = plazoContext.get();
+        plazoContext.remove();
+        try {
+            return llamada.get();
+        } finally {
+            plazoContext.set(anterior);
+        }
+    }
+    
     /**
      * Limpia los valores almacenados en el contexto para evitar fugas de memoria
      */
     public static void clear() {
         diferidoContext.remove();
         cuotasContext.remove();
+        plazoContext.remove();
     }
 } 
\ No newline at end of file
@@ -1,19 +1,29 @@
 package com.banquito.paymentprocessor.procesatransaccion.banquito.controller;
 
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.dto.SeguimientoTransaccionDTO;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.dto.TransaccionDTO;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.mapper.HistorialEstadoTransaccionMapper;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.mapper.TransaccionMapper;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.LimiteExcedidoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ServicioSaturadoException;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionRechazadaException;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.service.TransaccionService;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoProcesamiento;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.SeguimientoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.PlazoTransaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -36,16 +46,34 @@ public class TransaccionController {
 
     private final TransaccionService service;
     private final TransaccionMapper mapper;
+    private final HistorialEstadoTransaccionMapper historialMapper;
+    
+    private static final String PREFER_ASINCRONO = "respond-async";
+    private static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+    
+    @Value("${app.procesamiento.asincrono.habilitado:true}")
+    private boolean asincronoHabilitado;
 
     @PostMapping
-    @Operation(summary = "Procesar una transacción", description = "Procesa una nueva transacción con validaciones")
+    @Operation(summary = "Procesar una transacción", description = "Procesa una nueva transacción con validaciones. " +
+            "Con la cabecera 'Prefer: respond-async' la transacción se acepta en estado PEN y se procesa en segundo plano; " +
+            "el estado final se consulta con GET /v1/transacciones/{codTransaccion}. " +
+            "Una solicitud repetida con el mismo codigoUnico devuelve la respuesta original con la cabecera 'Idempotent-Replayed'.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Transacción procesada exitosamente"),
+        @ApiResponse(responseCode = "202", description = "Transacción aceptada para procesamiento asíncrono"),
         @ApiResponse(responseCode = "400", description = "Datos de transacción inválidos"),
-        @ApiResponse(responseCode = "500", description = "Error interno al procesar transacción")
+        @ApiResponse(responseCode = "429", description = "Límite de transacciones del gateway excedido"),
+        @ApiResponse(responseCode = "500", description = "Error interno al procesar transacción"),
+        @ApiResponse(responseCode = "503", description = "Capacidad de procesamiento agotada")
     })
     public ResponseEntity<Object> procesarTransaccion(
-            @RequestBody @Valid TransaccionDTO transaccionDTO) {
+            @RequestBody @Valid TransaccionDTO transaccionDTO,
+            @Parameter(description = "Preferencia de respuesta (RFC 7240), 'respond-async' activa el modo asíncrono", example = "respond-async")
+            @RequestHeader(value = "Prefer", required = false) String prefer,
+            @Parameter(description = "Tiempo máximo en milisegundos que el gateway esperará el resultado; " +
+                    "si no se envía se usa el plazo configurado para el gateway", example = "8000")
+            @RequestHeader(value = "X-Plazo-Ms", required = false) Long plazoMs) {
         log.info("Recibida solicitud para procesar una nueva transacción");
         
         try {
@@ -60,14 +88,31 @@ public class TransaccionController {
             TransaccionContextHolder.setDiferido(esDiferido);
             TransaccionContextHolder.setCuotas(numCuotas);
             
-            Transaccion resultado = service.procesarTransaccion(transaccion);
+            // El plazo empieza a correr al recibir la solicitud; sin cabecera se fija null para
+            // que el servicio aplique el del gateway y nunca uno de una solicitud anterior
+            TransaccionContextHolder.setPlazo(plazoMs != null && plazoMs > 0
+                    ? PlazoTransaccion.enMilisegundos(plazoMs) : null);
             
-            // Limpiar el contexto
-            TransaccionContextHolder.clear();
+            if (asincronoHabilitado && prefer != null && prefer.contains(PREFER_ASINCRONO)) {
+                String codTransaccion = service.procesarTransaccionAsincrona(transaccion);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("mensaje", "Transacción aceptada para procesamiento. Código: " + codTransaccion);
+                response.put("codTransaccion", codTransaccion);
+                response.put("estado", TransaccionService.ESTADO_PENDIENTE);
+                
+                return ResponseEntity.accepted()
+                        .location(URI.create("/v1/transacciones/" + codTransaccion))
+                        .header("Preference-Applied", PREFER_ASINCRONO)
+                        .body(response);
+            }
+            
+            ResultadoProcesamiento resultado = service.procesarTransaccion(transaccion);
             
             String mensaje;
             HttpStatus status;
-            String detalleEstado = service.obtenerUltimoMensaje(resultado);
+            // El resultado ya trae el último mensaje registrado, no se consulta el historial
+            String detalleEstado = resultado.getMensaje();
             
             // Definir mensaje según el estado final de la transacción
             if (TransaccionService.ESTADO_COMPLETADA.equals(resultado.getEstado())) {
@@ -108,8 +153,32 @@ public class TransaccionController {
             response.put("codTransaccion", resultado.getCodTransaccion());
             response.put("estado", resultado.getEstado());
             
+            if (resultado.isRepetido()) {
+                // Reintento del gateway: respuesta de la solicitud original con el mismo código único
+                return ResponseEntity.status(status).header(CABECERA_REPETIDA, "true").body(response);
+            }
             return new ResponseEntity<>(response, status);
             
+        } catch (LimiteExcedidoException e) {
+            log.warn("Transacción no aceptada por límite del gateway: {}", e.getMessage());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            response.put("estado", "ERROR");
+            
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getReintentarDespuesSegundos()))
+                    .body(response);
+        } catch (ServicioSaturadoException e) {
+            log.warn("Transacción no aceptada por saturación: {}", e.getMessage());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            response.put("estado", "ERROR");
+            
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getReintentarDespuesSegundos()))
+                    .body(response);
         } catch (TransaccionRechazadaException e) {
             log.warn("Transacción rechazada: {}", e.getMessage());
             
@@ -126,6 +195,9 @@ public class TransaccionController {
             response.put("estado", "ERROR");
             
             return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            // El hilo de Tomcat atiende luego otras solicitudes: el contexto no debe sobrevivir
+            TransaccionContextHolder.clear();
         }
     }
 
@@ -158,6 +230,37 @@ public class TransaccionController {
         return ResponseEntity.ok(mapper.toDTO(transaccion));
     }
 
+    @GetMapping("/{codTransaccion}/seguimiento")
+    @Operation(
+        summary = "Obtiene una transacción con su historial de estados",
+        description = "Retorna en una sola llamada la transacción y sus cambios de estado, del más reciente al más antiguo. " +
+                      "Ambos se leen de la caché mientras la transacción esté en ella, sin consultar la base de datos; " +
+                      "pensado para que los gateways sigan el avance de una transacción."
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Transacción encontrada exitosamente",
+            content = @Content(schema = @Schema(implementation = SeguimientoTransaccionDTO.class))
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Transacción no encontrada"
+        ),
+        @ApiResponse(
+            responseCode = "500",
+            description = "Error interno del servidor"
+        )
+    })
+    public ResponseEntity<SeguimientoTransaccionDTO> obtenerSeguimiento(
+            @Parameter(description = "Código único de la transacción", required = true, example = "TRX1234567")
+            @PathVariable String codTransaccion) {
+        log.debug("Obteniendo seguimiento de la transacción: {}", codTransaccion);
+        SeguimientoTransaccion seguimiento = service.obtenerSeguimiento(codTransaccion);
+        return ResponseEntity.ok(new SeguimientoTransaccionDTO(mapper.toDTO(seguimiento.getTransaccion()),
+                historialMapper.toDTOList(seguimiento.getHistorial())));
+    }
+
     @GetMapping("/recientes")
     @Operation(
         summary = "Obtiene transacciones recientes",
@@ -1,6 +1,7 @@
 package com.banquito.paymentprocessor.procesatransaccion.banquito.controller.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
@@ -20,4 +21,20 @@ public class GatewayDTO {
     @NotBlank(message = "El nombre del gateway es requerido")
     @Size(min = 1, max = 100, message = "El nombre del gateway debe tener entre 1 y 100 caracteres")
     private String nombre;
+
+    @Schema(description = "Transacciones por segundo admitidas; vacío usa el valor por defecto", example = "50")
+    @Min(value = 1, message = "El límite por segundo debe ser mayor a cero")
+    private Integer limitePorSegundo;
+
+    @Schema(description = "Transacciones que se admiten de golpe por encima de la tasa", example = "100")
+    @Min(value = 1, message = "La ráfaga debe ser mayor a cero")
+    private Integer rafaga;
+
+    @Schema(description = "Peso en el reparto de capacidad cuando el nodo está saturado", example = "1")
+    @Min(value = 1, message = "El peso debe ser mayor a cero")
+    private Integer peso;
+
+    @Schema(description = "Plazo por defecto de las transacciones en milisegundos", example = "8000")
+    @Min(value = 100, message = "El plazo debe ser de al menos 100 ms")
+    private Integer plazoMs;
 } 
\ No newline at end of file
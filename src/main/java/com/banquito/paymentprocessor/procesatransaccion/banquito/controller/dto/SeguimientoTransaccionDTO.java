@@ -0,0 +1,18 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.controller.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeguimientoTransaccionDTO {
+
+    private TransaccionDTO transaccion;
+
+    // Del estado más reciente al más antiguo
+    private List<HistorialEstadoTransaccionDTO> historial;
+}
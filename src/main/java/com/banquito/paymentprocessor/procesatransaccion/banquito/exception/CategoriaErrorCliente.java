@@ -0,0 +1,68 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.exception;
+
+/**
+ * Clasificación de los errores de los servicios remotos (marca, fraude, core bancario).
+ */
+public enum CategoriaErrorCliente {
+
+    /** No se pudo establecer la conexión: la solicitud nunca llegó al servicio. */
+    CONEXION(true),
+    /** No hubo respuesta a tiempo: el servicio pudo haber procesado la solicitud. */
+    TIMEOUT(true),
+    /** La conexión se interrumpió durante el intercambio. */
+    RED(true),
+    /** El servicio indicó que está saturado (429, 503). */
+    SATURADO(true),
+    /** Error transitorio del servicio o de un intermediario (500, 502, 504). */
+    ERROR_SERVIDOR(true),
+    /** El circuito del servicio está abierto: la solicitud no se envió. */
+    CIRCUITO_ABIERTO(false),
+    /** Se superó el límite de concurrencia local hacia el servicio: la solicitud no se envió. */
+    LIMITE_CONCURRENCIA(false),
+    /** El plazo de la transacción venció antes de la llamada: la solicitud no se envió. */
+    PLAZO_VENCIDO(false),
+    /** El servicio rechazó la solicitud (4xx); repetirla dará el mismo resultado. */
+    SOLICITUD_INVALIDA(false),
+    DESCONOCIDO(false);
+
+    private final boolean reintentable;
+
+    CategoriaErrorCliente(boolean reintentable) {
+        this.reintentable = reintentable;
+    }
+
+    public boolean isReintentable() {
+        return reintentable;
+    }
+
+    /**
+     * Indica si el error garantiza que la solicitud no fue procesada, de modo que
+     * puede repetirse incluso en operaciones no idempotentes.
+     */
+    public boolean isSolicitudNoEnviada() {
+        return this == CONEXION || this == CIRCUITO_ABIERTO || this == LIMITE_CONCURRENCIA
+                || this == PLAZO_VENCIDO;
+    }
+
+    /**
+     * Indica si una respuesta con este estado HTTP refleja una falla del servicio
+     * (y no un rechazo de la solicitud), a efectos del circuit breaker.
+     */
+    public static boolean esFallaDelServicio(int status) {
+        CategoriaErrorCliente categoria = desdeEstadoHttp(status);
+        return categoria == SATURADO || categoria == ERROR_SERVIDOR;
+    }
+
+    public static CategoriaErrorCliente desdeEstadoHttp(int status) {
+        if (status == 429 || status == 503) {
+            return SATURADO;
+        }
+        if (status == 500 || status == 502 || status == 504) {
+            return ERROR_SERVIDOR;
+        }
+        if (status >= 400 && status < 500) {
+            return SOLICITUD_INVALIDA;
+        }
+        return DESCONOCIDO;
+    }
+}
@@ -0,0 +1,58 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.exception;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * Error al invocar un servicio remoto mediante Feign, ya clasificado por categoría.
+ */
+public class ClienteRemotoException extends RuntimeException {
+
+    private final String servicio;
+    private final CategoriaErrorCliente categoria;
+    private final int status;
+
+    public ClienteRemotoException(String servicio, CategoriaErrorCliente categoria, int status, String message,
+            Throwable cause) {
+        super(message, cause);
+        this.servicio = servicio;
+        this.categoria = categoria;
+        this.status = status;
+    }
+
+    /**
+     * Clasifica un error de E/S producido antes de recibir respuesta HTTP.
+     */
+    public static CategoriaErrorCliente categoriaDeError(Throwable error) {
+        if (error instanceof ClienteRemotoException remoto) {
+            return remoto.getCategoria();
+        }
+        if (error instanceof ConnectException || error instanceof UnknownHostException
+                || error instanceof NoRouteToHostException) {
+            return CategoriaErrorCliente.CONEXION;
+        }
+        if (error instanceof SocketTimeoutException || error instanceof InterruptedIOException) {
+            return CategoriaErrorCliente.TIMEOUT;
+        }
+        if (error instanceof IOException) {
+            return CategoriaErrorCliente.RED;
+        }
+        return CategoriaErrorCliente.DESCONOCIDO;
+    }
+
+    public String getServicio() {
+        return servicio;
+    }
+
+    public CategoriaErrorCliente getCategoria() {
+        return categoria;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,15 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.exception;
+
+public class LimiteExcedidoException extends RuntimeException {
+
+    private final long reintentarDespuesSegundos;
+
+    public LimiteExcedidoException(String message, long reintentarDespuesSegundos) {
+        super(message);
+        this.reintentarDespuesSegundos = reintentarDespuesSegundos;
+    }
+
+    public long getReintentarDespuesSegundos() {
+        return reintentarDespuesSegundos;
+    }
+}
@@ -8,4 +8,15 @@ public class NotFoundException extends RuntimeException {
     public NotFoundException(String id, String entity) {
         super("No se encontró " + entity + " con id: " + id);
     }
+
+    private NotFoundException(String message, boolean conTraza) {
+        super(message, null, false, conTraza);
+    }
+
+    /**
+     * Sin traza de pila, para consultas frecuentes de códigos inexistentes.
+     */
+    public static NotFoundException sinTraza(String message) {
+        return new NotFoundException(message, false);
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.exception;
+
+public class ServicioSaturadoException extends RuntimeException {
+
+    private final long reintentarDespuesSegundos;
+
+    public ServicioSaturadoException(String message, long reintentarDespuesSegundos) {
+        super(message);
+        this.reintentarDespuesSegundos = reintentarDespuesSegundos;
+    }
+
+    public long getReintentarDespuesSegundos() {
+        return reintentarDespuesSegundos;
+    }
+}
@@ -0,0 +1,15 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.exception;
+
+public class TransaccionDuplicadaException extends RuntimeException {
+
+    private final String codigoUnico;
+
+    public TransaccionDuplicadaException(String codigoUnico) {
+        super("Código único de transacción duplicado: " + codigoUnico);
+        this.codigoUnico = codigoUnico;
+    }
+
+    public String getCodigoUnico() {
+        return codigoUnico;
+    }
+}
@@ -21,4 +21,20 @@ public class Gateway {
 
     @Column(name = "NOMBRE", length = 100, nullable = false)
     private String nombre;
+
+    /** Transacciones por segundo admitidas para el gateway; null usa el valor por defecto. */
+    @Column(name = "LIMITE_POR_SEGUNDO")
+    private Integer limitePorSegundo;
+
+    /** Transacciones que el gateway puede enviar de golpe por encima de su tasa. */
+    @Column(name = "RAFAGA")
+    private Integer rafaga;
+
+    /** Peso del gateway en el reparto de la capacidad del nodo cuando está saturado. */
+    @Column(name = "PESO")
+    private Integer peso;
+
+    /** Plazo por defecto de sus transacciones en milisegundos; null usa el valor por defecto. */
+    @Column(name = "PLAZO_MS")
+    private Integer plazoMs;
 } 
\ No newline at end of file
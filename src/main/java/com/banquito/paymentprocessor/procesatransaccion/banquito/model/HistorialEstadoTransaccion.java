@@ -7,6 +7,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,7 +19,8 @@ import lombok.NoArgsConstructor;
 public class HistorialEstadoTransaccion {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "historialEstadoSeq")
+    @SequenceGenerator(name = "historialEstadoSeq", sequenceName = "SEQ_HISTORIAL_ESTADO_TRANSACCION", allocationSize = 50)
     private Long id;
     
     @Column(name = "COD_HISTORIAL_ESTADO", length = 10, nullable = false)
@@ -0,0 +1,66 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reverso de débito pendiente. Se registra cuando el crédito al comercio falla después
+ * de un débito exitoso, y lo procesa en segundo plano {@code CompensacionReversosService}.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "REVERSO_PENDIENTE")
+public class ReversoPendiente {
+
+    public static final String ESTADO_PENDIENTE = "PEN";
+    public static final String ESTADO_EN_PROCESO = "PRO";
+    public static final String ESTADO_COMPLETADO = "COM";
+    public static final String ESTADO_FALLIDO = "FAL";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reversoPendienteSeq")
+    @SequenceGenerator(name = "reversoPendienteSeq", sequenceName = "SEQ_REVERSO_PENDIENTE", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "COD_TRANSACCION", length = 10, nullable = false, unique = true)
+    private String codTransaccion;
+
+    @Column(name = "ESTADO", length = 3, nullable = false)
+    private String estado;
+
+    @Column(name = "INTENTOS", nullable = false)
+    private Integer intentos;
+
+    /** Diferido y cuotas de la transacción original, que no se persisten en TRANSACCION. */
+    @Column(name = "DIFERIDO")
+    private Boolean diferido;
+
+    @Column(name = "CUOTAS")
+    private Integer cuotas;
+
+    @Column(name = "PROXIMO_INTENTO", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    /** Mientras el reverso está en proceso, otro nodo no lo toma antes de esta fecha. */
+    @Column(name = "BLOQUEADO_HASTA")
+    private LocalDateTime bloqueadoHasta;
+
+    @Column(name = "ULTIMO_ERROR", length = 200)
+    private String ultimoError;
+
+    @Column(name = "FECHA_CREACION", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "FECHA_ACTUALIZACION", nullable = false)
+    private LocalDateTime fechaActualizacion;
+}
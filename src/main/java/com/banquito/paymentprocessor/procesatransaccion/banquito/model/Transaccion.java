@@ -7,6 +7,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -29,7 +30,8 @@ import lombok.ToString;
 public class Transaccion {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaccionSeq")
+    @SequenceGenerator(name = "transaccionSeq", sequenceName = "SEQ_TRANSACCION", allocationSize = 50)
     @EqualsAndHashCode.Include
     @Schema(description = "Identificador único de la transacción", example = "1")
     private Long id;
@@ -42,7 +44,7 @@ public class Transaccion {
     
     @NotNull
     @Size(max = 64)
-    @Column(name = "CODIGO_UNICO", length = 64, nullable = false)
+    @Column(name = "CODIGO_UNICO", length = 64, nullable = false, unique = true)
     @Schema(description = "Código único para identificar la transacción", example = "TRANS20240301123456")
     private String codigoUnico;
     
@@ -2,6 +2,7 @@ package com.banquito.paymentprocessor.procesatransaccion.banquito.repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
@@ -19,6 +20,13 @@ public interface HistorialEstadoTransaccionRepository extends JpaRepository<Hist
      */
     List<HistorialEstadoTransaccion> findByCodTransaccionOrderByFechaEstadoCambioDesc(String codTransaccion);
     
+    /**
+     * Último estado registrado en el historial de la transacción
+     * @param codTransaccion Código de transacción
+     * @return El registro más reciente, si existe
+     */
+    Optional<HistorialEstadoTransaccion> findFirstByCodTransaccionOrderByFechaEstadoCambioDescIdDesc(String codTransaccion);
+    
     /**
      * Busca el historial de estados por código de transacción
      * @param codTransaccion Código de transacción
@@ -0,0 +1,19 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.repository;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.ReversoPendiente;
+
+@Repository
+public interface ReversoPendienteRepository extends JpaRepository<ReversoPendiente, Long>, ReversoPendienteRepositoryCustom {
+
+    boolean existsByCodTransaccion(String codTransaccion);
+
+    long countByEstadoIn(Collection<String> estados);
+
+    Optional<ReversoPendiente> findFirstByEstadoInOrderByFechaCreacionAsc(Collection<String> estados);
+}
@@ -0,0 +1,21 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.repository;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Fragmento con la toma de reversos, que necesita FOR UPDATE SKIP LOCKED de PostgreSQL.
+ */
+public interface ReversoPendienteRepositoryCustom {
+
+    /**
+     * Toma los reversos listos para procesar: pendientes cuyo próximo intento ya llegó, o en
+     * proceso cuyo bloqueo venció (el nodo que los tomó se detuvo). Los marca en proceso,
+     * incrementa sus intentos y los bloquea durante el arriendo. Varios nodos pueden
+     * llamarlo a la vez sin tomar el mismo reverso.
+     * @param limite Máximo de reversos a tomar
+     * @param arriendo Tiempo durante el cual el reverso queda reservado para este nodo
+     * @return Los ids de los reversos tomados
+     */
+    List<Long> tomarListos(int limite, Duration arriendo);
+}
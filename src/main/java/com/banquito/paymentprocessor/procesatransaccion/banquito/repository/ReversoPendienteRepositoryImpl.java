@@ -0,0 +1,45 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.repository;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.ReversoPendiente;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Implementación del fragmento {@link ReversoPendienteRepositoryCustom}. La selección y
+ * la marca se hacen en una sola sentencia; SKIP LOCKED evita que dos nodos esperen por
+ * las mismas filas o las tomen dos veces.
+ */
+@RequiredArgsConstructor
+public class ReversoPendienteRepositoryImpl implements ReversoPendienteRepositoryCustom {
+
+    private static final String SQL_TOMAR_LISTOS = """
+            UPDATE REVERSO_PENDIENTE
+               SET ESTADO = ?,
+                   INTENTOS = INTENTOS + 1,
+                   BLOQUEADO_HASTA = now() + make_interval(secs => ?),
+                   FECHA_ACTUALIZACION = now()
+             WHERE ID IN (
+                    SELECT ID
+                      FROM REVERSO_PENDIENTE
+                     WHERE (ESTADO = ? AND PROXIMO_INTENTO <= now())
+                        OR (ESTADO = ? AND BLOQUEADO_HASTA < now())
+                     ORDER BY PROXIMO_INTENTO
+                     LIMIT ?
+                       FOR UPDATE SKIP LOCKED)
+            RETURNING ID
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> tomarListos(int limite, Duration arriendo) {
+        return jdbcTemplate.queryForList(SQL_TOMAR_LISTOS, Long.class,
+                ReversoPendiente.ESTADO_EN_PROCESO, arriendo.toSeconds(),
+                ReversoPendiente.ESTADO_PENDIENTE, ReversoPendiente.ESTADO_EN_PROCESO, limite);
+    }
+}
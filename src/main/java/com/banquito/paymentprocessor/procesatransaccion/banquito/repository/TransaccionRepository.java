@@ -12,7 +12,7 @@ import org.springframework.stereotype.Repository;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
 
 @Repository
-public interface TransaccionRepository extends JpaRepository<Transaccion, Long> {
+public interface TransaccionRepository extends JpaRepository<Transaccion, Long>, TransaccionRepositoryCustom {
     
     Optional<Transaccion> findByCodTransaccion(String codTransaccion);
     
@@ -0,0 +1,37 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+
+public interface TransaccionRepositoryCustom {
+
+    /**
+     * Actualiza el estado de la transacción e inserta sus registros de historial en una
+     * sola sentencia, sin cargar la entidad en el contexto de persistencia.
+     * @param codTransaccion Código de la transacción
+     * @param estado Nuevo estado
+     * @param swiftBancoTarjeta SWIFT del banco emisor; si es null se conserva el actual
+     * @param historial Registros de historial a insertar, en orden cronológico
+     * @return El estado resultante, o vacío si la transacción no existe
+     */
+    Optional<String> actualizarEstadoConHistorial(String codTransaccion, String estado, String swiftBancoTarjeta,
+            List<HistorialEstadoTransaccion> historial);
+
+    /**
+     * Página de transacciones detenidas en un estado no terminal (PEN, VMA, VFR, DEB, CRE
+     * o REV), de una sola partición (ID módulo particiones), recorrida por id (paginación
+     * por clave). Se excluyen las que ya tienen un reverso en la cola: su compensación
+     * está en curso.
+     * @param antesDe Solo transacciones creadas antes de esta fecha
+     * @param despuesDeId Último id de la página anterior (0 para empezar)
+     * @param particiones Número total de particiones
+     * @param particion Partición a recorrer, entre 0 y particiones - 1
+     * @param limite Tamaño de la página
+     * @return Los ids de la página, en orden ascendente
+     */
+    List<Long> buscarIdsDetenidas(LocalDateTime antesDe, long despuesDeId, int particiones,
+            int particion, int limite);
+}
@@ -0,0 +1,128 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Implementación del fragmento {@link TransaccionRepositoryCustom}. El UPDATE y el INSERT
+ * del historial viajan en un solo CTE de PostgreSQL: el INSERT solo se ejecuta si el
+ * UPDATE encontró la transacción, y ambos forman parte de la misma sentencia atómica.
+ * Los ids del historial se toman de la misma secuencia que usa Hibernate. Con el
+ * optimizador pooled-lo cada nextval reserva un bloque de {@code allocationSize} ids
+ * (INCREMENT BY 50); la sentencia toma un solo nextval por cada 50 registros y numera
+ * los registros dentro del bloque, igual que Hibernate. Así no se gasta un bloque por
+ * registro ni se choca con los ids que Hibernate asigna en memoria.
+ */
+@RequiredArgsConstructor
+public class TransaccionRepositoryImpl implements TransaccionRepositoryCustom {
+
+    private static final String SQL_ACTUALIZAR_ESTADO = """
+            WITH actualizada AS (
+                UPDATE TRANSACCION
+                   SET ESTADO = ?,
+                       SWIFT_BANCO_TARJETA = COALESCE(?, SWIFT_BANCO_TARJETA)
+                 WHERE COD_TRANSACCION = ?
+             RETURNING COD_TRANSACCION, ESTADO
+            ), bloques AS (
+                SELECT b.bloque, nextval('SEQ_HISTORIAL_ESTADO_TRANSACCION') AS base
+                  FROM generate_series(0, (? - 1) / 50) AS b(bloque)
+                 WHERE EXISTS (SELECT 1 FROM actualizada)
+            ), historial AS (
+                INSERT INTO HISTORIAL_ESTADO_TRANSACCION
+                       (ID, COD_HISTORIAL_ESTADO, COD_TRANSACCION, ESTADO, MENSAJE, FECHA_ESTADO_CAMBIO)
+                SELECT k.base + (h.orden - 1) % 50, h.cod_historial, a.COD_TRANSACCION, h.estado, h.mensaje, h.fecha
+                  FROM actualizada a
+                 CROSS JOIN unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::timestamp[])
+                       WITH ORDINALITY AS h(cod_historial, estado, mensaje, fecha, orden)
+                  JOIN bloques k ON k.bloque = (h.orden - 1) / 50
+                 ORDER BY h.orden
+            )
+            SELECT ESTADO FROM actualizada
+            """;
+
+    // Los estados se escriben literalmente para que el planificador use el índice parcial
+    private static final String SQL_BUSCAR_DETENIDAS = """
+            SELECT t.ID
+              FROM TRANSACCION t
+             WHERE t.ESTADO IN ('PEN', 'VMA', 'VFR', 'DEB', 'CRE', 'REV')
+               AND t.FECHA_TRANSACCION < ?
+               AND t.ID > ?
+               AND MOD(t.ID, ?) = ?
+               AND NOT EXISTS (SELECT 1 FROM REVERSO_PENDIENTE r WHERE r.COD_TRANSACCION = t.COD_TRANSACCION)
+             ORDER BY t.ID
+             LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<String> actualizarEstadoConHistorial(String codTransaccion, String estado,
+            String swiftBancoTarjeta, List<HistorialEstadoTransaccion> historial) {
+        int total = historial.size();
+        String[] codigos = new String[total];
+        String[] estados = new String[total];
+        String[] mensajes = new String[total];
+        Timestamp[] fechas = new Timestamp[total];
+        for (int i = 0; i < total; i++) {
+            HistorialEstadoTransaccion registro = historial.get(i);
+            codigos[i] = registro.getCodHistorialEstado();
+            estados[i] = registro.getEstado();
+            mensajes[i] = registro.getMensaje();
+            fechas[i] = Timestamp.valueOf(registro.getFechaEstadoCambio());
+        }
+
+        return jdbcTemplate.execute((ConnectionCallback<Optional<String>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SQL_ACTUALIZAR_ESTADO)) {
+                Array arregloCodigos = connection.createArrayOf("varchar", codigos);
+                Array arregloEstados = connection.createArrayOf("varchar", estados);
+                Array arregloMensajes = connection.createArrayOf("varchar", mensajes);
+                Array arregloFechas = connection.createArrayOf("timestamp", fechas);
+                ps.setString(1, estado);
+                ps.setString(2, swiftBancoTarjeta);
+                ps.setString(3, codTransaccion);
+                ps.setInt(4, total);
+                ps.setArray(5, arregloCodigos);
+                ps.setArray(6, arregloEstados);
+                ps.setArray(7, arregloMensajes);
+                ps.setArray(8, arregloFechas);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? Optional.of(rs.getString(1)) : Optional.empty();
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<Long> buscarIdsDetenidas(LocalDateTime antesDe, long despuesDeId, int particiones,
+            int particion, int limite) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SQL_BUSCAR_DETENIDAS)) {
+                ps.setTimestamp(1, Timestamp.valueOf(antesDe));
+                ps.setLong(2, despuesDeId);
+                ps.setInt(3, particiones);
+                ps.setInt(4, particion);
+                ps.setInt(5, limite);
+                List<Long> ids = new ArrayList<>(limite);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+}
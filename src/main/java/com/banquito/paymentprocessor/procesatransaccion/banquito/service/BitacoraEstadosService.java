@@ -0,0 +1,315 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.config.TransaccionRedisSerializer;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bitácora de escritura diferida para los cambios de estado de las transacciones.
+ * Las transiciones intermedias (VMA, VFR) se acumulan en memoria y se escriben en
+ * un solo lote junto con la siguiente transición que exige persistencia inmediata,
+ * o cuando se cumple el retardo máximo configurado.
+ *
+ * Persisten de inmediato:
+ * - Los estados finales (COM, REC, ERR, FRA, REV_COM, ERR_IRRECUPERABLE).
+ * - Los estados previos a mover dinero (DEB, CRE, REV), que se escriben antes de
+ *   llamar al core bancario. Así, tras una caída, el último estado en base de datos
+ *   indica si pudo haber movimiento de dinero. El estado PEN se guarda al crear la
+ *   transacción, por lo que nunca queda una transacción sin rastro.
+ *
+ * Cada lote guarda una copia de la transacción tomada al registrar su última transición;
+ * no se lee el objeto del pipeline, que sigue cambiando. Las escrituras de un mismo código
+ * se hacen una a la vez (bloqueo por código), así una escritura diferida que tarda nunca
+ * se confirma después de la transición siguiente. La revisión periódica no toma lotes con
+ * una transición de persistencia inmediata: esos los escribe el hilo que la registró.
+ *
+ * Si falla la escritura de un lote, las transiciones previas a mover dinero (DEB, CRE,
+ * REV) se descartan: el llamador recibe el error y no llama al core, así que no deben
+ * quedar en el historial. El resto se reintenta con espera exponencial. Un lote sin estado
+ * final se descarta tras {@code MAXIMO_INTENTOS}: la recuperación de transacciones detenidas
+ * concilia esas transacciones. Un lote con estado final nunca se descarta; sigue en memoria
+ * y se reintenta con la espera limitada a {@code app.bitacora.espera-maxima-reintento-ms}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BitacoraEstadosService {
+
+    private static final int LONGITUD_MAXIMA_MENSAJE = 200;
+    private static final int MAXIMO_INTENTOS = 5;
+    private static final int BLOQUEOS = 64;
+
+    private static final Set<String> ESTADOS_PERSISTENCIA_INMEDIATA = Set.of(
+            TransaccionService.ESTADO_PROCESO_DEBITO,
+            TransaccionService.ESTADO_PROCESO_CREDITO,
+            TransaccionService.ESTADO_PROCESO_REVERSO,
+            TransaccionService.ESTADO_COMPLETADA,
+            TransaccionService.ESTADO_RECHAZADA,
+            TransaccionService.ESTADO_ERROR,
+            TransaccionService.ESTADO_FRAUDE,
+            TransaccionService.ESTADO_REVERSADA,
+            TransaccionService.ESTADO_ERROR_IRRECUPERABLE);
+
+    private static final Set<String> ESTADOS_PREVIOS_AL_DINERO = Set.of(
+            TransaccionService.ESTADO_PROCESO_DEBITO,
+            TransaccionService.ESTADO_PROCESO_CREDITO,
+            TransaccionService.ESTADO_PROCESO_REVERSO);
+
+    private final TransaccionRepository transaccionRepository;
+    private final TransaccionCacheStore cacheTransacciones;
+
+    private final ConcurrentHashMap<String, Pendiente> pendientes = new ConcurrentHashMap<>();
+    private final ReentrantLock[] bloqueos = new ReentrantLock[BLOQUEOS];
+    private final TransaccionRedisSerializer copiador = new TransaccionRedisSerializer();
+
+    {
+        for (int i = 0; i < BLOQUEOS; i++) {
+            bloqueos[i] = new ReentrantLock();
+        }
+    }
+
+    @Value("${app.bitacora.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${app.bitacora.retardo-maximo-ms:500}")
+    private long retardoMaximoMs;
+
+    @Value("${app.bitacora.espera-maxima-reintento-ms:30000}")
+    private long esperaMaximaReintentoMs;
+
+    /**
+     * Registra una transición de estado. Si el estado exige persistencia inmediata
+     * se escribe en este mismo hilo junto con las transiciones acumuladas.
+     * @param transaccion La transacción con el nuevo estado ya asignado
+     * @param estado El nuevo estado
+     * @param mensaje Detalle del cambio de estado
+     */
+    public void registrar(Transaccion transaccion, String estado, String mensaje) {
+        HistorialEstadoTransaccion historial = construirHistorial(transaccion.getCodTransaccion(), estado, mensaje);
+
+        if (!habilitada) {
+            persistir(transaccion, List.of(historial));
+            return;
+        }
+
+        boolean inmediata = ESTADOS_PERSISTENCIA_INMEDIATA.contains(estado);
+        Transaccion copia = copiador.deserialize(copiador.serialize(transaccion));
+        pendientes.compute(transaccion.getCodTransaccion(), (codigo, pendiente) -> {
+            if (pendiente == null) {
+                pendiente = new Pendiente(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retardoMaximoMs));
+            }
+            pendiente.transaccion = copia;
+            pendiente.historial.add(historial);
+            pendiente.inmediata |= inmediata;
+            return pendiente;
+        });
+
+        if (inmediata) {
+            escribir(transaccion.getCodTransaccion(), true);
+        } else {
+            log.debug("Transición {} de la transacción {} diferida", estado, transaccion.getCodTransaccion());
+        }
+    }
+
+    /**
+     * Escribe las transiciones acumuladas que superaron el retardo máximo.
+     */
+    @Scheduled(fixedDelayString = "${app.bitacora.intervalo-revision-ms:100}")
+    public void escribirVencidas() {
+        long ahora = System.nanoTime();
+        pendientes.forEach((codigo, pendiente) -> {
+            if (pendiente.inmediata || ahora - pendiente.vencimientoNanos < 0) {
+                return;
+            }
+            ReentrantLock bloqueo = bloqueo(codigo);
+            bloqueo.lock();
+            try {
+                // Se toma solo si sigue vencido y sin transiciones inmediatas, atómico con registrar
+                Pendiente[] tomado = new Pendiente[1];
+                pendientes.computeIfPresent(codigo, (cod, actual) -> {
+                    if (actual.inmediata || ahora - actual.vencimientoNanos < 0) {
+                        return actual;
+                    }
+                    tomado[0] = actual;
+                    return null;
+                });
+                if (tomado[0] != null) {
+                    escribirLote(codigo, tomado[0], false);
+                }
+            } catch (Exception e) {
+                log.error("Error al escribir transiciones diferidas de la transacción {}: {}", codigo, e.getMessage());
+            } finally {
+                bloqueo.unlock();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void escribirTodas() {
+        log.info("Escribiendo {} transacciones con transiciones pendientes antes de apagar", pendientes.size());
+        pendientes.keySet().forEach(codigo -> {
+            try {
+                escribir(codigo, false);
+            } catch (Exception e) {
+                log.error("Error al escribir transiciones pendientes de la transacción {}: {}", codigo, e.getMessage());
+            }
+        });
+    }
+
+    public int getTransaccionesPendientes() {
+        return pendientes.size();
+    }
+
+    /**
+     * Crea el registro de historial truncando el mensaje a la longitud de la columna.
+     */
+    public static HistorialEstadoTransaccion construirHistorial(String codTransaccion, String estado, String mensaje) {
+        // Truncar mensaje si es necesario (máximo 200 caracteres)
+        String mensajeTruncado;
+        if (mensaje == null) {
+            mensajeTruncado = "Sin información adicional";
+        } else if (mensaje.length() > LONGITUD_MAXIMA_MENSAJE) {
+            mensajeTruncado = mensaje.substring(0, LONGITUD_MAXIMA_MENSAJE - 3) + "...";
+        } else {
+            mensajeTruncado = mensaje;
+        }
+
+        HistorialEstadoTransaccion historial = new HistorialEstadoTransaccion();
+        historial.setCodHistorialEstado(GeneradorCodigos.nuevoCodigo());
+        historial.setCodTransaccion(codTransaccion);
+        historial.setEstado(estado);
+        historial.setMensaje(mensajeTruncado);
+        historial.setFechaEstadoCambio(LocalDateTime.now());
+        return historial;
+    }
+
+    private void escribir(String codTransaccion, boolean propagarError) {
+        ReentrantLock bloqueo = bloqueo(codTransaccion);
+        bloqueo.lock();
+        try {
+            // remove y compute sobre la misma clave son atómicos: ninguna transición se
+            // agrega a un lote que ya fue retirado para escritura
+            Pendiente pendiente = pendientes.remove(codTransaccion);
+            if (pendiente != null) {
+                escribirLote(codTransaccion, pendiente, propagarError);
+            }
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private void escribirLote(String codTransaccion, Pendiente pendiente, boolean propagarError) {
+        if (pendiente.historial.isEmpty()) {
+            return;
+        }
+        try {
+            persistir(pendiente.transaccion, pendiente.historial);
+        } catch (Exception e) {
+            reencolar(codTransaccion, pendiente);
+            if (propagarError) {
+                throw e;
+            }
+        }
+    }
+
+    private ReentrantLock bloqueo(String codTransaccion) {
+        return bloqueos[Math.floorMod(codTransaccion.hashCode(), BLOQUEOS)];
+    }
+
+    private void persistir(Transaccion transaccion, List<HistorialEstadoTransaccion> historial) {
+        // Estado e historial se escriben en una sola sentencia, sin merge de la entidad
+        Optional<String> estadoPersistido;
+        try {
+            estadoPersistido = transaccionRepository.actualizarEstadoConHistorial(
+                    transaccion.getCodTransaccion(), transaccion.getEstado(),
+                    transaccion.getSwiftBancoTarjeta(), historial);
+        } catch (Exception e) {
+            log.error("Error al actualizar estado de transacción en PostgreSQL: {}", e.getMessage(), e);
+            throw new RuntimeException("Error al actualizar transacción en base de datos", e);
+        }
+        if (estadoPersistido.isEmpty()) {
+            log.error("La transacción {} no existe en PostgreSQL", transaccion.getCodTransaccion());
+            throw new RuntimeException("Intento de actualizar una transacción inexistente");
+        }
+        log.info("Transacción {} persistida con estado {} ({} transiciones)",
+                transaccion.getCodTransaccion(), estadoPersistido.get(), historial.size());
+
+        // La caché se actualiza una sola vez con el último estado y las transiciones del lote
+        try {
+            cacheTransacciones.registrarTransiciones(transaccion, List.copyOf(historial));
+        } catch (Exception e) {
+            log.error("Error al actualizar transacción en Redis: {}", e.getMessage(), e);
+        }
+    }
+
+    private void reencolar(String codTransaccion, Pendiente fallido) {
+        // El llamador no llegó al core: esas transiciones no ocurrieron
+        fallido.historial.removeIf(registro -> ESTADOS_PREVIOS_AL_DINERO.contains(registro.getEstado()));
+        if (fallido.historial.isEmpty()) {
+            return;
+        }
+        String ultimoEstado = fallido.historial.get(fallido.historial.size() - 1).getEstado();
+        fallido.transaccion.setEstado(ultimoEstado);
+        // Ningún hilo espera este lote: lo reintenta la revisión periódica
+        fallido.inmediata = false;
+        fallido.intentos++;
+        boolean conEstadoFinal = fallido.historial.stream().anyMatch(registro -> esFinal(registro.getEstado()));
+        if (fallido.intentos >= MAXIMO_INTENTOS) {
+            if (!conEstadoFinal) {
+                log.error("Se descartan {} transiciones de la transacción {} tras {} intentos: {}",
+                        fallido.historial.size(), codTransaccion, fallido.intentos, fallido.historial);
+                return;
+            }
+            // El estado final es el resultado de un movimiento de dinero: se reintenta hasta escribirlo
+            log.error("No se pudo escribir el estado final de la transacción {} tras {} intentos, se sigue reintentando: {}",
+                    codTransaccion, fallido.intentos, fallido.historial);
+        }
+        // Espera exponencial entre reintentos mientras la base de datos no responde, con tope
+        long esperaMs = Math.min(retardoMaximoMs << Math.min(fallido.intentos, MAXIMO_INTENTOS), esperaMaximaReintentoMs);
+        fallido.vencimientoNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        pendientes.compute(codTransaccion, (codigo, actual) -> {
+            if (actual != null) {
+                // Conservar el orden: primero las transiciones que fallaron; el estado es el más reciente
+                fallido.historial.addAll(actual.historial);
+                fallido.transaccion = actual.transaccion;
+                fallido.inmediata |= actual.inmediata;
+            }
+            return fallido;
+        });
+    }
+
+    private static boolean esFinal(String estado) {
+        return ESTADOS_PERSISTENCIA_INMEDIATA.contains(estado) && !ESTADOS_PREVIOS_AL_DINERO.contains(estado);
+    }
+
+    private static class Pendiente {
+        // Copia con el estado de la última transición registrada
+        private volatile Transaccion transaccion;
+        private final List<HistorialEstadoTransaccion> historial = new ArrayList<>();
+        private volatile long vencimientoNanos;
+        private volatile boolean inmediata;
+        private int intentos;
+
+        private Pendiente(long vencimientoNanos) {
+            this.vencimientoNanos = vencimientoNanos;
+        }
+    }
+}
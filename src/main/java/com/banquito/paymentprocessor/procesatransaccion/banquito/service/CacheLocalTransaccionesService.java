@@ -0,0 +1,302 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.config.TransaccionRedisSerializer;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caché en memoria (L1) de transacciones por código, delante de Redis. Las consultas de
+ * estado de los gateways se repiten mientras la transacción está en curso y, sobre todo,
+ * cuando ya terminó; una transacción en estado final no cambia, así que se conserva
+ * durante app.cache-local.ttl-terminal-segundos. Las que siguen en curso se conservan
+ * solo app.cache-local.ttl-en-curso-ms.
+ *
+ * Cada nodo que actualiza una transacción en Redis publica una invalidación por pub/sub
+ * y los demás nodos descartan su copia. Para que una lectura de Redis que empezó antes
+ * de la invalidación no vuelva a guardar el estado anterior, la invalidación deja una
+ * marca con un número de secuencia y solo se guardan lecturas posteriores a ella. Si un
+ * mensaje de invalidación se pierde, la copia en curso vence por tiempo.
+ *
+ * Se guarda la transacción serializada: cada consulta recibe su propia instancia y la
+ * copia no cambia aunque el llamador modifique el objeto.
+ *
+ * También se recuerdan durante app.cache-local.ttl-inexistente-ms los códigos que no
+ * existen en la base de datos, para que las consultas repetidas o los recorridos de
+ * códigos al azar no lleguen a PostgreSQL. Se consultan solo después de Redis, donde
+ * una transacción recién creada ya está.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheLocalTransaccionesService implements MessageListener {
+
+    public static final String CANAL_INVALIDACION = "procesatransaccion:transacciones:invalidacion";
+
+    static final Set<String> ESTADOS_FINALES = Set.of(
+            TransaccionService.ESTADO_COMPLETADA,
+            TransaccionService.ESTADO_RECHAZADA,
+            TransaccionService.ESTADO_ERROR,
+            TransaccionService.ESTADO_FRAUDE,
+            TransaccionService.ESTADO_REVERSADA,
+            TransaccionService.ESTADO_ERROR_IRRECUPERABLE);
+
+    private static final byte[] INEXISTENTE = new byte[0];
+
+    // Al superar el máximo se desaloja hasta esta proporción, para no desalojar en cada inserción
+    private static final double PROPORCION_TRAS_DESALOJO = 0.9;
+
+    private final String idNodo = UUID.randomUUID().toString();
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.cache-local.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${app.cache-local.maximo-entradas:10000}")
+    private int maximoEntradas;
+
+    @Value("${app.cache-local.ttl-terminal-segundos:300}")
+    private long ttlTerminalSegundos;
+
+    @Value("${app.cache-local.ttl-en-curso-ms:1000}")
+    private long ttlEnCursoMs;
+
+    @Value("${app.cache-local.ttl-inexistente-ms:2000}")
+    private long ttlInexistenteMs;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+    private final ReentrantLock desalojo = new ReentrantLock();
+    private final TransaccionRedisSerializer serializador = new TransaccionRedisSerializer();
+    private LongSupplier reloj = System::currentTimeMillis;
+
+    private Counter aciertos;
+    private Counter fallos;
+    private Counter inexistentes;
+    private Counter desalojadas;
+
+    /**
+     * Copia guardada; sin datos es la marca de una invalidación y con
+     * {@link #INEXISTENTE} un código que no existe.
+     */
+    private static final class Entrada {
+        final byte[] datos;
+        final long secuencia;
+        final long vence;
+        volatile long ultimoAcceso;
+
+        Entrada(byte[] datos, long secuencia, long vence, long ahora) {
+            this.datos = datos;
+            this.secuencia = secuencia;
+            this.vence = vence;
+            this.ultimoAcceso = ahora;
+        }
+    }
+
+    @PostConstruct
+    void inicializar() {
+        aciertos = meterRegistry.counter("cache.local.transacciones", "resultado", "acierto");
+        fallos = meterRegistry.counter("cache.local.transacciones", "resultado", "fallo");
+        inexistentes = meterRegistry.counter("cache.local.transacciones", "resultado", "inexistente");
+        desalojadas = meterRegistry.counter("cache.local.transacciones.desalojadas");
+        Gauge.builder("cache.local.transacciones.tamano", entradas, Map::size)
+                .description("Entradas en la caché local de transacciones, incluidas las marcas de invalidación")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Una copia de la transacción, o null si no está en la caché o venció
+     */
+    public Transaccion obtener(String codTransaccion) {
+        if (!habilitada || codTransaccion == null) {
+            return null;
+        }
+        Entrada entrada = entradas.get(codTransaccion);
+        long ahora = reloj.getAsLong();
+        if (entrada == null || entrada.datos == null || entrada.datos == INEXISTENTE || entrada.vence <= ahora) {
+            if (entrada != null && entrada.vence <= ahora) {
+                entradas.remove(codTransaccion, entrada);
+            }
+            fallos.increment();
+            return null;
+        }
+        entrada.ultimoAcceso = ahora;
+        aciertos.increment();
+        return serializador.deserialize(entrada.datos);
+    }
+
+    /**
+     * @return true si hace poco se confirmó que el código no existe en la base de datos
+     */
+    public boolean esInexistente(String codTransaccion) {
+        if (!habilitada || codTransaccion == null) {
+            return false;
+        }
+        Entrada entrada = entradas.get(codTransaccion);
+        if (entrada == null || entrada.datos != INEXISTENTE || entrada.vence <= reloj.getAsLong()) {
+            return false;
+        }
+        inexistentes.increment();
+        return true;
+    }
+
+    /**
+     * Recuerda que el código no existe, salvo que desde {@code marca} se haya guardado o
+     * invalidado.
+     */
+    public void registrarInexistente(String codTransaccion, long marca) {
+        if (!habilitada || codTransaccion == null) {
+            return;
+        }
+        long ahora = reloj.getAsLong();
+        Entrada nueva = new Entrada(INEXISTENTE, marca, ahora + ttlInexistenteMs, ahora);
+        entradas.compute(codTransaccion, (cod, actual) -> actual != null && actual.secuencia > marca ? actual : nueva);
+        desalojarSiExcede();
+    }
+
+    /**
+     * Se toma antes de leer de Redis o de la base de datos y se entrega a
+     * {@link #guardarLeida} o {@link #registrarInexistente}.
+     */
+    public long marca() {
+        return secuencia.get();
+    }
+
+    /**
+     * Guarda una transacción leída de Redis o de la base de datos, salvo que desde
+     * {@code marca} haya llegado una invalidación o una versión más nueva.
+     */
+    public void guardarLeida(Transaccion transaccion, long marca) {
+        if (!habilitada || transaccion == null || transaccion.getCodTransaccion() == null) {
+            return;
+        }
+        Entrada nueva = crearEntrada(transaccion, marca);
+        entradas.compute(transaccion.getCodTransaccion(),
+                (cod, actual) -> actual != null && actual.secuencia > marca ? actual : nueva);
+        desalojarSiExcede();
+    }
+
+    /**
+     * Reemplaza la copia local con la versión que se está escribiendo en Redis. Los demás
+     * nodos se avisan con {@link #publicarInvalidacion} una vez escrita.
+     */
+    public void actualizar(Transaccion transaccion) {
+        if (!habilitada || transaccion == null || transaccion.getCodTransaccion() == null) {
+            return;
+        }
+        entradas.put(transaccion.getCodTransaccion(), crearEntrada(transaccion, secuencia.incrementAndGet()));
+        desalojarSiExcede();
+    }
+
+    /**
+     * Descarta la copia local y la de los demás nodos.
+     */
+    public void invalidar(String codTransaccion) {
+        if (!habilitada || codTransaccion == null) {
+            return;
+        }
+        marcarInvalidada(codTransaccion);
+        publicarInvalidacion(codTransaccion);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String contenido = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separador = contenido.indexOf(':');
+        if (!habilitada || separador < 0 || contenido.startsWith(idNodo + ":")) {
+            return;
+        }
+        marcarInvalidada(contenido.substring(separador + 1));
+    }
+
+    private void marcarInvalidada(String codTransaccion) {
+        // La marca dura lo mismo que una copia en curso: más que cualquier lectura de Redis pendiente
+        long ahora = reloj.getAsLong();
+        entradas.put(codTransaccion, new Entrada(null, secuencia.incrementAndGet(), ahora + ttlEnCursoMs, ahora));
+        desalojarSiExcede();
+    }
+
+    /**
+     * Avisa a los demás nodos que descarten su copia de la transacción.
+     */
+    public void publicarInvalidacion(String codTransaccion) {
+        if (!habilitada) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CANAL_INVALIDACION, idNodo + ":" + codTransaccion);
+        } catch (Exception e) {
+            // Los demás nodos descartan su copia en curso al vencer
+            log.warn("No se pudo publicar la invalidación de la transacción {}: {}", codTransaccion, e.getMessage());
+        }
+    }
+
+    private Entrada crearEntrada(Transaccion transaccion, long secuenciaEntrada) {
+        long ahora = reloj.getAsLong();
+        long ttlMs = ESTADOS_FINALES.contains(transaccion.getEstado()) ? ttlTerminalSegundos * 1000 : ttlEnCursoMs;
+        return new Entrada(serializador.serialize(transaccion), secuenciaEntrada, ahora + ttlMs, ahora);
+    }
+
+    /**
+     * Desaloja las entradas vencidas y, si no alcanza, las de acceso más antiguo. Un solo
+     * hilo desaloja a la vez; los demás siguen sin esperar.
+     */
+    private void desalojarSiExcede() {
+        if (entradas.size() <= maximoEntradas || !desalojo.tryLock()) {
+            return;
+        }
+        try {
+            long ahora = reloj.getAsLong();
+            int objetivo = (int) (maximoEntradas * PROPORCION_TRAS_DESALOJO);
+            List<Candidato> vigentes = new ArrayList<>(entradas.size());
+            int eliminadas = 0;
+            for (Map.Entry<String, Entrada> e : entradas.entrySet()) {
+                if (e.getValue().vence <= ahora) {
+                    eliminadas += entradas.remove(e.getKey(), e.getValue()) ? 1 : 0;
+                } else {
+                    // ultimoAcceso cambia con cada lectura: se ordena sobre una copia fija
+                    vigentes.add(new Candidato(e.getKey(), e.getValue(), e.getValue().ultimoAcceso));
+                }
+            }
+            if (vigentes.size() > objetivo) {
+                Candidato[] orden = vigentes.toArray(new Candidato[0]);
+                Arrays.sort(orden, Comparator.comparingLong(Candidato::ultimoAcceso));
+                for (int i = 0; i < orden.length - objetivo; i++) {
+                    eliminadas += entradas.remove(orden[i].codigo(), orden[i].entrada()) ? 1 : 0;
+                }
+            }
+            desalojadas.increment(eliminadas);
+        } finally {
+            desalojo.unlock();
+        }
+    }
+
+    private record Candidato(String codigo, Entrada entrada, long ultimoAcceso) {
+    }
+}
@@ -0,0 +1,188 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.config.PresupuestoTokens;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Solicitudes de cobertura (hedging) para la validación con la marca, cuyo endpoint
+ * (API Gateway/Lambda) tiene una cola de latencia larga por arranques en frío.
+ *
+ * Si la solicitud no responde dentro del percentil configurado de las latencias
+ * recientes, se envía una segunda solicitud idéntica; gana la primera respuesta exitosa
+ * y la otra se cancela. Las coberturas consumen un presupuesto de tokens proporcional
+ * al tráfico, de modo que nunca superan ese porcentaje de las solicitudes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CoberturaMarcaService {
+
+    private static final int TAMANO_MUESTRA = 256;
+    private static final int RECALCULAR_CADA = 32;
+
+    private final ExecutorService validacionExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.marca.cobertura.habilitada:false}")
+    private boolean habilitada;
+
+    @Value("${app.marca.cobertura.percentil:95}")
+    private double percentil;
+
+    @Value("${app.marca.cobertura.proporcion-maxima:0.05}")
+    private double proporcionMaxima;
+
+    @Value("${app.marca.cobertura.maximo-tokens:10}")
+    private int maximoTokens;
+
+    @Value("${app.marca.cobertura.minimo-muestras:50}")
+    private int minimoMuestras;
+
+    @Value("${app.marca.cobertura.umbral-minimo-ms:50}")
+    private long umbralMinimoMs;
+
+    private final AtomicLongArray latencias = new AtomicLongArray(TAMANO_MUESTRA);
+    private final AtomicLong muestras = new AtomicLong();
+    private volatile long umbralMs = -1;
+
+    private PresupuestoTokens presupuesto;
+    private Counter disparadas;
+    private Counter ganadas;
+    private Counter sinPresupuesto;
+
+    @PostConstruct
+    void inicializar() {
+        presupuesto = new PresupuestoTokens(proporcionMaxima, maximoTokens);
+        disparadas = meterRegistry.counter("marca.cobertura", "resultado", "disparada");
+        ganadas = meterRegistry.counter("marca.cobertura", "resultado", "ganadora");
+        sinPresupuesto = meterRegistry.counter("marca.cobertura", "resultado", "sin_presupuesto");
+        Gauge.builder("marca.cobertura.umbral", this, CoberturaMarcaService::getUmbralMs)
+                .description("Latencia (ms) a partir de la cual se envía la solicitud de cobertura")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta la llamada a la marca, con cobertura si está habilitada y ya hay
+     * suficientes muestras de latencia.
+     */
+    public <T> T ejecutar(Callable<T> llamada) throws Exception {
+        if (!habilitada) {
+            return llamada.call();
+        }
+        presupuesto.registrarSolicitud();
+        long umbral = this.umbralMs;
+        if (umbral < 0) {
+            return medir(llamada);
+        }
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(validacionExecutor);
+        Callable<T> medida = TransaccionContextHolder.conPlazo(() -> medir(llamada));
+        Future<T> primaria = completion.submit(medida);
+        Future<T> cobertura = null;
+        try {
+            Future<T> terminada = completion.poll(umbral, TimeUnit.MILLISECONDS);
+            if (terminada != null) {
+                return obtener(terminada);
+            }
+            if (!presupuesto.intentarConsumir()) {
+                sinPresupuesto.increment();
+                return obtener(primaria);
+            }
+
+            log.debug("Marca sin respuesta en {} ms, se envía solicitud de cobertura", umbral);
+            disparadas.increment();
+            cobertura = completion.submit(medida);
+
+            Future<T> primera = completion.take();
+            try {
+                T resultado = primera.get();
+                contarGanadora(primera, cobertura);
+                return resultado;
+            } catch (ExecutionException e) {
+                // La primera respuesta fue un error: se espera la otra solicitud
+                log.debug("Primera respuesta de marca fallida, se espera la otra: {}", e.getCause().getMessage());
+                Future<T> segunda = completion.take();
+                T resultado = obtener(segunda);
+                contarGanadora(segunda, cobertura);
+                return resultado;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            primaria.cancel(true);
+            if (cobertura != null) {
+                cobertura.cancel(true);
+            }
+        }
+    }
+
+    public long getUmbralMs() {
+        return umbralMs;
+    }
+
+    private void contarGanadora(Future<?> ganadora, Future<?> cobertura) {
+        if (ganadora == cobertura) {
+            ganadas.increment();
+        }
+    }
+
+    private <T> T obtener(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T medir(Callable<T> llamada) throws Exception {
+        long inicio = System.nanoTime();
+        T resultado = llamada.call();
+        registrarLatencia(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        return resultado;
+    }
+
+    private void registrarLatencia(long latenciaMs) {
+        long indice = muestras.getAndIncrement();
+        latencias.set((int) (indice % TAMANO_MUESTRA), latenciaMs);
+        long total = indice + 1;
+        if (total >= minimoMuestras && total % RECALCULAR_CADA == 0) {
+            recalcularUmbral((int) Math.min(total, TAMANO_MUESTRA));
+        }
+    }
+
+    private void recalcularUmbral(int cantidad) {
+        long[] copia = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            copia[i] = latencias.get(i);
+        }
+        Arrays.sort(copia);
+        int posicion = (int) Math.ceil(percentil / 100.0 * cantidad) - 1;
+        umbralMs = Math.max(umbralMinimoMs, copia[Math.max(0, posicion)]);
+        log.debug("Umbral de cobertura de marca recalculado: p{} = {} ms", percentil, umbralMs);
+    }
+}
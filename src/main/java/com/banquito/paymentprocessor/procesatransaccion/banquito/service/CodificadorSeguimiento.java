@@ -0,0 +1,54 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+
+/**
+ * Formato de las entradas del seguimiento de una transacción en la caché: una cadena por
+ * transición con código, estado, fecha y mensaje separados por el carácter 0x1F. El
+ * mensaje va al final y puede contener cualquier otro carácter.
+ */
+final class CodificadorSeguimiento {
+
+    static final char SEPARADOR_CAMPOS = '\u001F';
+    static final char SEPARADOR_ENTRADAS = '\u001E';
+
+    private CodificadorSeguimiento() {
+    }
+
+    static String codificar(HistorialEstadoTransaccion historial) {
+        return historial.getCodHistorialEstado() + SEPARADOR_CAMPOS + historial.getEstado() + SEPARADOR_CAMPOS
+                + historial.getFechaEstadoCambio() + SEPARADOR_CAMPOS
+                + (historial.getMensaje() != null ? historial.getMensaje() : "");
+    }
+
+    static HistorialEstadoTransaccion decodificar(String codTransaccion, String entrada) {
+        String[] campos = entrada.split(String.valueOf(SEPARADOR_CAMPOS), 4);
+        if (campos.length < 4) {
+            throw new IllegalArgumentException("Entrada de seguimiento inválida: " + entrada);
+        }
+        HistorialEstadoTransaccion historial = new HistorialEstadoTransaccion();
+        historial.setCodHistorialEstado(campos[0]);
+        historial.setCodTransaccion(codTransaccion);
+        historial.setEstado(campos[1]);
+        historial.setFechaEstadoCambio(LocalDateTime.parse(campos[2]));
+        historial.setMensaje(campos[3]);
+        return historial;
+    }
+
+    /**
+     * @param entradas Entradas en orden cronológico
+     * @return Las transiciones de la más reciente a la más antigua, como las devuelve la
+     *         base de datos
+     */
+    static List<HistorialEstadoTransaccion> decodificarTodas(String codTransaccion, List<String> entradas) {
+        List<HistorialEstadoTransaccion> historial = new ArrayList<>(entradas.size());
+        for (int i = entradas.size() - 1; i >= 0; i--) {
+            historial.add(decodificar(codTransaccion, entradas.get(i)));
+        }
+        return historial;
+    }
+}
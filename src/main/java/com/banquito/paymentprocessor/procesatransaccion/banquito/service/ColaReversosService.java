@@ -0,0 +1,169 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.ReversoPendiente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.ReversoPendienteRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cola persistente de reversos de débito (tabla REVERSO_PENDIENTE). El reverso se
+ * registra en base de datos antes de responder al gateway, de modo que sobrevive a
+ * reinicios del nodo; lo procesa {@link CompensacionReversosService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ColaReversosService {
+
+    private static final List<String> ESTADOS_ACTIVOS =
+            List.of(ReversoPendiente.ESTADO_PENDIENTE, ReversoPendiente.ESTADO_EN_PROCESO);
+
+    private final ReversoPendienteRepository reversoPendienteRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.reversos.intentos-maximos:10}")
+    private int intentosMaximos;
+
+    @Value("${app.reversos.espera-inicial-segundos:5}")
+    private long esperaInicialSegundos;
+
+    @Value("${app.reversos.espera-maxima-segundos:600}")
+    private long esperaMaximaSegundos;
+
+    @Value("${app.reversos.arriendo-segundos:120}")
+    private long arriendoSegundos;
+
+    private final AtomicLong pendientes = new AtomicLong();
+    private final AtomicLong retrasoSegundos = new AtomicLong();
+
+    @PostConstruct
+    void inicializar() {
+        Gauge.builder("reversos.pendientes", pendientes, AtomicLong::get)
+                .description("Reversos de débito pendientes o en proceso")
+                .register(meterRegistry);
+        Gauge.builder("reversos.retraso", retrasoSegundos, AtomicLong::get)
+                .description("Antigüedad del reverso activo más antiguo")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra el reverso del débito de la transacción. Si ya estaba registrado no hace nada.
+     */
+    @Transactional
+    public void encolar(Transaccion transaccion, Boolean diferido, Integer cuotas) {
+        if (reversoPendienteRepository.existsByCodTransaccion(transaccion.getCodTransaccion())) {
+            log.warn("El reverso de la transacción {} ya estaba registrado", transaccion.getCodTransaccion());
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        ReversoPendiente reverso = new ReversoPendiente();
+        reverso.setCodTransaccion(transaccion.getCodTransaccion());
+        reverso.setEstado(ReversoPendiente.ESTADO_PENDIENTE);
+        reverso.setIntentos(0);
+        reverso.setDiferido(diferido);
+        reverso.setCuotas(cuotas);
+        reverso.setProximoIntento(ahora);
+        reverso.setFechaCreacion(ahora);
+        reverso.setFechaActualizacion(ahora);
+        reversoPendienteRepository.save(reverso);
+        meterRegistry.counter("reversos.encolados").increment();
+        log.info("Reverso de débito registrado para transacción {}", transaccion.getCodTransaccion());
+    }
+
+    /**
+     * Toma hasta {@code limite} reversos listos y los reserva para este nodo.
+     */
+    @Transactional
+    public List<Long> tomar(int limite) {
+        return reversoPendienteRepository.tomarListos(limite, Duration.ofSeconds(arriendoSegundos));
+    }
+
+    public Optional<ReversoPendiente> obtener(Long id) {
+        return reversoPendienteRepository.findById(id);
+    }
+
+    /**
+     * Indica si el intento en curso (ya contado al tomar el reverso) es el último.
+     */
+    public boolean esUltimoIntento(ReversoPendiente reverso) {
+        return reverso.getIntentos() >= intentosMaximos;
+    }
+
+    @Transactional
+    public void completar(ReversoPendiente reverso) {
+        reverso.setEstado(ReversoPendiente.ESTADO_COMPLETADO);
+        reverso.setBloqueadoHasta(null);
+        reverso.setUltimoError(null);
+        reverso.setFechaActualizacion(LocalDateTime.now());
+        reversoPendienteRepository.save(reverso);
+        meterRegistry.counter("reversos.procesados", "resultado", "completado").increment();
+    }
+
+    /**
+     * Reprograma el reverso tras un error transitorio, con espera exponencial y jitter.
+     */
+    @Transactional
+    public void reprogramar(ReversoPendiente reverso, String error) {
+        long techo = Math.min(esperaMaximaSegundos, esperaInicialSegundos << Math.min(reverso.getIntentos(), 20));
+        long esperaSegundos = techo / 2 + ThreadLocalRandom.current().nextLong(techo / 2 + 1);
+        LocalDateTime ahora = LocalDateTime.now();
+        reverso.setEstado(ReversoPendiente.ESTADO_PENDIENTE);
+        reverso.setProximoIntento(ahora.plusSeconds(esperaSegundos));
+        reverso.setBloqueadoHasta(null);
+        reverso.setUltimoError(truncar(error));
+        reverso.setFechaActualizacion(ahora);
+        reversoPendienteRepository.save(reverso);
+        meterRegistry.counter("reversos.procesados", "resultado", "reintento").increment();
+        log.warn("Reverso de transacción {} reprogramado en {} s (intento {}): {}",
+                reverso.getCodTransaccion(), esperaSegundos, reverso.getIntentos(), error);
+    }
+
+    /**
+     * Marca el reverso como fallido de forma definitiva; requiere intervención manual.
+     */
+    @Transactional
+    public void descartar(ReversoPendiente reverso, String error) {
+        reverso.setEstado(ReversoPendiente.ESTADO_FALLIDO);
+        reverso.setBloqueadoHasta(null);
+        reverso.setUltimoError(truncar(error));
+        reverso.setFechaActualizacion(LocalDateTime.now());
+        reversoPendienteRepository.save(reverso);
+        meterRegistry.counter("reversos.procesados", "resultado", "fallido").increment();
+        log.error("Reverso de transacción {} fallido tras {} intentos: {}",
+                reverso.getCodTransaccion(), reverso.getIntentos(), error);
+    }
+
+    /**
+     * Actualiza las métricas de tamaño y retraso de la cola.
+     */
+    public void actualizarMetricas() {
+        pendientes.set(reversoPendienteRepository.countByEstadoIn(ESTADOS_ACTIVOS));
+        retrasoSegundos.set(reversoPendienteRepository.findFirstByEstadoInOrderByFechaCreacionAsc(ESTADOS_ACTIVOS)
+                .map(reverso -> Duration.between(reverso.getFechaCreacion(), LocalDateTime.now()).toSeconds())
+                .orElse(0L));
+    }
+
+    private static String truncar(String error) {
+        if (error == null || error.length() <= 200) {
+            return error;
+        }
+        return error.substring(0, 197) + "...";
+    }
+}
@@ -0,0 +1,103 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionRechazadaException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.ReversoPendiente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Procesa en segundo plano los reversos registrados en {@link ColaReversosService},
+ * fuera del hilo de la solicitud. Cada ciclo toma como máximo tantos reversos como
+ * hilos libres tenga el executor de reversos, así el paralelismo queda acotado y los
+ * reversos que no caben siguen en la cola para otro nodo o el siguiente ciclo.
+ *
+ * Resultado de cada reverso:
+ * - Aprobado por el core: la transacción pasa a REV_COM.
+ * - Rechazado por el core, o con error en el último intento: ERR_IRRECUPERABLE.
+ * - Error transitorio: la transacción sigue en REV y el reverso se reprograma.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CompensacionReversosService {
+
+    private final ColaReversosService colaReversos;
+    private final TransaccionService transaccionService;
+    private final TransaccionRepository transaccionRepository;
+    private final ThreadPoolTaskExecutor reversoExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.reversos.habilitado:true}")
+    private boolean habilitado;
+
+    @Scheduled(fixedDelayString = "${app.reversos.intervalo-ms:1000}")
+    public void procesarPendientes() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            int libres = reversoExecutor.getMaxPoolSize() - reversoExecutor.getActiveCount()
+                    - reversoExecutor.getQueueSize();
+            if (libres > 0) {
+                List<Long> tomados = colaReversos.tomar(libres);
+                tomados.forEach(this::despachar);
+            }
+            colaReversos.actualizarMetricas();
+        } catch (Exception e) {
+            log.error("Error al consultar la cola de reversos: {}", e.getMessage(), e);
+        }
+    }
+
+    private void despachar(Long idReverso) {
+        try {
+            reversoExecutor.execute(() -> procesar(idReverso));
+        } catch (RejectedExecutionException e) {
+            // El reverso queda en proceso y se retoma cuando venza su bloqueo
+            log.warn("Executor de reversos lleno, el reverso {} se retomará más tarde", idReverso);
+        }
+    }
+
+    void procesar(Long idReverso) {
+        Optional<ReversoPendiente> encontrado = colaReversos.obtener(idReverso);
+        if (encontrado.isEmpty()) {
+            return;
+        }
+        ReversoPendiente reverso = encontrado.get();
+        Optional<Transaccion> transaccion = transaccionRepository.findByCodTransaccion(reverso.getCodTransaccion());
+        if (transaccion.isEmpty()) {
+            colaReversos.descartar(reverso, "Transacción inexistente");
+            return;
+        }
+
+        // El reverso usa el diferido y las cuotas de la transacción original
+        TransaccionContextHolder.setDiferido(reverso.getDiferido());
+        TransaccionContextHolder.setCuotas(reverso.getCuotas());
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        try {
+            transaccionService.reversarDebito(transaccion.get(), colaReversos.esUltimoIntento(reverso));
+            colaReversos.completar(reverso);
+        } catch (TransaccionRechazadaException e) {
+            colaReversos.descartar(reverso, e.getMessage());
+        } catch (Exception e) {
+            colaReversos.reprogramar(reverso, e.getMessage());
+        } finally {
+            muestra.stop(meterRegistry.timer("reversos.duracion"));
+            TransaccionContextHolder.clear();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ServicioSaturadoException;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Control de admisión al inicio del pipeline. Rechaza transacciones nuevas con 503 y
+ * Retry-After cuando el nodo ya no puede cumplir la latencia objetivo, en lugar de
+ * aceptarlas y dejar que todas se vuelvan lentas hasta agotar Tomcat y Hikari.
+ *
+ * Se rechaza si:
+ * - Se alcanzó el máximo de transacciones en curso del nodo.
+ * - La espera en cola del executor asíncrono o la latencia total (promedios móviles)
+ *   superan su objetivo, con al menos un mínimo de transacciones en curso para que
+ *   una sola transacción lenta no cierre la admisión.
+ * - Hay hilos esperando conexión en el pool de Hikari por encima del umbral.
+ * - El circuito del core bancario está abierto: la transacción no podría debitar.
+ *
+ * La decisión se toma solo al admitir. Una transacción admitida siempre completa su
+ * secuencia de débito, crédito o reverso.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ControlAdmisionService {
+
+    private static final String SERVICIO_BANCO = "banco-service";
+    private static final double ALFA = 0.1;
+
+    private final DataSource dataSource;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.admision.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${app.admision.maximo-en-curso:300}")
+    private int maximoEnCurso;
+
+    @Value("${app.admision.minimo-en-curso:8}")
+    private int minimoEnCurso;
+
+    @Value("${app.admision.latencia-objetivo-ms:3000}")
+    private long latenciaObjetivoMs;
+
+    @Value("${app.admision.espera-cola-objetivo-ms:500}")
+    private long esperaColaObjetivoMs;
+
+    @Value("${app.admision.maximo-esperando-conexion:10}")
+    private int maximoEsperandoConexion;
+
+    @Value("${app.admision.reintentar-despues-segundos:2}")
+    private long reintentarDespuesSegundos;
+
+    private int enCurso;
+    private double latenciaMs;
+    private double esperaColaMs;
+    private volatile HikariPoolMXBean poolHikari;
+
+    /**
+     * Transacción admitida. Se cierra al terminar el pipeline, con lo que se registra
+     * su latencia total si llegó a iniciar el proceso.
+     */
+    public final class Admision implements AutoCloseable {
+
+        private final long admitidaNanos = System.nanoTime();
+        private final boolean contabilizada;
+        private boolean iniciada;
+        private boolean cerrada;
+
+        private Admision(boolean contabilizada) {
+            this.contabilizada = contabilizada;
+        }
+
+        /**
+         * Marca el inicio del pipeline; el tiempo desde la admisión es la espera en cola.
+         */
+        public void iniciarProceso() {
+            synchronized (ControlAdmisionService.this) {
+                if (!contabilizada || iniciada || cerrada) {
+                    return;
+                }
+                iniciada = true;
+                registrarEsperaCola(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - admitidaNanos));
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (ControlAdmisionService.this) {
+                if (!contabilizada || cerrada) {
+                    return;
+                }
+                cerrada = true;
+                enCurso--;
+                // Solo las que llegaron al pipeline aportan latencia; un rechazo posterior a la admisión
+                // (límite del gateway, cola llena) bajaría el promedio con duraciones cercanas a 0 ms
+                if (iniciada) {
+                    registrarLatencia(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - admitidaNanos));
+                }
+            }
+        }
+    }
+
+    @PostConstruct
+    void inicializar() {
+        Gauge.builder("admision.en_curso", this, ControlAdmisionService::getEnCurso)
+                .description("Transacciones admitidas que aún no terminan")
+                .register(meterRegistry);
+        Gauge.builder("admision.latencia.promedio", this, ControlAdmisionService::getLatenciaMs)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admite una transacción nueva.
+     * @throws ServicioSaturadoException si el nodo no puede atenderla a tiempo
+     */
+    public Admision admitir() {
+        if (!habilitada) {
+            return new Admision(false);
+        }
+        String motivo = motivoRechazo();
+        if (motivo != null) {
+            meterRegistry.counter("admision.rechazadas", "motivo", motivo).increment();
+            log.warn("Transacción rechazada por control de admisión ({}), {} en curso", motivo, getEnCurso());
+            throw new ServicioSaturadoException("Servicio saturado, reintente más tarde", reintentarDespuesSegundos);
+        }
+        return new Admision(true);
+    }
+
+    public synchronized int getEnCurso() {
+        return enCurso;
+    }
+
+    public synchronized double getLatenciaMs() {
+        return latenciaMs;
+    }
+
+    private String motivoRechazo() {
+        synchronized (this) {
+            if (enCurso >= maximoEnCurso) {
+                return "en_curso";
+            }
+            if (enCurso >= minimoEnCurso) {
+                if (esperaColaMs > esperaColaObjetivoMs) {
+                    return "espera_cola";
+                }
+                if (latenciaMs > latenciaObjetivoMs) {
+                    return "latencia";
+                }
+            }
+            // Se reserva el lugar antes de consultar las fuentes externas
+            enCurso++;
+        }
+
+        String motivo = null;
+        HikariPoolMXBean pool = obtenerPoolHikari();
+        if (pool != null && pool.getThreadsAwaitingConnection() > maximoEsperandoConexion) {
+            motivo = "conexiones_bd";
+        } else if (circuitBreakerRegistry.find(SERVICIO_BANCO)
+                .map(breaker -> breaker.getState() == CircuitBreaker.State.OPEN)
+                .orElse(false)) {
+            motivo = "circuito_banco";
+        }
+        if (motivo != null) {
+            synchronized (this) {
+                enCurso--;
+            }
+        }
+        return motivo;
+    }
+
+    private void registrarEsperaCola(long esperaMs) {
+        esperaColaMs += ALFA * (esperaMs - esperaColaMs);
+    }
+
+    private void registrarLatencia(long duracionMs) {
+        latenciaMs += ALFA * (duracionMs - latenciaMs);
+    }
+
+    private HikariPoolMXBean obtenerPoolHikari() {
+        HikariPoolMXBean pool = poolHikari;
+        if (pool == null) {
+            try {
+                if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                    // El MXBean solo existe una vez que el pool se inicializó
+                    pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                    poolHikari = pool;
+                }
+            } catch (SQLException e) {
+                log.debug("No se pudo obtener el pool de Hikari: {}", e.getMessage());
+            }
+        }
+        return pool;
+    }
+}
@@ -2,6 +2,7 @@ package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
 
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,6 +19,8 @@ import lombok.extern.slf4j.Slf4j;
 public class GatewayService {
     
     private final GatewayRepository gatewayRepository;
+    private final RegistroGatewayService registroGatewayService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional(readOnly = true)
     public List<Gateway> findAll() {
@@ -41,7 +44,9 @@ public class GatewayService {
             throw new IllegalArgumentException("Ya existe un gateway con el código: " + gateway.getCodGateway());
         }
         
-        return this.gatewayRepository.save(gateway);
+        Gateway creado = this.gatewayRepository.save(gateway);
+        this.eventPublisher.publishEvent(new RegistroGatewayService.GatewayModificado(creado.getCodGateway()));
+        return creado;
     }
     
     @Transactional
@@ -53,8 +58,14 @@ public class GatewayService {
         
         // Actualizar solo los campos permitidos
         existingGateway.setNombre(gateway.getNombre());
+        existingGateway.setLimitePorSegundo(gateway.getLimitePorSegundo());
+        existingGateway.setRafaga(gateway.getRafaga());
+        existingGateway.setPeso(gateway.getPeso());
+        existingGateway.setPlazoMs(gateway.getPlazoMs());
         
-        return this.gatewayRepository.save(existingGateway);
+        Gateway actualizado = this.gatewayRepository.save(existingGateway);
+        this.eventPublisher.publishEvent(new RegistroGatewayService.GatewayModificado(codGateway));
+        return actualizado;
     }
     
     @Transactional
@@ -65,14 +76,14 @@ public class GatewayService {
         Gateway gateway = this.findByCodigo(codGateway);
         
         this.gatewayRepository.delete(gateway);
+        this.eventPublisher.publishEvent(new RegistroGatewayService.GatewayModificado(codGateway));
     }
     
     /**
-     * Verifica si un código de gateway existe en la base de datos
+     * Verifica si un código de gateway está registrado, usando el registro en memoria
      * @param codGateway Código del gateway a verificar
      * @return true si el gateway existe, false en caso contrario
      */
-    @Transactional(readOnly = true)
     public boolean verificarCodigoGateway(String codGateway) {
         log.debug("Verificando si existe gateway con código: {}", codGateway);
         if (codGateway == null || codGateway.trim().isEmpty()) {
@@ -80,6 +91,6 @@ public class GatewayService {
             return false;
         }
         
-        return this.gatewayRepository.existsById(codGateway);
+        return this.registroGatewayService.existe(codGateway);
     }
 } 
\ No newline at end of file
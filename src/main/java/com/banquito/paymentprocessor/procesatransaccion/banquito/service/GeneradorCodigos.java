@@ -0,0 +1,84 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Genera los códigos de 10 caracteres de transacciones e historial (COD_TRANSACCION,
+ * COD_HISTORIAL_ESTADO) sin bloqueos ni llamadas a SecureRandom.
+ *
+ * Cada código es un número de 51 bits escrito en base 36 con ancho fijo:
+ * - 41 bits: milisegundos desde 2024-01-01 (alcanza hasta 2093).
+ * - 4 bits: nodo que lo generó ({@link NodoCodigosService}), para que dos nodos no choquen.
+ * - 6 bits: secuencia dentro del milisegundo.
+ *
+ * Los códigos crecen con el tiempo, también en orden alfabético, por lo que los INSERT
+ * caen al final del índice único. Si en un milisegundo se agota la secuencia o el reloj
+ * retrocede, se toma el milisegundo siguiente en lugar de esperar.
+ */
+public final class GeneradorCodigos {
+
+    public static final int NODOS = 16;
+
+    static final long EPOCA_MS = 1_704_067_200_000L;
+    private static final int BITS_NODO = 4;
+    private static final int BITS_SECUENCIA = 6;
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+    private static final int LONGITUD = 10;
+    private static final char[] DIGITOS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private static final GeneradorCodigos INSTANCIA =
+            new GeneradorCodigos(ThreadLocalRandom.current().nextInt(NODOS), System::currentTimeMillis);
+
+    private final LongSupplier reloj;
+    // Último valor emitido: milisegundo y secuencia, sin el nodo
+    private final AtomicLong ultimo = new AtomicLong();
+    private volatile int nodo;
+
+    GeneradorCodigos(int nodo, LongSupplier reloj) {
+        this.reloj = reloj;
+        asignarNodo(nodo);
+    }
+
+    /**
+     * @return Un código nuevo de 10 caracteres, único entre nodos con distinto número
+     */
+    public static String nuevoCodigo() {
+        return INSTANCIA.siguiente();
+    }
+
+    /**
+     * Fija el número de este nodo, entre 0 y {@link #NODOS} - 1. Lo asigna
+     * {@link NodoCodigosService} al iniciar, antes de atender solicitudes; solo cambia si
+     * se pierde el arriendo del número en Redis.
+     */
+    public static void configurarNodo(int nodo) {
+        INSTANCIA.asignarNodo(nodo);
+    }
+
+    String siguiente() {
+        long ahora = (reloj.getAsLong() - EPOCA_MS) << BITS_SECUENCIA;
+        long valor = ultimo.updateAndGet(previo -> Math.max(previo + 1, ahora));
+        long milisegundo = valor >>> BITS_SECUENCIA;
+        return codificar((milisegundo << (BITS_NODO + BITS_SECUENCIA))
+                | ((long) nodo << BITS_SECUENCIA)
+                | (valor & MASCARA_SECUENCIA));
+    }
+
+    private void asignarNodo(int nodo) {
+        if (nodo < 0 || nodo >= NODOS) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + (NODOS - 1) + ": " + nodo);
+        }
+        this.nodo = nodo;
+    }
+
+    static String codificar(long valor) {
+        char[] codigo = new char[LONGITUD];
+        for (int i = LONGITUD - 1; i >= 0; i--) {
+            codigo[i] = DIGITOS[(int) (valor % DIGITOS.length)];
+            valor /= DIGITOS.length;
+        }
+        return new String(codigo);
+    }
+}
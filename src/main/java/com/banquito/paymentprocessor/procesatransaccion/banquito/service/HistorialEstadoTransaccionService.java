@@ -2,7 +2,6 @@ package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -56,7 +55,7 @@ public class HistorialEstadoTransaccionService {
         
         // Generamos un código único si no viene especificado
         if (historial.getCodHistorialEstado() == null || historial.getCodHistorialEstado().isEmpty()) {
-            historial.setCodHistorialEstado(UUID.randomUUID().toString().substring(0, 10));
+            historial.setCodHistorialEstado(GeneradorCodigos.nuevoCodigo());
         }
         
         // Establecemos la fecha actual si no viene especificada
@@ -0,0 +1,188 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoProcesamiento;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Idempotencia por código único. Antes de procesar, la solicitud reclama su código único
+ * en Redis con SET NX; al terminar se guarda ahí la respuesta final. Si el gateway
+ * reintenta con el mismo código único se le devuelve la respuesta guardada (o el estado
+ * actual, si la primera solicitud sigue en curso) en lugar de procesarla de nuevo.
+ *
+ * El reclamo en curso dura poco (más que el plazo máximo de una transacción) para que
+ * una solicitud que no llegó a registrar la transacción no bloquee el código único; la
+ * respuesta final se conserva durante la ventana de idempotencia. El índice único de
+ * CODIGO_UNICO respalda el control cuando Redis no responde o el registro ya venció.
+ * Mientras {@link SaludRedisService} considera a Redis no disponible no se consulta:
+ * cada solicitud esperaría el plazo del comando antes de llegar al índice único.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotenciaService {
+
+    private static final String PREFIJO_CLAVE = "procesatransaccion:idempotencia:";
+    private static final String SEPARADOR = "|";
+    private static final String MENSAJE_EN_CURSO = "Transacción en proceso";
+    private static final DefaultRedisScript<Long> SCRIPT_LIBERAR = new DefaultRedisScript<>();
+
+    static {
+        SCRIPT_LIBERAR.setLocation(new ClassPathResource("scripts/liberar_arriendo.lua"));
+        SCRIPT_LIBERAR.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TransaccionRepository transaccionRepository;
+    private final MeterRegistry meterRegistry;
+    private final SaludRedisService salud;
+
+    @Value("${app.idempotencia.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${app.idempotencia.reclamo-segundos:60}")
+    private long reclamoSegundos;
+
+    @Value("${app.idempotencia.ventana-horas:24}")
+    private long ventanaHoras;
+
+    /**
+     * Reclama el código único de la transacción, que ya debe tener su código de transacción.
+     * @return Vacío si la solicitud debe procesarse, o la respuesta de la solicitud anterior
+     */
+    public Optional<ResultadoProcesamiento> reclamar(Transaccion transaccion) {
+        if (!aplica(transaccion)) {
+            return Optional.empty();
+        }
+        if (!salud.disponible()) {
+            meterRegistry.counter("idempotencia.omitidas").increment();
+            return Optional.empty();
+        }
+        String clave = PREFIJO_CLAVE + transaccion.getCodigoUnico();
+        String registro;
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(clave,
+                    transaccion.getCodTransaccion(), Duration.ofSeconds(reclamoSegundos)))) {
+                salud.registrarExito();
+                return Optional.empty();
+            }
+            registro = stringRedisTemplate.opsForValue().get(clave);
+            salud.registrarExito();
+        } catch (Exception e) {
+            salud.registrarFalla(e);
+            meterRegistry.counter("idempotencia.errores_redis").increment();
+            log.warn("No se pudo reclamar el código único {} en Redis, se usa el índice único: {}",
+                    transaccion.getCodigoUnico(), e.getMessage());
+            return Optional.empty();
+        }
+        if (registro == null) {
+            // Venció entre las dos operaciones; el índice único cubre el caso
+            return Optional.empty();
+        }
+        try {
+            ResultadoProcesamiento resultado = desdeRegistro(registro);
+            meterRegistry.counter("idempotencia.repetidas",
+                    "resultado", MENSAJE_EN_CURSO.equals(resultado.getMensaje()) ? "en_curso" : "registrada").increment();
+            log.info("Solicitud repetida con código único {}, se devuelve la transacción {}",
+                    transaccion.getCodigoUnico(), resultado.getCodTransaccion());
+            return Optional.of(resultado);
+        } catch (Exception e) {
+            log.warn("No se pudo consultar la transacción original del código único {}, se usa el índice único: {}",
+                    transaccion.getCodigoUnico(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Guarda la respuesta final para los reintentos del gateway.
+     */
+    public void registrar(Transaccion transaccion, String estado, String mensaje) {
+        if (!aplica(transaccion) || !salud.disponible()) {
+            return;
+        }
+        String registro = String.join(SEPARADOR, transaccion.getCodTransaccion(), estado,
+                mensaje != null ? mensaje : "");
+        try {
+            stringRedisTemplate.opsForValue().set(PREFIJO_CLAVE + transaccion.getCodigoUnico(), registro,
+                    Duration.ofHours(ventanaHoras));
+            salud.registrarExito();
+        } catch (Exception e) {
+            salud.registrarFalla(e);
+            log.warn("No se pudo registrar la respuesta del código único {}: {}",
+                    transaccion.getCodigoUnico(), e.getMessage());
+        }
+    }
+
+    /**
+     * Libera el reclamo de una solicitud que no llegó a registrar la transacción, para
+     * que el gateway pueda reintentarla. Se elimina solo si el reclamo sigue siendo suyo
+     * (comparar y eliminar en un script): si venció y otra solicitud lo tomó, se conserva.
+     */
+    public void liberar(Transaccion transaccion) {
+        if (!aplica(transaccion) || !salud.disponible()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(SCRIPT_LIBERAR, List.of(PREFIJO_CLAVE + transaccion.getCodigoUnico()),
+                    transaccion.getCodTransaccion());
+            salud.registrarExito();
+        } catch (Exception e) {
+            salud.registrarFalla(e);
+            log.warn("No se pudo liberar el código único {}: {}", transaccion.getCodigoUnico(), e.getMessage());
+        }
+    }
+
+    /**
+     * Respuesta para una solicitud que chocó con el índice único: la transacción original
+     * ya está en la base de datos. Se vuelve a guardar en Redis para los siguientes reintentos.
+     */
+    public ResultadoProcesamiento respuestaRegistrada(String codigoUnico) {
+        List<Transaccion> existentes = transaccionRepository.findByCodigoUnico(codigoUnico);
+        if (existentes.isEmpty()) {
+            throw new IllegalStateException("No existe la transacción con código único " + codigoUnico);
+        }
+        Transaccion original = existentes.get(0);
+        String mensaje = mensajeRegistrada(original);
+        registrar(original, original.getEstado(), mensaje);
+        meterRegistry.counter("idempotencia.repetidas", "resultado", "base_datos").increment();
+        return ResultadoProcesamiento.repetido(original, original.getEstado(), mensaje);
+    }
+
+    private ResultadoProcesamiento desdeRegistro(String registro) {
+        String[] partes = registro.split("\\" + SEPARADOR, 3);
+        if (partes.length == 3) {
+            return ResultadoProcesamiento.repetido(new Transaccion(partes[0]), partes[1], partes[2]);
+        }
+        // La primera solicitud no terminó de registrar su respuesta: se informa el estado que alcanzó
+        Optional<Transaccion> original = transaccionRepository.findByCodTransaccion(registro);
+        if (original.isPresent()) {
+            return ResultadoProcesamiento.repetido(original.get(), original.get().getEstado(),
+                    mensajeRegistrada(original.get()));
+        }
+        Transaccion pendiente = new Transaccion(registro);
+        pendiente.setEstado(TransaccionService.ESTADO_PENDIENTE);
+        return ResultadoProcesamiento.repetido(pendiente, TransaccionService.ESTADO_PENDIENTE, MENSAJE_EN_CURSO);
+    }
+
+    private String mensajeRegistrada(Transaccion transaccion) {
+        return "Transacción ya registrada en estado " + transaccion.getEstado();
+    }
+
+    private boolean aplica(Transaccion transaccion) {
+        return habilitada && transaccion.getCodigoUnico() != null && !transaccion.getCodigoUnico().isEmpty();
+    }
+}
@@ -0,0 +1,210 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Límite adaptativo de llamadas simultáneas al core bancario (algoritmo de gradiente).
+ *
+ * Se mantienen dos promedios del tiempo de respuesta: uno corto, que refleja la carga
+ * actual, y uno largo, que sirve de referencia. Cuando el tiempo corto supera al largo
+ * (más la tolerancia) el core está encolando y el límite baja en proporción; cuando
+ * se mantiene, el límite crece en la raíz cuadrada del límite actual. Así la
+ * concurrencia se acerca a la capacidad real del core en lugar de saturarlo.
+ *
+ * Al alcanzar el límite, los débitos se rechazan de inmediato (la transacción termina
+ * en ERR sin haber movido dinero), mientras que los créditos y reversos, que completan
+ * un débito ya aplicado, esperan turno en una cola corta.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LimitadorCoreBancarioService {
+
+    private static final String SERVICIO = "banco-service";
+    private static final double ALFA_CORTO = 2.0 / (10 + 1);
+    private static final double ALFA_LARGO = 2.0 / (600 + 1);
+
+    public enum Operacion {
+        DEBITO(false), CREDITO(true), REVERSO(true);
+
+        private final boolean prioritaria;
+
+        Operacion(boolean prioritaria) {
+            this.prioritaria = prioritaria;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.banco.limite.inicial:20}")
+    private int limiteInicial;
+
+    @Value("${app.banco.limite.minimo:4}")
+    private int limiteMinimo;
+
+    @Value("${app.banco.limite.maximo:200}")
+    private int limiteMaximo;
+
+    @Value("${app.banco.limite.tolerancia:1.5}")
+    private double tolerancia;
+
+    @Value("${app.banco.limite.suavizado:0.2}")
+    private double suavizado;
+
+    @Value("${app.banco.limite.cola-maxima:50}")
+    private int colaMaxima;
+
+    @Value("${app.banco.limite.espera-maxima-ms:2000}")
+    private long esperaMaximaMs;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition hayCupo = lock.newCondition();
+    private double limite;
+    private int enVuelo;
+    private int enCola;
+    private double rttCortoNanos;
+    private double rttLargoNanos;
+
+    @PostConstruct
+    void inicializar() {
+        limite = limiteInicial;
+        Gauge.builder("banco.limite.actual", this, LimitadorCoreBancarioService::getLimite)
+                .description("Límite actual de llamadas simultáneas al core bancario")
+                .register(meterRegistry);
+        Gauge.builder("banco.limite.en_vuelo", this, LimitadorCoreBancarioService::getEnVuelo)
+                .register(meterRegistry);
+        Gauge.builder("banco.limite.en_cola", this, LimitadorCoreBancarioService::getEnCola)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta la llamada al core si hay cupo.
+     * @throws ClienteRemotoException con categoría LIMITE_CONCURRENCIA si no se obtuvo cupo;
+     *         en ese caso la solicitud nunca se envió
+     */
+    public <T> T ejecutar(Operacion operacion, Supplier<T> llamada) {
+        int enVueloAlIniciar = adquirir(operacion);
+        long inicio = System.nanoTime();
+        try {
+            return llamada.get();
+        } finally {
+            liberar(System.nanoTime() - inicio, enVueloAlIniciar);
+        }
+    }
+
+    public int getLimite() {
+        lock.lock();
+        try {
+            return (int) limite;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getEnVuelo() {
+        lock.lock();
+        try {
+            return enVuelo;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getEnCola() {
+        lock.lock();
+        try {
+            return enCola;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int adquirir(Operacion operacion) {
+        lock.lock();
+        try {
+            if (enVuelo < (int) limite) {
+                return ++enVuelo;
+            }
+            if (!operacion.prioritaria || enCola >= colaMaxima) {
+                throw rechazar(operacion);
+            }
+
+            enCola++;
+            try {
+                long restanteNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+                while (enVuelo >= (int) limite) {
+                    if (restanteNanos <= 0) {
+                        throw rechazar(operacion);
+                    }
+                    restanteNanos = hayCupo.awaitNanos(restanteNanos);
+                }
+                return ++enVuelo;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw rechazar(operacion);
+            } finally {
+                enCola--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void liberar(long rttNanos, int enVueloAlIniciar) {
+        lock.lock();
+        try {
+            enVuelo--;
+            actualizarLimite(rttNanos, enVueloAlIniciar);
+            hayCupo.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void actualizarLimite(long rttNanos, int enVueloAlIniciar) {
+        if (rttCortoNanos == 0) {
+            rttCortoNanos = rttNanos;
+            rttLargoNanos = rttNanos;
+            return;
+        }
+        rttCortoNanos += ALFA_CORTO * (rttNanos - rttCortoNanos);
+        rttLargoNanos += ALFA_LARGO * (rttNanos - rttLargoNanos);
+        // Si la referencia quedó muy por encima de la latencia actual (tras una degradación
+        // larga), se acerca más rápido para no tolerar una latencia que ya no es normal
+        if (rttLargoNanos > 2 * rttCortoNanos) {
+            rttLargoNanos *= 0.95;
+        }
+
+        double gradiente = Math.max(0.5, Math.min(1.0, tolerancia * rttLargoNanos / rttCortoNanos));
+        double nuevo = limite * gradiente + Math.sqrt(limite);
+        if (nuevo > limite && enVueloAlIniciar < limite / 2) {
+            // Con poca carga no hay evidencia de que el core admita más concurrencia
+            return;
+        }
+        nuevo = limite * (1 - suavizado) + nuevo * suavizado;
+        limite = Math.max(limiteMinimo, Math.min(limiteMaximo, nuevo));
+    }
+
+    private ClienteRemotoException rechazar(Operacion operacion) {
+        meterRegistry.counter("banco.limite.rechazadas", "operacion", operacion.name()).increment();
+        log.warn("Límite de concurrencia hacia el core alcanzado ({} en vuelo, límite {}), {} rechazado",
+                enVuelo, (int) limite, operacion);
+        return new ClienteRemotoException(SERVICIO, CategoriaErrorCliente.LIMITE_CONCURRENCIA, -1,
+                "Core bancario saturado, límite de concurrencia alcanzado", null);
+    }
+}
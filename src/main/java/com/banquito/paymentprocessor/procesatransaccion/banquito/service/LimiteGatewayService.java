@@ -0,0 +1,234 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.LimiteExcedidoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Control de admisión por gateway, para que la ráfaga de un gateway no deje sin
+ * capacidad a los demás. Se aplican dos controles antes de registrar la transacción:
+ *
+ * 1. Cubeta de tokens por gateway (tasa y ráfaga configuradas en la tabla GATEWAY),
+ *    compartida entre nodos mediante un script Lua en Redis. Si Redis no responde se
+ *    usa una cubeta local con la tasa repartida entre los nodos estimados.
+ * 2. Reparto ponderado de la capacidad del nodo: mientras haya holgura cualquier
+ *    gateway puede usarla, pero al acercarse a la saturación cada gateway activo solo
+ *    conserva la parte que le corresponde según su peso.
+ *
+ * Las solicitudes que no pasan se rechazan con {@link LimiteExcedidoException} (429)
+ * en lugar de quedar esperando.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LimiteGatewayService {
+
+    private static final String PREFIJO_CLAVE = "procesatransaccion:limite:gtw:";
+    private static final DefaultRedisScript<List> SCRIPT_CUBETA = new DefaultRedisScript<>();
+
+    static {
+        SCRIPT_CUBETA.setLocation(new ClassPathResource("scripts/limite_gateway.lua"));
+        SCRIPT_CUBETA.setResultType(List.class);
+    }
+
+    private final RegistroGatewayService registroGatewayService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.gateways.limite.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${app.gateways.limite.por-segundo:100}")
+    private int limitePorSegundoPorDefecto;
+
+    @Value("${app.gateways.limite.rafaga:200}")
+    private int rafagaPorDefecto;
+
+    @Value("${app.gateways.limite.peso:1}")
+    private int pesoPorDefecto;
+
+    @Value("${app.gateways.limite.nodos-estimados:2}")
+    private int nodosEstimados;
+
+    @Value("${app.gateways.limite.capacidad-nodo:200}")
+    private int capacidadNodo;
+
+    @Value("${app.gateways.limite.umbral-reparto:0.8}")
+    private double umbralReparto;
+
+    @Value("${app.gateways.limite.pausa-redis-ms:5000}")
+    private long pausaRedisMs;
+
+    private final Map<String, CubetaLocal> cubetasLocales = new ConcurrentHashMap<>();
+    private final Map<String, Activo> activos = new HashMap<>();
+    private int enCursoTotal;
+    private int pesoActivo;
+    private volatile long redisPausadoHastaNanos = System.nanoTime();
+
+    /**
+     * Cupo de procesamiento otorgado a una transacción. Debe cerrarse al terminar el
+     * pipeline, también en el hilo del executor asíncrono.
+     */
+    public final class Cupo implements AutoCloseable {
+
+        private final String codigoGtw;
+        private boolean cerrado;
+
+        private Cupo(String codigoGtw) {
+            this.codigoGtw = codigoGtw;
+        }
+
+        @Override
+        public void close() {
+            synchronized (LimiteGatewayService.this) {
+                if (cerrado || codigoGtw == null) {
+                    return;
+                }
+                cerrado = true;
+                liberar(codigoGtw);
+            }
+        }
+    }
+
+    /**
+     * Admite una transacción del gateway o la rechaza si supera su tasa o su parte de
+     * la capacidad del nodo.
+     * @throws LimiteExcedidoException si la transacción no se admite
+     */
+    public Cupo admitir(String codigoGtw) {
+        if (!habilitado || codigoGtw == null) {
+            return new Cupo(null);
+        }
+
+        Optional<Gateway> gateway = registroGatewayService.obtener(codigoGtw);
+        if (gateway.isEmpty()) {
+            // El registro de la transacción rechaza el gateway desconocido
+            return new Cupo(null);
+        }
+        int limitePorSegundo = Optional.ofNullable(gateway.get().getLimitePorSegundo()).orElse(limitePorSegundoPorDefecto);
+        int rafaga = Optional.ofNullable(gateway.get().getRafaga()).orElse(rafagaPorDefecto);
+        int peso = Optional.ofNullable(gateway.get().getPeso()).orElse(pesoPorDefecto);
+
+        long esperaMs = consumirToken(codigoGtw, limitePorSegundo, rafaga);
+        if (esperaMs > 0) {
+            meterRegistry.counter("gateways.limite.rechazadas", "gateway", codigoGtw, "motivo", "tasa").increment();
+            log.warn("Gateway {} superó su límite de {} transacciones por segundo", codigoGtw, limitePorSegundo);
+            throw new LimiteExcedidoException("Límite de transacciones por segundo excedido para el gateway "
+                    + codigoGtw, Math.max(1, TimeUnit.MILLISECONDS.toSeconds(esperaMs + 999)));
+        }
+
+        if (!ocupar(codigoGtw, peso)) {
+            meterRegistry.counter("gateways.limite.rechazadas", "gateway", codigoGtw, "motivo", "reparto").increment();
+            log.warn("Gateway {} superó su parte de la capacidad del nodo", codigoGtw);
+            throw new LimiteExcedidoException("Capacidad asignada al gateway " + codigoGtw
+                    + " agotada, reintente más tarde", 1);
+        }
+        return new Cupo(codigoGtw);
+    }
+
+    /**
+     * @return 0 si se obtuvo un token, o los milisegundos hasta que haya uno disponible
+     */
+    private long consumirToken(String codigoGtw, int limitePorSegundo, int rafaga) {
+        if (System.nanoTime() - redisPausadoHastaNanos >= 0) {
+            try {
+                List<?> resultado = stringRedisTemplate.execute(SCRIPT_CUBETA, List.of(PREFIJO_CLAVE + codigoGtw),
+                        String.valueOf(limitePorSegundo), String.valueOf(rafaga));
+                if (resultado != null && resultado.size() == 2) {
+                    return ((Number) resultado.get(0)).longValue() == 1 ? 0 : ((Number) resultado.get(1)).longValue();
+                }
+            } catch (Exception e) {
+                // Mientras Redis no responda se evita pagar el tiempo de espera en cada solicitud
+                redisPausadoHastaNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pausaRedisMs);
+                log.warn("No se pudo consultar el límite del gateway {} en Redis, se usa el límite local: {}",
+                        codigoGtw, e.getMessage());
+            }
+        }
+
+        double tasaLocal = Math.max(1.0, (double) limitePorSegundo / Math.max(1, nodosEstimados));
+        double rafagaLocal = Math.max(1.0, (double) rafaga / Math.max(1, nodosEstimados));
+        return cubetasLocales.computeIfAbsent(codigoGtw, codigo -> new CubetaLocal())
+                .consumir(tasaLocal, rafagaLocal);
+    }
+
+    private synchronized boolean ocupar(String codigoGtw, int peso) {
+        Activo activo = activos.get(codigoGtw);
+        if (enCursoTotal >= capacidadNodo) {
+            return false;
+        }
+        if (enCursoTotal >= capacidadNodo * umbralReparto) {
+            // Saturado: el gateway solo conserva su parte proporcional entre los activos
+            int pesoGateway = activo != null ? activo.peso : peso;
+            int pesoTotal = pesoActivo + (activo == null ? peso : 0);
+            double parte = (double) capacidadNodo * pesoGateway / pesoTotal;
+            if (activo != null && activo.enCurso >= parte) {
+                return false;
+            }
+        }
+        if (activo == null) {
+            // El peso se fija mientras el gateway tenga transacciones en curso
+            activo = new Activo(peso);
+            activos.put(codigoGtw, activo);
+            pesoActivo += peso;
+        }
+        activo.enCurso++;
+        enCursoTotal++;
+        return true;
+    }
+
+    private void liberar(String codigoGtw) {
+        Activo activo = activos.get(codigoGtw);
+        if (activo != null && --activo.enCurso <= 0) {
+            activos.remove(codigoGtw);
+            pesoActivo -= activo.peso;
+        }
+        enCursoTotal--;
+    }
+
+    private static class Activo {
+
+        private final int peso;
+        private int enCurso;
+
+        private Activo(int peso) {
+            this.peso = peso;
+        }
+    }
+
+    private static class CubetaLocal {
+
+        private double tokens = -1;
+        private long ultimoNanos;
+
+        private synchronized long consumir(double tasa, double rafaga) {
+            long ahora = System.nanoTime();
+            if (tokens < 0) {
+                tokens = rafaga;
+            } else {
+                tokens = Math.min(rafaga, tokens + (ahora - ultimoNanos) * tasa / TimeUnit.SECONDS.toNanos(1));
+            }
+            ultimoNanos = ahora;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * 1000 / tasa);
+        }
+    }
+}
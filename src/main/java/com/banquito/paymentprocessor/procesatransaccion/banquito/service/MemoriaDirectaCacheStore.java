@@ -0,0 +1,455 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.config.TransaccionRedisSerializer;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caché de transacciones en memoria directa (fuera del heap), local al nodo. Pensada
+ * para despliegues de un solo nodo o sin Redis: no agrega presión al recolector de
+ * basura aunque guarde cientos de miles de transacciones.
+ *
+ * Es una tabla hash de direccionamiento abierto repartida en segmentos, cada uno con su
+ * propio ByteBuffer directo y su bloqueo. Cada entrada ocupa una ranura de tamaño fijo
+ * (app.cache.memoria.tamano-entrada) con la clave y la transacción en el formato binario
+ * de {@link TransaccionRedisSerializer}:
+ *
+ *   estado (1) | vence ms (8) | hash (4) | largo clave (2) | largo valor (2) | clave | valor
+ *
+ * Una clave solo puede estar en las {@link #SONDEO_MAXIMO} ranuras siguientes a su
+ * posición. Si todas están ocupadas y vigentes se desaloja la que vence primero; las
+ * transacciones que no caben en una ranura no se guardan.
+ *
+ * El seguimiento de cada transacción ocupa su propia ranura y se actualiza justo después
+ * de la transacción, no en la misma operación: una lectura intermedia puede ver el estado
+ * nuevo con el seguimiento anterior. Un seguimiento que no cabe en la ranura se descarta y
+ * se lee de la base de datos.
+ */
+@Slf4j
+@Service
+@ConditionalOnExpression("'${app.cache.almacen:redis}' == 'memoria' or !${spring.redis.enabled:true}")
+public class MemoriaDirectaCacheStore implements TransaccionCacheStore {
+
+    static final int SONDEO_MAXIMO = 32;
+
+    private static final int CABECERA = 17;
+    private static final int POS_VENCE = 1;
+    private static final int POS_HASH = 9;
+    private static final int POS_LARGO_CLAVE = 13;
+    private static final int POS_LARGO_VALOR = 15;
+    private static final byte LIBRE = 0;
+    private static final byte OCUPADA = 1;
+    private static final byte BORRADA = 2;
+
+    private static final String PREFIJO_CODIGO = "c:";
+    private static final String PREFIJO_ID = "i:";
+    private static final String PREFIJO_SEGUIMIENTO = "s:";
+    private static final String SEPARADOR_ENTRADAS = String.valueOf(CodificadorSeguimiento.SEPARADOR_ENTRADAS);
+
+    private final MeterRegistry meterRegistry;
+    private final TransaccionRedisSerializer serializador = new TransaccionRedisSerializer();
+    private LongSupplier reloj = System::currentTimeMillis;
+
+    @Value("${redis.transaccion.expiration:3600}")
+    private long expiracionSegundos;
+
+    @Value("${app.cache.seguimiento.maximo-entradas:50}")
+    private int maximoSeguimiento;
+
+    @Value("${app.cache.memoria.capacidad-mb:64}")
+    private int capacidadMb;
+
+    @Value("${app.cache.memoria.tamano-entrada:512}")
+    private int tamanoEntrada;
+
+    @Value("${app.cache.memoria.segmentos:16}")
+    private int cantidadSegmentos;
+
+    private Segmento[] segmentos;
+    private Counter desalojadas;
+    private Counter omitidas;
+
+    public MemoriaDirectaCacheStore(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void inicializar() {
+        int ranurasPorSegmento = (int) ((long) capacidadMb * 1024 * 1024 / tamanoEntrada / cantidadSegmentos);
+        segmentos = new Segmento[cantidadSegmentos];
+        for (int i = 0; i < cantidadSegmentos; i++) {
+            segmentos[i] = new Segmento(ranurasPorSegmento);
+        }
+        desalojadas = meterRegistry.counter("cache.memoria.desalojadas");
+        omitidas = meterRegistry.counter("cache.memoria.omitidas");
+        Gauge.builder("cache.memoria.entradas", this, MemoriaDirectaCacheStore::getEntradas)
+                .description("Ranuras ocupadas en la caché de transacciones fuera del heap, incluidas las vencidas")
+                .register(meterRegistry);
+        log.info("Caché de transacciones en memoria directa: {} MB, {} ranuras de {} bytes",
+                capacidadMb, (long) ranurasPorSegmento * cantidadSegmentos, tamanoEntrada);
+    }
+
+    @Override
+    public void saveTransaccion(Transaccion transaccion) {
+        if (transaccion == null || transaccion.getCodTransaccion() == null) {
+            return;
+        }
+        poner(PREFIJO_CODIGO + transaccion.getCodTransaccion(), serializador.serialize(transaccion), false);
+        if (transaccion.getId() != null) {
+            poner(PREFIJO_ID + transaccion.getId(), transaccion.getCodTransaccion().getBytes(StandardCharsets.UTF_8),
+                    false);
+        }
+    }
+
+    @Override
+    public void updateTransaccion(Transaccion transaccion) {
+        if (transaccion == null || transaccion.getCodTransaccion() == null) {
+            return;
+        }
+        poner(PREFIJO_CODIGO + transaccion.getCodTransaccion(), serializador.serialize(transaccion), false);
+    }
+
+    @Override
+    public void registrarTransiciones(Transaccion transaccion, List<HistorialEstadoTransaccion> transiciones) {
+        updateTransaccion(transaccion);
+        if (transaccion == null || transaccion.getCodTransaccion() == null || transiciones.isEmpty()) {
+            return;
+        }
+        String nuevas = String.join(SEPARADOR_ENTRADAS,
+                transiciones.stream().map(CodificadorSeguimiento::codificar).toList());
+        boolean inicia = TransaccionService.ESTADO_PENDIENTE.equals(transiciones.get(0).getEstado());
+        modificar(PREFIJO_SEGUIMIENTO + transaccion.getCodTransaccion(), actual -> {
+            if (inicia || actual == null) {
+                // Sin la transición inicial el seguimiento quedaría incompleto
+                return inicia ? recortar(nuevas) : null;
+            }
+            return recortar(new String(actual, StandardCharsets.UTF_8) + SEPARADOR_ENTRADAS + nuevas);
+        });
+    }
+
+    @Override
+    public void repoblarSeguimiento(String codTransaccion, List<HistorialEstadoTransaccion> historial) {
+        if (codTransaccion == null || historial == null || historial.isEmpty()) {
+            return;
+        }
+        StringBuilder entradas = new StringBuilder();
+        for (int i = Math.min(historial.size(), maximoSeguimiento) - 1; i >= 0; i--) {
+            entradas.append(CodificadorSeguimiento.codificar(historial.get(i)));
+            if (i > 0) {
+                entradas.append(SEPARADOR_ENTRADAS);
+            }
+        }
+        byte[] nuevo = entradas.toString().getBytes(StandardCharsets.UTF_8);
+        modificar(PREFIJO_SEGUIMIENTO + codTransaccion, actual -> actual == null ? nuevo : null);
+    }
+
+    @Override
+    public List<HistorialEstadoTransaccion> getSeguimiento(String codTransaccion) {
+        if (codTransaccion == null || codTransaccion.isEmpty()) {
+            return null;
+        }
+        byte[] datos = obtener(PREFIJO_SEGUIMIENTO + codTransaccion);
+        if (datos == null) {
+            return null;
+        }
+        try {
+            return CodificadorSeguimiento.decodificarTodas(codTransaccion,
+                    List.of(new String(datos, StandardCharsets.UTF_8).split(SEPARADOR_ENTRADAS)));
+        } catch (Exception e) {
+            log.error("Seguimiento ilegible en la caché en memoria para {}: {}", codTransaccion, e.getMessage());
+            eliminar(PREFIJO_SEGUIMIENTO + codTransaccion);
+            return null;
+        }
+    }
+
+    @Override
+    public void repoblarTransaccion(Transaccion transaccion) {
+        if (transaccion == null || transaccion.getCodTransaccion() == null) {
+            return;
+        }
+        poner(PREFIJO_CODIGO + transaccion.getCodTransaccion(), serializador.serialize(transaccion), true);
+        if (transaccion.getId() != null) {
+            poner(PREFIJO_ID + transaccion.getId(), transaccion.getCodTransaccion().getBytes(StandardCharsets.UTF_8),
+                    true);
+        }
+    }
+
+    @Override
+    public Transaccion getTransaccion(Long id) {
+        if (id == null) {
+            return null;
+        }
+        byte[] codigo = obtener(PREFIJO_ID + id);
+        return codigo != null ? getTransaccionByCodigo(new String(codigo, StandardCharsets.UTF_8)) : null;
+    }
+
+    @Override
+    public Transaccion getTransaccionByCodigo(String codTransaccion) {
+        if (codTransaccion == null || codTransaccion.isEmpty()) {
+            return null;
+        }
+        byte[] datos = obtener(PREFIJO_CODIGO + codTransaccion);
+        try {
+            return datos != null ? serializador.deserialize(datos) : null;
+        } catch (Exception e) {
+            log.error("Transacción {} ilegible en la caché en memoria: {}", codTransaccion, e.getMessage());
+            eliminar(PREFIJO_CODIGO + codTransaccion);
+            return null;
+        }
+    }
+
+    @Override
+    public void deleteTransaccion(Long id) {
+        if (id != null) {
+            eliminar(PREFIJO_ID + id);
+        }
+    }
+
+    @Override
+    public void deleteTransaccionByCodigo(String codTransaccion) {
+        if (codTransaccion != null && !codTransaccion.isEmpty()) {
+            eliminar(PREFIJO_CODIGO + codTransaccion);
+            eliminar(PREFIJO_SEGUIMIENTO + codTransaccion);
+        }
+    }
+
+    public long getEntradas() {
+        long total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.ocupadas;
+        }
+        return total;
+    }
+
+    private void poner(String clave, byte[] valor, boolean soloSiAusente) {
+        byte[] bytesClave = clave.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytesClave);
+        Segmento segmento = segmento(hash);
+        if (CABECERA + bytesClave.length + valor.length > tamanoEntrada) {
+            // Una versión anterior que sí cabía quedaría desactualizada
+            segmento.eliminar(bytesClave, hash);
+            omitidas.increment();
+            return;
+        }
+        segmento.poner(bytesClave, hash, valor, reloj.getAsLong() + expiracionSegundos * 1000, soloSiAusente);
+    }
+
+    /**
+     * Reemplaza el valor de una clave a partir del actual, sin que otra escritura se
+     * intercale.
+     * @param cambio Recibe el valor vigente o null; si devuelve null no se escribe nada
+     */
+    private void modificar(String clave, UnaryOperator<byte[]> cambio) {
+        byte[] bytesClave = clave.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytesClave);
+        segmento(hash).modificar(bytesClave, hash, cambio, reloj.getAsLong() + expiracionSegundos * 1000);
+    }
+
+    private byte[] recortar(String entradas) {
+        String[] partes = entradas.split(SEPARADOR_ENTRADAS);
+        if (partes.length > maximoSeguimiento) {
+            entradas = String.join(SEPARADOR_ENTRADAS,
+                    Arrays.copyOfRange(partes, partes.length - maximoSeguimiento, partes.length));
+        }
+        return entradas.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] obtener(String clave) {
+        byte[] bytesClave = clave.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytesClave);
+        return segmento(hash).obtener(bytesClave, hash);
+    }
+
+    private void eliminar(String clave) {
+        byte[] bytesClave = clave.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytesClave);
+        segmento(hash).eliminar(bytesClave, hash);
+    }
+
+    private Segmento segmento(int hash) {
+        return segmentos[Math.floorMod(hash >>> 16, segmentos.length)];
+    }
+
+    private static int hash(byte[] clave) {
+        int hash = Arrays.hashCode(clave);
+        return hash ^ (hash >>> 15) * 0x9E3779B9;
+    }
+
+    /**
+     * Parte de la tabla con su propio buffer; todas las operaciones toman su bloqueo.
+     */
+    private final class Segmento {
+
+        private final ByteBuffer buffer;
+        private final int ranuras;
+        private final ReentrantLock bloqueo = new ReentrantLock();
+        private volatile int ocupadas;
+
+        Segmento(int ranuras) {
+            this.ranuras = ranuras;
+            this.buffer = ByteBuffer.allocateDirect(ranuras * tamanoEntrada);
+        }
+
+        byte[] obtener(byte[] clave, int hash) {
+            bloqueo.lock();
+            try {
+                int ranura = buscar(clave, hash);
+                if (ranura < 0 || vencida(ranura, reloj.getAsLong())) {
+                    return null;
+                }
+                int inicio = ranura * tamanoEntrada;
+                byte[] valor = new byte[buffer.getShort(inicio + POS_LARGO_VALOR)];
+                buffer.get(inicio + CABECERA + clave.length, valor);
+                return valor;
+            } finally {
+                bloqueo.unlock();
+            }
+        }
+
+        void poner(byte[] clave, int hash, byte[] valor, long vence, boolean soloSiAusente) {
+            bloqueo.lock();
+            try {
+                long ahora = reloj.getAsLong();
+                int inicial = Math.floorMod(hash, ranuras);
+                int reutilizable = -1;
+                int destino = -1;
+                for (int i = 0; i < Math.min(SONDEO_MAXIMO, ranuras); i++) {
+                    int ranura = (inicial + i) % ranuras;
+                    byte estado = buffer.get(ranura * tamanoEntrada);
+                    if (estado == LIBRE) {
+                        destino = ranura;
+                        break;
+                    }
+                    if (estado == OCUPADA && coincide(ranura, clave, hash)) {
+                        if (soloSiAusente && !vencida(ranura, ahora)) {
+                            return;
+                        }
+                        escribir(ranura, clave, hash, valor, vence);
+                        return;
+                    }
+                    if (reutilizable < 0 && (estado == BORRADA || vencida(ranura, ahora))) {
+                        reutilizable = ranura;
+                    }
+                }
+                if (reutilizable >= 0) {
+                    destino = reutilizable;
+                } else if (destino < 0) {
+                    destino = masProximaAVencer(inicial);
+                    desalojadas.increment();
+                }
+                if (buffer.get(destino * tamanoEntrada) != OCUPADA) {
+                    ocupadas++;
+                }
+                escribir(destino, clave, hash, valor, vence);
+            } finally {
+                bloqueo.unlock();
+            }
+        }
+
+        void modificar(byte[] clave, int hash, UnaryOperator<byte[]> cambio, long vence) {
+            bloqueo.lock();
+            try {
+                byte[] nuevo = cambio.apply(obtener(clave, hash));
+                if (nuevo == null) {
+                    return;
+                }
+                if (CABECERA + clave.length + nuevo.length > tamanoEntrada) {
+                    eliminar(clave, hash);
+                    omitidas.increment();
+                    return;
+                }
+                poner(clave, hash, nuevo, vence, false);
+            } finally {
+                bloqueo.unlock();
+            }
+        }
+
+        void eliminar(byte[] clave, int hash) {
+            bloqueo.lock();
+            try {
+                int ranura = buscar(clave, hash);
+                if (ranura >= 0) {
+                    buffer.put(ranura * tamanoEntrada, BORRADA);
+                    ocupadas--;
+                }
+            } finally {
+                bloqueo.unlock();
+            }
+        }
+
+        private int buscar(byte[] clave, int hash) {
+            int inicial = Math.floorMod(hash, ranuras);
+            for (int i = 0; i < Math.min(SONDEO_MAXIMO, ranuras); i++) {
+                int ranura = (inicial + i) % ranuras;
+                byte estado = buffer.get(ranura * tamanoEntrada);
+                if (estado == LIBRE) {
+                    return -1;
+                }
+                if (estado == OCUPADA && coincide(ranura, clave, hash)) {
+                    return ranura;
+                }
+            }
+            return -1;
+        }
+
+        private boolean coincide(int ranura, byte[] clave, int hash) {
+            int inicio = ranura * tamanoEntrada;
+            if (buffer.getInt(inicio + POS_HASH) != hash || buffer.getShort(inicio + POS_LARGO_CLAVE) != clave.length) {
+                return false;
+            }
+            for (int i = 0; i < clave.length; i++) {
+                if (buffer.get(inicio + CABECERA + i) != clave[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean vencida(int ranura, long ahora) {
+            return buffer.getLong(ranura * tamanoEntrada + POS_VENCE) <= ahora;
+        }
+
+        private int masProximaAVencer(int inicial) {
+            int elegida = inicial;
+            long menor = Long.MAX_VALUE;
+            for (int i = 0; i < Math.min(SONDEO_MAXIMO, ranuras); i++) {
+                int ranura = (inicial + i) % ranuras;
+                long vence = buffer.getLong(ranura * tamanoEntrada + POS_VENCE);
+                if (vence < menor) {
+                    menor = vence;
+                    elegida = ranura;
+                }
+            }
+            return elegida;
+        }
+
+        private void escribir(int ranura, byte[] clave, int hash, byte[] valor, long vence) {
+            int inicio = ranura * tamanoEntrada;
+            buffer.putLong(inicio + POS_VENCE, vence);
+            buffer.putInt(inicio + POS_HASH, hash);
+            buffer.putShort(inicio + POS_LARGO_CLAVE, (short) clave.length);
+            buffer.putShort(inicio + POS_LARGO_VALOR, (short) valor.length);
+            buffer.put(inicio + CABECERA, clave);
+            buffer.put(inicio + CABECERA + clave.length, valor);
+            buffer.put(inicio, OCUPADA);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Asigna a esta instancia un número de nodo único para {@link GeneradorCodigos}. Dos
+ * instancias con el mismo número generan códigos iguales en el mismo milisegundo.
+ *
+ * - Con app.codigos.nodo configurado se usa ese número.
+ * - Si no, se toma en Redis un arriendo sobre uno de los {@link GeneradorCodigos#NODOS}
+ *   números libres (SET NX), renovado periódicamente como los arriendos de recuperación.
+ *   Si se pierde el arriendo (Redis no respondió durante todo el arriendo y otra instancia
+ *   tomó el número) se toma otro.
+ * - Si Redis no está disponible o no hay números libres, la aplicación inicia igual con
+ *   un número derivado del nombre del host (modo degradado, con un error en el log) y
+ *   sigue intentando el arriendo en cada renovación. Dos instancias podrían coincidir en
+ *   ese número: el índice único de COD_TRANSACCION rechaza el código repetido.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NodoCodigosService {
+
+    private static final String PREFIJO_ARRIENDO = "procesatransaccion:codigos:nodo:";
+    private static final DefaultRedisScript<Long> SCRIPT_RENOVAR = new DefaultRedisScript<>();
+
+    static {
+        SCRIPT_RENOVAR.setLocation(new ClassPathResource("scripts/renovar_arriendo.lua"));
+        SCRIPT_RENOVAR.setResultType(Long.class);
+    }
+
+    private final String idInstancia = UUID.randomUUID().toString();
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.codigos.nodo:-1}")
+    private int nodoConfigurado;
+
+    @Value("${spring.redis.enabled:true}")
+    private boolean redisHabilitado;
+
+    @Value("${app.codigos.arriendo-segundos:600}")
+    private long arriendoSegundos;
+
+    // Número arrendado en Redis, -1 si el nodo está configurado o aún no hay arriendo
+    private volatile int nodoArrendado = -1;
+    // Número derivado del host mientras no hay arriendo, -1 si no se usa
+    private volatile int nodoProvisional = -1;
+
+    @PostConstruct
+    void asignarNodo() {
+        if (nodoConfigurado >= 0) {
+            GeneradorCodigos.configurarNodo(nodoConfigurado);
+            log.info("Generador de códigos configurado para el nodo {}", nodoConfigurado);
+            return;
+        }
+        if (redisHabilitado && intentarArrendar()) {
+            return;
+        }
+        nodoProvisional = nodoDelHost();
+        GeneradorCodigos.configurarNodo(nodoProvisional);
+        log.error("Sin número de nodo arrendado para los códigos: se usa el nodo {} derivado del host. "
+                + "Otra instancia podría generar los mismos códigos; configure app.codigos.nodo (APP_CODIGOS_NODO)",
+                nodoProvisional);
+    }
+
+    /**
+     * Renueva el arriendo del número de nodo; si se perdió, toma otro.
+     */
+    @Scheduled(fixedDelayString = "${app.codigos.renovacion-ms:30000}")
+    public void renovarArriendo() {
+        int nodo = nodoArrendado;
+        if (nodo < 0) {
+            if (nodoProvisional >= 0 && redisHabilitado) {
+                intentarArrendar();
+            }
+            return;
+        }
+        try {
+            Long renovado = stringRedisTemplate.execute(SCRIPT_RENOVAR, List.of(PREFIJO_ARRIENDO + nodo),
+                    idInstancia, String.valueOf(Duration.ofSeconds(arriendoSegundos).toMillis()));
+            if (renovado != null && renovado == 1L) {
+                return;
+            }
+            meterRegistry.counter("codigos.nodo.arriendos.perdidos").increment();
+            log.warn("Se perdió el arriendo del nodo {} de los códigos, se toma otro", nodo);
+            int nuevo = arrendarNodo();
+            if (nuevo >= 0) {
+                usar(nuevo);
+            } else {
+                log.error("No hay números de nodo libres para los códigos; se sigue usando el nodo {}", nodo);
+            }
+        } catch (Exception e) {
+            // Se reintenta en el siguiente ciclo; el arriendo es largo para tolerar caídas de Redis
+            log.warn("No se pudo renovar el arriendo del nodo {} de los códigos: {}", nodo, e.getMessage());
+        }
+    }
+
+    public int getNodo() {
+        if (nodoArrendado >= 0) {
+            return nodoArrendado;
+        }
+        return nodoConfigurado >= 0 ? nodoConfigurado : nodoProvisional;
+    }
+
+    /**
+     * @return true si se arrendó un número y ya está en uso
+     */
+    private boolean intentarArrendar() {
+        try {
+            int nodo = arrendarNodo();
+            if (nodo >= 0) {
+                usar(nodo);
+                return true;
+            }
+            log.warn("Los {} números de nodo para los códigos están arrendados", GeneradorCodigos.NODOS);
+        } catch (Exception e) {
+            log.warn("No se pudo arrendar un número de nodo para los códigos en Redis: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * @return El número arrendado, o -1 si todos están tomados
+     */
+    private int arrendarNodo() {
+        Duration arriendo = Duration.ofSeconds(arriendoSegundos);
+        int inicio = ThreadLocalRandom.current().nextInt(GeneradorCodigos.NODOS);
+        for (int i = 0; i < GeneradorCodigos.NODOS; i++) {
+            int nodo = (inicio + i) % GeneradorCodigos.NODOS;
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                    .setIfAbsent(PREFIJO_ARRIENDO + nodo, idInstancia, arriendo))) {
+                return nodo;
+            }
+        }
+        return -1;
+    }
+
+    private static int nodoDelHost() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = UUID.randomUUID().toString();
+        }
+        return Math.floorMod(host.hashCode(), GeneradorCodigos.NODOS);
+    }
+
+    private void usar(int nodo) {
+        nodoArrendado = nodo;
+        nodoProvisional = -1;
+        GeneradorCodigos.configurarNodo(nodo);
+        log.info("Generador de códigos configurado para el nodo {} (arrendado en Redis)", nodo);
+    }
+}
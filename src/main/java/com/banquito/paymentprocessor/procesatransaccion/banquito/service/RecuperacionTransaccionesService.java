@@ -0,0 +1,255 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.HistorialEstadoTransaccionRepository;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Recupera las transacciones que quedaron detenidas en un estado intermedio porque el
+ * nodo que las procesaba se detuvo a mitad del pipeline.
+ *
+ * Las transacciones se reparten en particiones (ID módulo particiones). Cada nodo toma
+ * en Redis un arriendo sobre algunas particiones y solo recorre esas; si el nodo se
+ * detiene, otro toma sus particiones al vencer el arriendo. Al terminar de recorrer una
+ * partición el nodo libera su arriendo y en el siguiente ciclo toma las que siguen, así
+ * todas las particiones se recorren aunque haya menos nodos que particiones por nodo. Cada partición se recorre
+ * por páginas de ids (paginación por clave), sin cargar todas las transacciones de un
+ * estado a la vez. Si Redis no responde el ciclo se omite: sin arriendo no hay garantía
+ * de que otro nodo no esté recuperando la misma transacción.
+ *
+ * Para no competir con el tráfico en línea, la recuperación usa un executor propio y
+ * pequeño, toma en cada ciclo solo tantas transacciones como hilos libres tenga, y no
+ * se ejecuta mientras el nodo tenga muchas transacciones en curso. Solo se recuperan
+ * transacciones más antiguas que el plazo máximo de procesamiento, que ya no pueden
+ * estar en curso en ningún nodo.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecuperacionTransaccionesService {
+
+    private static final String PREFIJO_ARRIENDO = "procesatransaccion:recuperacion:particion:";
+    private static final Set<String> ESTADOS_RECUPERABLES = Set.of(
+            TransaccionService.ESTADO_PENDIENTE,
+            TransaccionService.ESTADO_VALIDACION_MARCA,
+            TransaccionService.ESTADO_VALIDACION_FRAUDE,
+            TransaccionService.ESTADO_PROCESO_DEBITO,
+            TransaccionService.ESTADO_PROCESO_CREDITO,
+            TransaccionService.ESTADO_PROCESO_REVERSO);
+    private static final DefaultRedisScript<Long> SCRIPT_RENOVAR = new DefaultRedisScript<>();
+    private static final DefaultRedisScript<Long> SCRIPT_LIBERAR = new DefaultRedisScript<>();
+
+    static {
+        SCRIPT_RENOVAR.setLocation(new ClassPathResource("scripts/renovar_arriendo.lua"));
+        SCRIPT_RENOVAR.setResultType(Long.class);
+        SCRIPT_LIBERAR.setLocation(new ClassPathResource("scripts/liberar_arriendo.lua"));
+        SCRIPT_LIBERAR.setResultType(Long.class);
+    }
+
+    private final String idNodo = UUID.randomUUID().toString();
+
+    private final TransaccionRepository transaccionRepository;
+    private final HistorialEstadoTransaccionRepository historialRepository;
+    private final TransaccionService transaccionService;
+    private final ControlAdmisionService controlAdmision;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ThreadPoolTaskExecutor recuperacionExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.recuperacion.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${app.recuperacion.particiones:16}")
+    private int particiones;
+
+    @Value("${app.recuperacion.maximo-particiones-por-nodo:4}")
+    private int maximoParticionesPorNodo;
+
+    @Value("${app.recuperacion.arriendo-segundos:120}")
+    private long arriendoSegundos;
+
+    @Value("${app.recuperacion.antiguedad-minima-segundos:300}")
+    private long antiguedadMinimaSegundos;
+
+    @Value("${app.recuperacion.tamano-pagina:50}")
+    private int tamanoPagina;
+
+    @Value("${app.recuperacion.maximo-en-curso:150}")
+    private int maximoEnCurso;
+
+    // Último id visto por partición propia; vuelve a 0 al terminar de recorrerla
+    private final Map<Integer, Long> cursores = new ConcurrentHashMap<>();
+    private final Set<Long> enProceso = ConcurrentHashMap.newKeySet();
+    // Partición desde la que se buscan arriendos libres; avanza al liberar una recorrida
+    private volatile int siguienteParticion = -1;
+
+    @PostConstruct
+    void inicializar() {
+        Gauge.builder("recuperacion.particiones", cursores, Map::size)
+                .description("Particiones de recuperación arrendadas por este nodo")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.recuperacion.intervalo-ms:30000}",
+            initialDelayString = "${app.recuperacion.retardo-inicial-ms:60000}")
+    public void recuperarDetenidas() {
+        if (!habilitada) {
+            return;
+        }
+        if (controlAdmision.getEnCurso() > maximoEnCurso) {
+            meterRegistry.counter("recuperacion.ciclos.omitidos", "motivo", "carga").increment();
+            return;
+        }
+        List<Integer> propias;
+        try {
+            propias = renovarArriendos();
+        } catch (Exception e) {
+            meterRegistry.counter("recuperacion.ciclos.omitidos", "motivo", "redis").increment();
+            log.warn("No se pudieron renovar los arriendos de recuperación, se omite el ciclo: {}", e.getMessage());
+            return;
+        }
+
+        try {
+            LocalDateTime antesDe = LocalDateTime.now().minusSeconds(antiguedadMinimaSegundos);
+            for (Integer particion : propias) {
+                int libres = recuperacionExecutor.getMaxPoolSize() - recuperacionExecutor.getActiveCount()
+                        - recuperacionExecutor.getQueueSize();
+                if (libres <= 0) {
+                    break;
+                }
+                int limite = Math.min(tamanoPagina, libres);
+                List<Long> ids = transaccionRepository.buscarIdsDetenidas(antesDe,
+                        cursores.getOrDefault(particion, 0L), particiones, particion, limite);
+                ids.forEach(this::despachar);
+                // Una página incompleta indica que la partición se recorrió entera
+                if (ids.size() < limite) {
+                    liberarArriendo(particion);
+                } else {
+                    cursores.put(particion, ids.get(ids.size() - 1));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error al buscar transacciones detenidas: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Renueva los arriendos propios y toma particiones libres hasta el máximo por nodo.
+     * Cada nodo empieza a buscar desde una partición distinta para repartirlas, y después
+     * de liberar una sigue desde la siguiente.
+     * @return Las particiones arrendadas por este nodo
+     */
+    private List<Integer> renovarArriendos() {
+        Duration arriendo = Duration.ofSeconds(arriendoSegundos);
+        for (Integer particion : List.copyOf(cursores.keySet())) {
+            Long renovado = stringRedisTemplate.execute(SCRIPT_RENOVAR, List.of(PREFIJO_ARRIENDO + particion),
+                    idNodo, String.valueOf(arriendo.toMillis()));
+            if (renovado == null || renovado != 1L) {
+                log.info("Se perdió el arriendo de la partición de recuperación {}", particion);
+                cursores.remove(particion);
+            }
+        }
+
+        if (siguienteParticion < 0) {
+            siguienteParticion = Math.floorMod(idNodo.hashCode(), particiones);
+        }
+        int inicio = siguienteParticion;
+        for (int i = 0; i < particiones && cursores.size() < maximoParticionesPorNodo; i++) {
+            int particion = (inicio + i) % particiones;
+            if (cursores.containsKey(particion)) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                    .setIfAbsent(PREFIJO_ARRIENDO + particion, idNodo, arriendo))) {
+                log.info("Partición de recuperación {} arrendada por este nodo", particion);
+                cursores.put(particion, 0L);
+            }
+        }
+        return List.copyOf(cursores.keySet());
+    }
+
+    /**
+     * Suelta la partición recién recorrida para que este u otro nodo siga con las demás.
+     */
+    private void liberarArriendo(int particion) {
+        cursores.remove(particion);
+        siguienteParticion = (particion + 1) % particiones;
+        try {
+            stringRedisTemplate.execute(SCRIPT_LIBERAR, List.of(PREFIJO_ARRIENDO + particion), idNodo);
+        } catch (Exception e) {
+            // El arriendo vence solo; mientras tanto ningún otro nodo toma la partición
+            log.warn("No se pudo liberar la partición de recuperación {}: {}", particion, e.getMessage());
+        }
+    }
+
+    private void despachar(Long idTransaccion) {
+        if (!enProceso.add(idTransaccion)) {
+            return;
+        }
+        try {
+            recuperacionExecutor.execute(() -> {
+                try {
+                    recuperar(idTransaccion);
+                } finally {
+                    enProceso.remove(idTransaccion);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Se vuelve a encontrar en la siguiente vuelta de la partición
+            enProceso.remove(idTransaccion);
+        }
+    }
+
+    void recuperar(Long idTransaccion) {
+        Optional<Transaccion> encontrada = transaccionRepository.findById(idTransaccion);
+        if (encontrada.isEmpty() || !ESTADOS_RECUPERABLES.contains(encontrada.get().getEstado())) {
+            return;
+        }
+        Transaccion transaccion = encontrada.get();
+        // Con la bitácora el historial y el estado se escriben juntos; sin historial se usa el estado
+        String ultimoEstado = historialRepository
+                .findFirstByCodTransaccionOrderByFechaEstadoCambioDescIdDesc(transaccion.getCodTransaccion())
+                .map(HistorialEstadoTransaccion::getEstado)
+                .filter(ESTADOS_RECUPERABLES::contains)
+                .orElse(transaccion.getEstado());
+
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        String accion;
+        try {
+            accion = transaccionService.recuperar(transaccion, ultimoEstado);
+        } catch (Exception e) {
+            // Sigue detenida y se reintenta en la siguiente vuelta de la partición
+            accion = "error";
+            log.error("Error al recuperar la transacción {}: {}", transaccion.getCodTransaccion(), e.getMessage(), e);
+        } finally {
+            muestra.stop(meterRegistry.timer("recuperacion.duracion"));
+        }
+        meterRegistry.counter("recuperacion.transacciones", "estado", ultimoEstado, "accion", accion).increment();
+    }
+}
@@ -1,143 +1,574 @@
 package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
 
+import com.banquito.paymentprocessor.procesatransaccion.banquito.config.TransaccionRedisSerializer;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.springframework.dao.DataAccessException;
 
+/**
+ * Caché de transacciones en Redis. Redis nunca está en el camino del dinero:
+ *
+ * - Las escrituras no bloquean al llamador. Se agrupan por código (solo se escribe la
+ *   última versión) y un único hilo las envía en lotes por pipeline, lo que conserva el
+ *   orden de los estados de cada transacción. Si el búfer se llena, la escritura se
+ *   descarta.
+ * - Las lecturas se omiten mientras {@link SaludRedisService} considera a Redis no
+ *   disponible; el llamador va a la base de datos.
+ * - Las escrituras descartadas o fallidas dejan su código para resincronizar: al volver
+ *   Redis se eliminan esas claves, que pueden tener un estado anterior, y la siguiente
+ *   lectura las repuebla desde la base de datos.
+ * - El seguimiento de cada transacción es una lista transaccion:codigo:{cod}:seguimiento.
+ *   Un script Lua escribe la transacción y agrega sus transiciones en una sola operación,
+ *   dentro del mismo pipeline que el resto del lote, y ambas claves vencen juntas.
+ */
 @Service
+@ConditionalOnExpression("'${app.cache.almacen:redis}' == 'redis' and ${spring.redis.enabled:true}")
 @Slf4j
-public class RedisService {
+public class RedisService implements TransaccionCacheStore {
 
+    // Puntero id -> código; la transacción solo se guarda bajo su código
     private static final String KEY_PREFIX = "transaccion:";
     private static final String CODE_PREFIX = "transaccion:codigo:";
-    
+    private static final String SUFIJO_SEGUIMIENTO = ":seguimiento";
+
+    // KEYS: transacción, seguimiento. ARGV: transacción, vencimiento ms, máximo de entradas,
+    // '1' si la primera transición inicia el seguimiento, transiciones
+    private static final RedisScript<Long> REGISTRAR_TRANSICIONES = new DefaultRedisScript<>("""
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            if ARGV[4] == '1' then
+                redis.call('DEL', KEYS[2])
+            elseif redis.call('EXISTS', KEYS[2]) == 0 then
+                return 0
+            end
+            redis.call('RPUSH', KEYS[2], unpack(ARGV, 5))
+            redis.call('LTRIM', KEYS[2], -tonumber(ARGV[3]), -1)
+            redis.call('PEXPIRE', KEYS[2], ARGV[2])
+            return 1
+            """, Long.class);
+
+    // KEYS: seguimiento. ARGV: vencimiento ms, transiciones
+    private static final RedisScript<Long> REPOBLAR_SEGUIMIENTO = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            redis.call('RPUSH', KEYS[1], unpack(ARGV, 2))
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private static final RedisSerializer<Long> RESULTADO_SCRIPT = new GenericToStringSerializer<>(Long.class);
+
     private final RedisTemplate<String, Transaccion> transaccionRedisTemplate;
-    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final CacheLocalTransaccionesService cacheLocal;
+    private final SaludRedisService salud;
+    private final Executor redisEscrituraExecutor;
+
     @Value("${redis.transaccion.expiration:3600}")
     private long transaccionExpiration;
 
-    public RedisService(RedisTemplate<String, Transaccion> transaccionRedisTemplate) {
+    @Value("${app.cache.seguimiento.maximo-entradas:50}")
+    private int maximoSeguimiento;
+
+    @Value("${app.redis.escritura.maximo-pendientes:10000}")
+    private int maximoPendientes;
+
+    @Value("${app.redis.escritura.tamano-lote:100}")
+    private int tamanoLote;
+
+    @Value("${app.redis.escritura.maximo-por-resincronizar:10000}")
+    private int maximoPorResincronizar;
+
+    private final TransaccionRedisSerializer copiador = new TransaccionRedisSerializer();
+    private final Map<String, Escritura> pendientes = new ConcurrentHashMap<>();
+    private final AtomicBoolean escribiendo = new AtomicBoolean();
+    private final Set<String> porResincronizar = ConcurrentHashMap.newKeySet();
+    // Se descartaron más escrituras de las que se pueden recordar: se resincroniza todo
+    private volatile boolean resincronizarTodo;
+    private volatile boolean resincronizacionPendiente;
+
+    /**
+     * Última versión de una transacción por escribir y las transiciones acumuladas para su
+     * seguimiento, codificadas con {@link CodificadorSeguimiento}.
+     */
+    private record Escritura(Transaccion transaccion, boolean conPuntero, List<String> seguimiento,
+            boolean iniciaSeguimiento) {
+
+        Escritura combinar(Escritura nueva) {
+            if (nueva.seguimiento().isEmpty()) {
+                return new Escritura(nueva.transaccion(), conPuntero || nueva.conPuntero(), seguimiento,
+                        iniciaSeguimiento);
+            }
+            if (seguimiento.isEmpty()) {
+                return new Escritura(nueva.transaccion(), conPuntero || nueva.conPuntero(), nueva.seguimiento(),
+                        nueva.iniciaSeguimiento());
+            }
+            List<String> combinado = new ArrayList<>(seguimiento);
+            combinado.addAll(nueva.seguimiento());
+            return new Escritura(nueva.transaccion(), conPuntero || nueva.conPuntero(), combinado,
+                    iniciaSeguimiento);
+        }
+    }
+
+    public RedisService(RedisTemplate<String, Transaccion> transaccionRedisTemplate,
+            StringRedisTemplate stringRedisTemplate, CacheLocalTransaccionesService cacheLocal,
+            SaludRedisService salud, Executor redisEscrituraExecutor) {
         this.transaccionRedisTemplate = transaccionRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheLocal = cacheLocal;
+        this.salud = salud;
+        this.redisEscrituraExecutor = redisEscrituraExecutor;
     }
 
+    /**
+     * Guarda la transacción bajo su código (única copia) y, si ya tiene id, el puntero
+     * transaccion:{id} con el código, que solo ocupa unos bytes.
+     */
+    @Override
     public void saveTransaccion(Transaccion transaccion) {
         if (transaccion == null || transaccion.getCodTransaccion() == null) {
             log.warn("No se puede guardar una transacción nula o sin código");
             return;
         }
-        
+        encolar(transaccion, transaccion.getId() != null, List.of(), false);
+    }
+
+    /**
+     * Vuelve a cargar en Redis una transacción leída de la base de datos. Solo escribe si
+     * la clave no existe: una actualización del pipeline posterior a la lectura gana.
+     */
+    @Override
+    public void repoblarTransaccion(Transaccion transaccion) {
+        if (transaccion == null || transaccion.getCodTransaccion() == null || !salud.disponible()) {
+            return;
+        }
+
         try {
+            Duration expiracion = Duration.ofSeconds(transaccionExpiration);
+            transaccionRedisTemplate.opsForValue().setIfAbsent(CODE_PREFIX + transaccion.getCodTransaccion(),
+                    transaccion, expiracion);
             if (transaccion.getId() != null) {
-                String idKey = KEY_PREFIX + transaccion.getId();
-                log.info("Guardando transacción en Redis por ID: {}", idKey);
-                transaccionRedisTemplate.opsForValue().set(idKey, transaccion);
-                transaccionRedisTemplate.expire(idKey, transaccionExpiration, TimeUnit.SECONDS);
+                stringRedisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + transaccion.getId(),
+                        transaccion.getCodTransaccion(), expiracion);
             }
-            
-            String codeKey = CODE_PREFIX + transaccion.getCodTransaccion();
-            log.info("Guardando transacción en Redis por código: {}", codeKey);
-            transaccionRedisTemplate.opsForValue().set(codeKey, transaccion);
-            transaccionRedisTemplate.expire(codeKey, transaccionExpiration, TimeUnit.SECONDS);
-            
-            log.debug("Transacción guardada con expiración de {} segundos", transaccionExpiration);
-        } catch (DataAccessException e) {
-            log.error("Error al guardar transacción en Redis: {}", e.getMessage(), e);
+            salud.registrarExito();
+            log.debug("Transacción {} repoblada en Redis desde la base de datos", transaccion.getCodTransaccion());
         } catch (Exception e) {
-            log.error("Error inesperado al guardar transacción en Redis: {}", e.getMessage(), e);
+            salud.registrarFalla(e);
+            log.error("Error al repoblar transacción en Redis: {}", e.getMessage());
         }
     }
 
+    /**
+     * Actualiza solo la copia por código: el puntero por id no cambia con el estado. La
+     * caché local de los demás nodos se invalida una vez escrita.
+     */
+    @Override
     public void updateTransaccion(Transaccion transaccion) {
         if (transaccion == null || transaccion.getCodTransaccion() == null) {
             log.warn("No se puede actualizar una transacción nula o sin código");
             return;
         }
-        
+        encolar(transaccion, false, List.of(), false);
+    }
+
+    @Override
+    public void registrarTransiciones(Transaccion transaccion, List<HistorialEstadoTransaccion> transiciones) {
+        if (transaccion == null || transaccion.getCodTransaccion() == null) {
+            log.warn("No se puede actualizar una transacción nula o sin código");
+            return;
+        }
+        List<String> seguimiento = transiciones.stream().map(CodificadorSeguimiento::codificar).toList();
+        boolean inicia = !transiciones.isEmpty()
+                && TransaccionService.ESTADO_PENDIENTE.equals(transiciones.get(0).getEstado());
+        encolar(transaccion, false, seguimiento, inicia);
+    }
+
+    @Override
+    public void repoblarSeguimiento(String codTransaccion, List<HistorialEstadoTransaccion> historial) {
+        if (codTransaccion == null || historial == null || historial.isEmpty() || !salud.disponible()) {
+            return;
+        }
+
+        // historial viene de la más reciente a la más antigua; la lista va en orden cronológico
+        int cantidad = Math.min(historial.size(), maximoSeguimiento);
+        Object[] argumentos = new Object[cantidad + 1];
+        argumentos[0] = bytes(String.valueOf(transaccionExpiration * 1000));
+        for (int i = 0; i < cantidad; i++) {
+            argumentos[cantidad - i] = bytes(CodificadorSeguimiento.codificar(historial.get(i)));
+        }
         try {
-            saveTransaccion(transaccion);
-            log.info("Transacción actualizada en Redis: {}", transaccion.getCodTransaccion());
+            transaccionRedisTemplate.execute(REPOBLAR_SEGUIMIENTO, RedisSerializer.byteArray(), RESULTADO_SCRIPT,
+                    List.of(CODE_PREFIX + codTransaccion + SUFIJO_SEGUIMIENTO), argumentos);
+            salud.registrarExito();
         } catch (Exception e) {
-            log.error("Error al actualizar transacción en Redis: {}", e.getMessage(), e);
+            salud.registrarFalla(e);
+            log.error("Error al repoblar el seguimiento en Redis: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public List<HistorialEstadoTransaccion> getSeguimiento(String codTransaccion) {
+        if (codTransaccion == null || codTransaccion.isEmpty() || !salud.disponible()) {
+            return null;
+        }
+
+        try {
+            List<String> entradas = stringRedisTemplate.opsForList()
+                    .range(CODE_PREFIX + codTransaccion + SUFIJO_SEGUIMIENTO, 0, -1);
+            salud.registrarExito();
+            if (entradas == null || entradas.isEmpty()) {
+                return null;
+            }
+            return CodificadorSeguimiento.decodificarTodas(codTransaccion, entradas);
+        } catch (IllegalArgumentException e) {
+            log.error("Seguimiento ilegible en Redis para la transacción {}: {}", codTransaccion, e.getMessage());
+            return null;
+        } catch (Exception e) {
+            salud.registrarFalla(e);
+            log.error("Error al recuperar el seguimiento de Redis: {}", e.getMessage());
+            return null;
         }
     }
 
+    @Override
     public Transaccion getTransaccion(Long id) {
         if (id == null) {
             log.warn("No se puede buscar una transacción con ID nulo");
             return null;
         }
-        
+        if (!salud.disponible()) {
+            return null;
+        }
+
         try {
-            String key = KEY_PREFIX + id;
-            log.info("Buscando transacción en Redis por ID: {}", key);
-            Transaccion transaccion = transaccionRedisTemplate.opsForValue().get(key);
-            
-            if (transaccion != null) {
-                log.info("Transacción encontrada en Redis con ID: {}", id);
-            } else {
+            String codTransaccion = stringRedisTemplate.opsForValue().get(KEY_PREFIX + id);
+            salud.registrarExito();
+            if (codTransaccion == null) {
                 log.info("No se encontró transacción en Redis con ID: {}", id);
+                return null;
             }
-            
-            return transaccion;
+            return getTransaccionByCodigo(codTransaccion);
         } catch (Exception e) {
-            log.error("Error al recuperar transacción de Redis por ID: {}", e.getMessage(), e);
+            salud.registrarFalla(e);
+            log.error("Error al recuperar transacción de Redis por ID: {}", e.getMessage());
             return null;
         }
     }
-    
+
+    /**
+     * Busca primero en la caché local; solo si no está se consulta Redis.
+     */
+    @Override
     public Transaccion getTransaccionByCodigo(String codTransaccion) {
         if (codTransaccion == null || codTransaccion.isEmpty()) {
             log.warn("No se puede buscar una transacción con código nulo o vacío");
             return null;
         }
-        
+
+        Transaccion local = cacheLocal.obtener(codTransaccion);
+        if (local != null || !salud.disponible()) {
+            return local;
+        }
+
         try {
             String key = CODE_PREFIX + codTransaccion;
-            log.info("Buscando transacción en Redis por código: {}", key);
+            long marca = cacheLocal.marca();
             Transaccion transaccion = transaccionRedisTemplate.opsForValue().get(key);
-            
+            salud.registrarExito();
+
             if (transaccion != null) {
-                log.info("Transacción encontrada en Redis con código: {}", codTransaccion);
+                log.debug("Transacción encontrada en Redis con código: {}", codTransaccion);
+                cacheLocal.guardarLeida(transaccion, marca);
             } else {
-                log.info("No se encontró transacción en Redis con código: {}", codTransaccion);
+                log.debug("No se encontró transacción en Redis con código: {}", codTransaccion);
             }
-            
+
             return transaccion;
         } catch (Exception e) {
-            log.error("Error al recuperar transacción de Redis por código: {}", e.getMessage(), e);
+            salud.registrarFalla(e);
+            log.error("Error al recuperar transacción de Redis por código: {}", e.getMessage());
             return null;
         }
     }
 
+    @Override
     public void deleteTransaccion(Long id) {
-        if (id == null) {
+        if (id == null || !salud.disponible()) {
             return;
         }
-        
+
         try {
             String key = KEY_PREFIX + id;
             log.info("Eliminando transacción de Redis por ID: {}", key);
             transaccionRedisTemplate.delete(key);
+            salud.registrarExito();
         } catch (Exception e) {
-            log.error("Error al eliminar transacción de Redis por ID: {}", e.getMessage(), e);
+            salud.registrarFalla(e);
+            log.error("Error al eliminar transacción de Redis por ID: {}", e.getMessage());
         }
     }
-    
+
+    @Override
     public void deleteTransaccionByCodigo(String codTransaccion) {
         if (codTransaccion == null || codTransaccion.isEmpty()) {
             return;
         }
-        
+        pendientes.remove(codTransaccion);
+        cacheLocal.invalidar(codTransaccion);
+        if (!salud.disponible()) {
+            marcarParaResincronizar(codTransaccion);
+            return;
+        }
+
         try {
             String key = CODE_PREFIX + codTransaccion;
             log.info("Eliminando transacción de Redis por código: {}", key);
-            transaccionRedisTemplate.delete(key);
+            transaccionRedisTemplate.delete(List.of(key, key + SUFIJO_SEGUIMIENTO));
+            salud.registrarExito();
         } catch (Exception e) {
-            log.error("Error al eliminar transacción de Redis por código: {}", e.getMessage(), e);
+            salud.registrarFalla(e);
+            marcarParaResincronizar(codTransaccion);
+            log.error("Error al eliminar transacción de Redis por código: {}", e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void alRecuperarseRedis(SaludRedisService.RedisRecuperado evento) {
+        if (resincronizarTodo || !porResincronizar.isEmpty()) {
+            resincronizacionPendiente = true;
+            programarEscritura();
+        }
+    }
+
+    private void encolar(Transaccion transaccion, boolean conPuntero, List<String> seguimiento,
+            boolean iniciaSeguimiento) {
+        String codTransaccion = transaccion.getCodTransaccion();
+        // Copia: el pipeline sigue modificando el objeto mientras la escritura espera
+        Transaccion copia = copiador.deserialize(copiador.serialize(transaccion));
+        cacheLocal.actualizar(copia);
+
+        if (!salud.disponible()
+                || (pendientes.size() >= maximoPendientes && !pendientes.containsKey(codTransaccion))) {
+            log.debug("Escritura en Redis de la transacción {} descartada", codTransaccion);
+            marcarParaResincronizar(codTransaccion);
+            return;
+        }
+        pendientes.merge(codTransaccion, new Escritura(copia, conPuntero, seguimiento, iniciaSeguimiento),
+                Escritura::combinar);
+        programarEscritura();
+    }
+
+    private void programarEscritura() {
+        if (!escribiendo.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            redisEscrituraExecutor.execute(this::escribirPendientes);
+        } catch (RejectedExecutionException e) {
+            // Solo ocurre al apagar; lo pendiente se pierde y Redis vence por TTL
+            escribiendo.set(false);
+            log.warn("No se pudo programar la escritura en Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Corre en un único hilo: vacía las escrituras pendientes por lotes y, tras una caída
+     * de Redis, resincroniza.
+     */
+    void escribirPendientes() {
+        try {
+            while (!pendientes.isEmpty() || resincronizacionPendiente) {
+                if (!salud.disponible()) {
+                    pendientes.keySet().forEach(cod -> {
+                        if (pendientes.remove(cod) != null) {
+                            marcarParaResincronizar(cod);
+                        }
+                    });
+                    return;
+                }
+                if (resincronizacionPendiente) {
+                    resincronizacionPendiente = false;
+                    resincronizar();
+                }
+                escribirLote(tomarLote());
+            }
+        } finally {
+            escribiendo.set(false);
+            if ((!pendientes.isEmpty() || resincronizacionPendiente) && salud.disponible()) {
+                programarEscritura();
+            }
+        }
+    }
+
+    private List<Map.Entry<String, Escritura>> tomarLote() {
+        List<Map.Entry<String, Escritura>> lote = new ArrayList<>(tamanoLote);
+        Iterator<String> codigos = pendientes.keySet().iterator();
+        while (codigos.hasNext() && lote.size() < tamanoLote) {
+            String cod = codigos.next();
+            Escritura escritura = pendientes.remove(cod);
+            if (escritura != null) {
+                lote.add(Map.entry(cod, escritura));
+            }
+        }
+        return lote;
+    }
+
+    private void escribirLote(List<Map.Entry<String, Escritura>> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        Duration expiracion = Duration.ofSeconds(transaccionExpiration);
+        try {
+            transaccionRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    ValueOperations<String, Transaccion> valores =
+                            ((RedisOperations<String, Transaccion>) operations).opsForValue();
+                    for (Map.Entry<String, Escritura> pendiente : lote) {
+                        Transaccion transaccion = pendiente.getValue().transaccion();
+                        if (pendiente.getValue().seguimiento().isEmpty()) {
+                            valores.set(CODE_PREFIX + pendiente.getKey(), transaccion, expiracion);
+                        } else {
+                            registrarConSeguimiento((RedisOperations<String, Transaccion>) operations,
+                                    pendiente.getKey(), pendiente.getValue());
+                        }
+                        // La conexión del pipeline está ligada al hilo: estos comandos viajan en el mismo lote
+                        if (pendiente.getValue().conPuntero()) {
+                            stringRedisTemplate.opsForValue().set(KEY_PREFIX + transaccion.getId(),
+                                    pendiente.getKey(), expiracion);
+                        }
+                        cacheLocal.publicarInvalidacion(pendiente.getKey());
+                    }
+                    return null;
+                }
+            });
+            salud.registrarExito();
+            log.debug("{} transacciones escritas en Redis", lote.size());
+        } catch (DataAccessException e) {
+            salud.registrarFalla(e);
+            lote.forEach(pendiente -> marcarParaResincronizar(pendiente.getKey()));
+            log.error("Error al escribir {} transacciones en Redis: {}", lote.size(), e.getMessage());
+        } catch (Exception e) {
+            salud.registrarFalla(e);
+            lote.forEach(pendiente -> marcarParaResincronizar(pendiente.getKey()));
+            log.error("Error inesperado al escribir transacciones en Redis: {}", e.getMessage(), e);
+        }
+    }
+
+    private void registrarConSeguimiento(RedisOperations<String, Transaccion> operations, String codTransaccion,
+            Escritura escritura) {
+        List<String> seguimiento = escritura.seguimiento();
+        Object[] argumentos = new Object[seguimiento.size() + 4];
+        argumentos[0] = copiador.serialize(escritura.transaccion());
+        argumentos[1] = bytes(String.valueOf(transaccionExpiration * 1000));
+        argumentos[2] = bytes(String.valueOf(maximoSeguimiento));
+        argumentos[3] = bytes(escritura.iniciaSeguimiento() ? "1" : "0");
+        for (int i = 0; i < seguimiento.size(); i++) {
+            argumentos[i + 4] = bytes(seguimiento.get(i));
+        }
+        String clave = CODE_PREFIX + codTransaccion;
+        operations.execute(REGISTRAR_TRANSICIONES, RedisSerializer.byteArray(), RESULTADO_SCRIPT,
+                List.of(clave, clave + SUFIJO_SEGUIMIENTO), argumentos);
+    }
+
+    private static byte[] bytes(String valor) {
+        return valor.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void marcarParaResincronizar(String codTransaccion) {
+        if (porResincronizar.size() < maximoPorResincronizar) {
+            porResincronizar.add(codTransaccion);
+        } else {
+            resincronizarTodo = true;
+        }
+    }
+
+    /**
+     * Elimina las claves que pudieron quedar con un estado anterior, junto con su
+     * seguimiento; si se descartaron demasiadas para recordarlas, elimina todas las
+     * transacciones de Redis (el patrón también cubre los seguimientos).
+     */
+    private void resincronizar() {
+        List<String> claves = new ArrayList<>();
+        boolean todo = resincronizarTodo;
+        try {
+            if (todo) {
+                resincronizarTodo = false;
+                porResincronizar.clear();
+                ScanOptions opciones = ScanOptions.scanOptions().match(CODE_PREFIX + "*").count(tamanoLote).build();
+                int eliminadas = 0;
+                try (Cursor<String> cursor = transaccionRedisTemplate.scan(opciones)) {
+                    while (cursor.hasNext()) {
+                        claves.add(cursor.next());
+                        if (claves.size() >= tamanoLote) {
+                            eliminadas += eliminar(claves);
+                        }
+                    }
+                }
+                eliminadas += eliminar(claves);
+                log.info("Resincronización completa de Redis: {} transacciones eliminadas", eliminadas);
+                return;
+            }
+
+            int eliminadas = 0;
+            for (String cod : porResincronizar) {
+                porResincronizar.remove(cod);
+                claves.add(CODE_PREFIX + cod);
+                claves.add(CODE_PREFIX + cod + SUFIJO_SEGUIMIENTO);
+                if (claves.size() >= tamanoLote) {
+                    eliminadas += eliminar(claves);
+                }
+            }
+            eliminadas += eliminar(claves);
+            log.info("Resincronización de Redis: {} transacciones eliminadas", eliminadas);
+        } catch (Exception e) {
+            salud.registrarFalla(e);
+            if (todo) {
+                resincronizarTodo = true;
+            } else {
+                claves.stream()
+                        .filter(clave -> !clave.endsWith(SUFIJO_SEGUIMIENTO))
+                        .forEach(clave -> marcarParaResincronizar(clave.substring(CODE_PREFIX.length())));
+            }
+            log.error("Error al resincronizar Redis: {}", e.getMessage());
+        }
+    }
+
+    private int eliminar(List<String> claves) {
+        if (claves.isEmpty()) {
+            return 0;
         }
+        Long eliminadas = transaccionRedisTemplate.delete(List.copyOf(claves));
+        claves.clear();
+        return eliminadas != null ? eliminadas.intValue() : 0;
     }
-} 
\ No newline at end of file
+}
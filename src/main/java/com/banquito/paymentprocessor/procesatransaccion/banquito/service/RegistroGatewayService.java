@@ -0,0 +1,127 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Gateway;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.GatewayRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registro en memoria de los gateways autorizados. La tabla GATEWAY tiene pocas filas
+ * y casi no cambia, así que se mantiene una copia inmutable que se reemplaza completa
+ * en cada recarga; las lecturas no toman bloqueos ni van a la base de datos.
+ *
+ * La copia se recarga al iniciar, periódicamente, y de inmediato cuando un gateway se
+ * crea, modifica o elimina. En ese caso también se publica una invalidación por Redis
+ * para que los demás nodos recarguen su copia.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RegistroGatewayService implements MessageListener {
+
+    public static final String CANAL_INVALIDACION = "procesatransaccion:gateways:invalidacion";
+
+    private final String idNodo = UUID.randomUUID().toString();
+
+    private final GatewayRepository gatewayRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.gateways.registro.habilitado:true}")
+    private boolean habilitado;
+
+    private volatile Map<String, Gateway> gateways;
+
+    /**
+     * Evento que publica {@link GatewayService} al modificar la tabla GATEWAY.
+     */
+    public record GatewayModificado(String codGateway) {
+    }
+
+    /**
+     * Indica si el gateway está registrado. Si el registro aún no se pudo cargar,
+     * consulta directamente la base de datos.
+     */
+    public boolean existe(String codGateway) {
+        Map<String, Gateway> actual = this.gateways;
+        if (!habilitado || actual == null) {
+            return gatewayRepository.existsById(codGateway);
+        }
+        return actual.containsKey(codGateway);
+    }
+
+    public Optional<Gateway> obtener(String codGateway) {
+        Map<String, Gateway> actual = this.gateways;
+        if (!habilitado || actual == null) {
+            return gatewayRepository.findById(codGateway);
+        }
+        return Optional.ofNullable(actual.get(codGateway));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        recargar();
+    }
+
+    @Scheduled(fixedDelayString = "${app.gateways.registro.intervalo-recarga-ms:60000}",
+            initialDelayString = "${app.gateways.registro.intervalo-recarga-ms:60000}")
+    public void recargarPeriodicamente() {
+        recargar();
+    }
+
+    /**
+     * Recarga el registro después de que la modificación quedó confirmada en la base de
+     * datos y avisa a los demás nodos.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alModificarGateway(GatewayModificado evento) {
+        log.info("Gateway {} modificado, recargando registro local", evento.codGateway());
+        recargar();
+        try {
+            stringRedisTemplate.convertAndSend(CANAL_INVALIDACION, idNodo + ":" + evento.codGateway());
+        } catch (Exception e) {
+            // Los demás nodos se ponen al día en la siguiente recarga periódica
+            log.warn("No se pudo publicar la invalidación del gateway {}: {}", evento.codGateway(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String contenido = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (contenido.startsWith(idNodo + ":")) {
+            return;
+        }
+        log.info("Invalidación de gateways recibida de otro nodo: {}", contenido);
+        recargar();
+    }
+
+    public void recargar() {
+        try {
+            Map<String, Gateway> nuevos = gatewayRepository.findAll().stream()
+                    .collect(Collectors.toUnmodifiableMap(Gateway::getCodGateway, Function.identity()));
+            this.gateways = nuevos;
+            log.debug("Registro de gateways recargado: {} gateways", nuevos.size());
+        } catch (Exception e) {
+            // Se conserva la copia anterior; si nunca se cargó se consulta la base de datos
+            log.error("Error al recargar el registro de gateways: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Estado de Redis visto por la caché de transacciones. Tras
+ * app.redis.salud.fallas-consecutivas operaciones fallidas seguidas, Redis se considera
+ * no disponible y {@link RedisService} deja de usarlo: las lecturas van directo a la base
+ * de datos y las escrituras se descartan. Mientras tanto se envía un PING cada
+ * app.redis.salud.intervalo-verificacion-ms y, cuando responde, se publica
+ * {@link RedisRecuperado} para resincronizar lo que se dejó de escribir.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SaludRedisService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ApplicationEventPublisher eventos;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.redis.salud.fallas-consecutivas:3}")
+    private int fallasParaOmitir;
+
+    private final AtomicInteger fallasConsecutivas = new AtomicInteger();
+    private volatile boolean disponible = true;
+
+    /**
+     * Evento que se publica cuando Redis vuelve a responder.
+     */
+    public record RedisRecuperado() {
+    }
+
+    @PostConstruct
+    void inicializar() {
+        Gauge.builder("redis.disponible", this, salud -> salud.disponible() ? 1 : 0)
+                .description("1 si la caché de transacciones usa Redis, 0 si lo está omitiendo")
+                .register(meterRegistry);
+    }
+
+    public boolean disponible() {
+        return disponible;
+    }
+
+    public void registrarExito() {
+        if (fallasConsecutivas.get() != 0) {
+            fallasConsecutivas.set(0);
+        }
+    }
+
+    public void registrarFalla(Exception e) {
+        if (fallasConsecutivas.incrementAndGet() >= fallasParaOmitir && disponible) {
+            disponible = false;
+            meterRegistry.counter("redis.omisiones").increment();
+            log.warn("Redis no responde ({}); la caché de transacciones lo omite hasta que vuelva", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.redis.salud.intervalo-verificacion-ms:1000}")
+    public void verificar() {
+        if (disponible) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) conexion -> conexion.ping());
+        } catch (Exception e) {
+            log.debug("Redis sigue sin responder: {}", e.getMessage());
+            return;
+        }
+        fallasConsecutivas.set(0);
+        disponible = true;
+        log.info("Redis responde de nuevo; se resincroniza la caché de transacciones");
+        eventos.publishEvent(new RedisRecuperado());
+    }
+}
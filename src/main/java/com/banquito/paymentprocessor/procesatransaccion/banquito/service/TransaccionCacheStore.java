@@ -0,0 +1,81 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.List;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+/**
+ * Almacén de caché de transacciones delante de PostgreSQL. La implementación se elige con
+ * app.cache.almacen:
+ * - redis (por defecto): {@link RedisService}, compartido entre nodos.
+ * - memoria: {@link MemoriaDirectaCacheStore}, fuera del heap y local al nodo; se usa
+ *   también cuando spring.redis.enabled=false.
+ *
+ * Contrato común a las implementaciones:
+ * - Ninguna operación lanza excepciones por fallas del almacén; una lectura que falla
+ *   devuelve null y el llamador va a la base de datos.
+ * - Las lecturas devuelven una copia: modificarla no cambia lo guardado.
+ * - Las entradas vencen tras redis.transaccion.expiration segundos.
+ * - {@link #repoblarTransaccion} nunca reemplaza una entrada existente.
+ *
+ * Junto a cada transacción se guarda su seguimiento: las transiciones de estado en orden,
+ * hasta app.cache.seguimiento.maximo-entradas (se descartan las más antiguas). Un
+ * seguimiento solo empieza con la transición PEN, así nunca queda uno incompleto; si no
+ * está, el llamador lo lee de la base de datos.
+ */
+public interface TransaccionCacheStore {
+
+    /**
+     * Guarda una transacción nueva, accesible por código y, si ya tiene id, por id.
+     */
+    void saveTransaccion(Transaccion transaccion);
+
+    /**
+     * Reemplaza la transacción guardada con su nuevo estado.
+     */
+    void updateTransaccion(Transaccion transaccion);
+
+    /**
+     * Reemplaza la transacción guardada y agrega las transiciones a su seguimiento en una
+     * sola operación.
+     * @param transiciones Las transiciones nuevas en orden cronológico
+     */
+    void registrarTransiciones(Transaccion transaccion, List<HistorialEstadoTransaccion> transiciones);
+
+    /**
+     * Guarda una transacción leída de la base de datos solo si no hay otra guardada.
+     */
+    void repoblarTransaccion(Transaccion transaccion);
+
+    /**
+     * @return Una copia de la transacción, o null si no está
+     */
+    Transaccion getTransaccion(Long id);
+
+    /**
+     * @return Una copia de la transacción, o null si no está
+     */
+    Transaccion getTransaccionByCodigo(String codTransaccion);
+
+    /**
+     * Guarda un seguimiento leído de la base de datos solo si no hay otro guardado. Solo
+     * debe usarse con transacciones en estado final: la bitácora puede no haber escrito aún
+     * las transiciones intermedias de una transacción en curso.
+     * @param historial Las transiciones de la más reciente a la más antigua
+     */
+    void repoblarSeguimiento(String codTransaccion, List<HistorialEstadoTransaccion> historial);
+
+    /**
+     * @return Las transiciones de la más reciente a la más antigua, o null si el
+     *         seguimiento no está en la caché
+     */
+    List<HistorialEstadoTransaccion> getSeguimiento(String codTransaccion);
+
+    void deleteTransaccion(Long id);
+
+    /**
+     * Elimina la transacción y su seguimiento.
+     */
+    void deleteTransaccionByCodigo(String codTransaccion);
+}
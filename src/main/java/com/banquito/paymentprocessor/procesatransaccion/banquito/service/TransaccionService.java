@@ -1,32 +1,44 @@
 package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Propagation;
 
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.BancoClient;
-import com.banquito.paymentprocessor.procesatransaccion.banquito.client.FraudeClient;
-import com.banquito.paymentprocessor.procesatransaccion.banquito.client.MarcaClient;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ProcesoBancarioRequest;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ProcesoBancarioResponse;
-import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionFraudeRequest;
-import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionFraudeResponse;
-import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionMarcaRequest;
-import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionMarcaResponse;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Gateway;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.HistorialEstadoTransaccionRepository;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.LimiteExcedidoException;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.NotFoundException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ServicioSaturadoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionDuplicadaException;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionRechazadaException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.PlazoTransaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoProcesamiento;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoValidacion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.SeguimientoTransaccion;
 
 import lombok.extern.slf4j.Slf4j;
 import lombok.RequiredArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.math.BigDecimal;
 
 @Slf4j
@@ -36,11 +48,34 @@ public class TransaccionService {
 
     private final TransaccionRepository transaccionRepository;
     private final HistorialEstadoTransaccionRepository historialRepository;
-    private final MarcaClient marcaClient;
-    private final FraudeClient fraudeClient;
+    private final ValidacionParalelaService validacionParalelaService;
     private final BancoClient bancoClient;
-    private final RedisService redisService;
+    private final LimitadorCoreBancarioService limitadorCoreBancario;
+    private final TransaccionCacheStore cacheTransacciones;
     private final GatewayService gatewayService;
+    private final LimiteGatewayService limiteGatewayService;
+    private final ControlAdmisionService controlAdmision;
+    private final RegistroGatewayService registroGatewayService;
+    private final ColaReversosService colaReversosService;
+    private final IdempotenciaService idempotenciaService;
+    private final BitacoraEstadosService bitacoraEstadosService;
+    private final CacheLocalTransaccionesService cacheLocal;
+    private final ThreadPoolTaskExecutor procesamientoAsincronoExecutor;
+    
+    // Consultas a PostgreSQL por código en curso; las solicitudes simultáneas esperan la misma
+    private final Map<String, CompletableFuture<Optional<Transaccion>>> consultasEnCurso = new ConcurrentHashMap<>();
+    
+    @Value("${app.procesamiento.asincrono.reintentar-despues-segundos:5}")
+    private long reintentarDespuesSegundos;
+    
+    @Value("${app.plazo.por-defecto-ms:8000}")
+    private long plazoPorDefectoMs;
+    
+    @Value("${app.plazo.maximo-ms:30000}")
+    private long plazoMaximoMs;
+    
+    @Value("${app.plazo.minimo-debito-ms:1000}")
+    private long plazoMinimoDebitoMs;
     
     // Estados de transacción
     public static final String ESTADO_PENDIENTE = "PEN";
@@ -56,112 +91,250 @@ public class TransaccionService {
     public static final String ESTADO_REVERSADA = "REV_COM";
     public static final String ESTADO_ERROR_IRRECUPERABLE = "ERR_IRRECUPERABLE";
 
-    public Transaccion procesarTransaccion(Transaccion transaccion) {
-        try {
+    /**
+     * Procesa la transacción de forma síncrona.
+     * @param transaccion La transacción recibida del gateway
+     * @return El resultado con el estado final, el último mensaje y las etapas recorridas
+     */
+    public ResultadoProcesamiento procesarTransaccion(Transaccion transaccion) {
+        // Un reintento del gateway recibe la respuesta ya registrada, sin consumir admisión
+        asignarCodigoTransaccion(transaccion);
+        Optional<ResultadoProcesamiento> repetido = idempotenciaService.reclamar(transaccion);
+        if (repetido.isPresent()) {
+            return repetido.get();
+        }
+        
+        // Admisión y límite del gateway se aplican antes de registrar: una solicitud rechazada no deja rastro
+        try (ControlAdmisionService.Admision admision = controlAdmision.admitir();
+                LimiteGatewayService.Cupo cupo = limiteGatewayService.admitir(transaccion.getCodigoGtw())) {
+            admision.iniciarProceso();
+            establecerPlazo(transaccion);
             log.info("Iniciando procesamiento de transacción: {}", 
                     transaccion.getCodTransaccion());
             
-            // Obtener el codigoGtw para validación
-            String codigoGtw = transaccion.getCodigoGtw();
-            
-            // Verificar si el código del gateway es válido
-            if (codigoGtw == null || codigoGtw.trim().isEmpty()) {
-                log.error("Se recibió una transacción sin código de gateway");
-                throw new TransaccionRechazadaException("Código de gateway no proporcionado");
-            }
-            
-            // Verificar que el gateway exista en nuestra base de datos
-            boolean gatewayValido = gatewayService.verificarCodigoGateway(codigoGtw);
-            if (!gatewayValido) {
-                log.error("Se recibió una transacción con código de gateway inválido: {}", codigoGtw);
-                throw new TransaccionRechazadaException("Código de gateway no válido o no autorizado: " + codigoGtw);
-            }
-            
-            log.info("Gateway validado correctamente: {}", codigoGtw);
-            
-            // Verificar que el código único de transacción no exista previamente
-            if (transaccion.getCodigoUnico() != null && !transaccion.getCodigoUnico().isEmpty()) {
-                // Buscar si ya existe una transacción con ese código único
-                try {
-                    List<Transaccion> transaccionesExistentes = transaccionRepository.findByCodigoUnico(transaccion.getCodigoUnico());
-                    if (!transaccionesExistentes.isEmpty()) {
-                        log.error("Ya existe una transacción con el código único: {}", transaccion.getCodigoUnico());
-                        throw new TransaccionRechazadaException("Código único de transacción duplicado: " + transaccion.getCodigoUnico());
-                    }
-                    log.info("Verificación de código único de transacción exitosa: {}", transaccion.getCodigoUnico());
-                } catch (Exception e) {
-                    if (!(e instanceof TransaccionRechazadaException)) {
-                        log.error("Error al verificar unicidad del código de transacción: {}", e.getMessage(), e);
-                        throw new RuntimeException("Error al verificar unicidad del código de transacción: " + e.getMessage(), e);
-                    } else {
-                        throw e;
-                    }
-                }
-            }
-            
-            // Inicializar la transacción con estado pendiente
-            inicializarTransaccion(transaccion);
-            
-            // Paso 2: Validar tarjeta con marca
-            try {
-                validarMarca(transaccion);
-                
-                // Verificar si la tarjeta fue rechazada y detener el procesamiento
-                if (ESTADO_RECHAZADA.equals(transaccion.getEstado())) {
-                    log.info("Transacción rechazada en validación de marca: {}", transaccion.getCodTransaccion());
-                    return transaccion;
-                }
-            } catch (TransaccionRechazadaException e) {
-                log.warn("Transacción rechazada en validación de marca: {}", e.getMessage());
-                throw e;
-            } catch (Exception e) {
-                log.error("Error en validación con marca: {}", e.getMessage(), e);
-                actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
-                        "Error en validación con marca: " + e.getMessage());
-                throw new TransaccionRechazadaException("Error en validación con marca: " + e.getMessage());
-            }
-            
-            // Validar con el sistema de fraude
-            validarFraude(transaccion);
-            
-            // Procesar débito a la tarjeta
-            procesarDebitoTarjeta(transaccion);
-            
-            // Procesar crédito al comercio
-            procesarCreditoComercio(transaccion);
-            
-            // Transacción completada exitosamente
-            actualizarEstadoTransaccion(transaccion, ESTADO_COMPLETADA, 
-                    "Transacción procesada exitosamente");
-            
-            log.info("Transacción procesada exitosamente: {}", transaccion.getCodTransaccion());
-            return transaccion;
+            registrarTransaccion(transaccion);
+            ResultadoProcesamiento resultado = ejecutarPipeline(transaccion);
+            idempotenciaService.registrar(transaccion, resultado.getEstado(), resultado.getMensaje());
+            return resultado;
             
+        } catch (LimiteExcedidoException | ServicioSaturadoException e) {
+            idempotenciaService.liberar(transaccion);
+            throw e;
+        } catch (TransaccionDuplicadaException e) {
+            return idempotenciaService.respuestaRegistrada(e.getCodigoUnico());
         } catch (TransaccionRechazadaException e) {
             // Las excepciones de rechazo ya tienen el estado actualizado
             log.warn("Transacción rechazada: {}", e.getMessage());
+            registrarRespuesta(transaccion, e.getMessage());
             throw e;
         } catch (Exception e) {
-            log.error("Error inesperado procesando transacción: {}", e.getMessage(), e);
-            try {
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
-                        "Error inesperado: " + e.getMessage());
-            } catch (Exception ex) {
-                log.error("No se pudo actualizar estado de error en transacción: {}", ex.getMessage());
-                // Si falló la actualización del estado, intentamos eliminar la transacción de Redis directamente
+            manejarErrorInesperado(transaccion, e);
+            registrarRespuesta(transaccion, "Error inesperado: " + e.getMessage());
+            throw new RuntimeException("Error procesando transacción: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Modo asíncrono (aceptar y consultar): valida y persiste la transacción en estado PEN
+     * y delega el resto del pipeline al executor acotado. El gateway consulta luego
+     * GET /v1/transacciones/{codTransaccion} para conocer el estado final.
+     * @param transaccion La transacción recibida del gateway
+     * @return El código de la transacción aceptada
+     */
+    public String procesarTransaccionAsincrona(Transaccion transaccion) {
+        asignarCodigoTransaccion(transaccion);
+        Optional<ResultadoProcesamiento> repetido = idempotenciaService.reclamar(transaccion);
+        if (repetido.isPresent()) {
+            return repetido.get().getCodTransaccion();
+        }
+        
+        // La admisión y el cupo del gateway se liberan al terminar el pipeline en el hilo del executor
+        ControlAdmisionService.Admision admision;
+        LimiteGatewayService.Cupo cupo;
+        try {
+            admision = controlAdmision.admitir();
+        } catch (ServicioSaturadoException e) {
+            idempotenciaService.liberar(transaccion);
+            throw e;
+        }
+        try {
+            cupo = limiteGatewayService.admitir(transaccion.getCodigoGtw());
+        } catch (LimiteExcedidoException e) {
+            admision.close();
+            idempotenciaService.liberar(transaccion);
+            throw e;
+        }
+        try {
+            establecerPlazo(transaccion);
+            log.info("Iniciando procesamiento asíncrono de transacción: {}", 
+                    transaccion.getCodTransaccion());
+            registrarTransaccion(transaccion);
+        } catch (TransaccionDuplicadaException e) {
+            cupo.close();
+            admision.close();
+            return idempotenciaService.respuestaRegistrada(e.getCodigoUnico()).getCodTransaccion();
+        } catch (TransaccionRechazadaException e) {
+            cupo.close();
+            admision.close();
+            log.warn("Transacción rechazada: {}", e.getMessage());
+            registrarRespuesta(transaccion, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            cupo.close();
+            admision.close();
+            manejarErrorInesperado(transaccion, e);
+            registrarRespuesta(transaccion, "Error inesperado: " + e.getMessage());
+            throw new RuntimeException("Error procesando transacción: " + e.getMessage(), e);
+        }
+        
+        // El contexto es ThreadLocal, se copia explícitamente al hilo del executor
+        Boolean esDiferido = TransaccionContextHolder.getDiferido();
+        Integer numCuotas = TransaccionContextHolder.getCuotas();
+        PlazoTransaccion plazo = TransaccionContextHolder.getPlazo();
+        String codTransaccion = transaccion.getCodTransaccion();
+        
+        try {
+            procesamientoAsincronoExecutor.execute(() -> {
+                TransaccionContextHolder.setDiferido(esDiferido);
+                TransaccionContextHolder.setCuotas(numCuotas);
+                TransaccionContextHolder.setPlazo(plazo);
+                admision.iniciarProceso();
                 try {
-                    if (transaccion.getId() != null) {
-                        redisService.deleteTransaccion(transaccion.getId());
-                    }
-                    if (transaccion.getCodTransaccion() != null) {
-                        redisService.deleteTransaccionByCodigo(transaccion.getCodTransaccion());
-                    }
-                    log.info("Transacción eliminada de Redis por error crítico");
-                } catch (Exception deleteEx) {
-                    log.error("No se pudo eliminar la transacción de Redis: {}", deleteEx.getMessage());
+                    ResultadoProcesamiento resultado = ejecutarPipeline(transaccion);
+                    idempotenciaService.registrar(transaccion, resultado.getEstado(), resultado.getMensaje());
+                } catch (TransaccionRechazadaException e) {
+                    log.warn("Transacción asíncrona rechazada: {} - {}", codTransaccion, e.getMessage());
+                    registrarRespuesta(transaccion, e.getMessage());
+                } catch (Exception e) {
+                    manejarErrorInesperado(transaccion, e);
+                    registrarRespuesta(transaccion, "Error inesperado: " + e.getMessage());
+                } finally {
+                    TransaccionContextHolder.clear();
+                    cupo.close();
+                    admision.close();
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            cupo.close();
+            admision.close();
+            log.error("Capacidad de procesamiento asíncrono agotada, transacción: {}", codTransaccion);
+            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
+                    "Capacidad de procesamiento asíncrono agotada");
+            registrarRespuesta(transaccion, "Capacidad de procesamiento asíncrono agotada");
+            throw new ServicioSaturadoException(
+                    "Capacidad de procesamiento agotada, reintente más tarde", reintentarDespuesSegundos);
+        }
+        
+        log.info("Transacción {} aceptada para procesamiento asíncrono", codTransaccion);
+        return codTransaccion;
+    }
+    
+    /**
+     * Fija el plazo de la transacción: el solicitado por el gateway (cabecera X-Plazo-Ms),
+     * o el configurado para el gateway, o el valor por defecto; nunca mayor al máximo.
+     */
+    private void establecerPlazo(Transaccion transaccion) {
+        PlazoTransaccion plazo = TransaccionContextHolder.getPlazo();
+        if (plazo == null) {
+            long plazoMs = registroGatewayService.obtener(transaccion.getCodigoGtw())
+                    .map(Gateway::getPlazoMs)
+                    .map(Integer::longValue)
+                    .orElse(plazoPorDefectoMs);
+            plazo = PlazoTransaccion.enMilisegundos(Math.min(plazoMs, plazoMaximoMs));
+        } else if (plazo.restanteMs() > plazoMaximoMs) {
+            plazo = PlazoTransaccion.enMilisegundos(plazoMaximoMs);
+        }
+        TransaccionContextHolder.setPlazo(plazo);
+    }
+    
+    private void asignarCodigoTransaccion(Transaccion transaccion) {
+        if (transaccion.getCodTransaccion() == null || transaccion.getCodTransaccion().isEmpty()) {
+            transaccion.setCodTransaccion(GeneradorCodigos.nuevoCodigo());
+        }
+    }
+    
+    /**
+     * Guarda la respuesta para los reintentos del gateway si la transacción se llegó a
+     * registrar; si no, libera el código único para que pueda reintentarse.
+     */
+    private void registrarRespuesta(Transaccion transaccion, String mensaje) {
+        if (transaccion.getId() == null) {
+            idempotenciaService.liberar(transaccion);
+        } else {
+            idempotenciaService.registrar(transaccion, transaccion.getEstado(), mensaje);
+        }
+    }
+    
+    private void registrarTransaccion(Transaccion transaccion) {
+        // Obtener el codigoGtw para validación
+        String codigoGtw = transaccion.getCodigoGtw();
+        
+        // Verificar si el código del gateway es válido
+        if (codigoGtw == null || codigoGtw.trim().isEmpty()) {
+            log.error("Se recibió una transacción sin código de gateway");
+            throw new TransaccionRechazadaException("Código de gateway no proporcionado");
+        }
+        
+        // Verificar que el gateway exista en nuestra base de datos
+        boolean gatewayValido = gatewayService.verificarCodigoGateway(codigoGtw);
+        if (!gatewayValido) {
+            log.error("Se recibió una transacción con código de gateway inválido: {}", codigoGtw);
+            throw new TransaccionRechazadaException("Código de gateway no válido o no autorizado: " + codigoGtw);
+        }
+        
+        log.info("Gateway validado correctamente: {}", codigoGtw);
+        
+        // El código único se controla con IdempotenciaService y el índice único de CODIGO_UNICO
+        
+        // Inicializar la transacción con estado pendiente
+        inicializarTransaccion(transaccion);
+    }
+    
+    private ResultadoProcesamiento ejecutarPipeline(Transaccion transaccion) {
+        ResultadoProcesamiento resultado = new ResultadoProcesamiento(transaccion);
+        
+        // Paso 2: Validar tarjeta con marca y fraude (en paralelo)
+        validarTransaccion(transaccion, resultado);
+        
+        // Verificar si la tarjeta fue rechazada y detener el procesamiento
+        if (ESTADO_RECHAZADA.equals(transaccion.getEstado())) {
+            log.info("Transacción rechazada en validación de marca: {}", transaccion.getCodTransaccion());
+            return resultado;
+        }
+        
+        // Procesar débito a la tarjeta
+        procesarDebitoTarjeta(transaccion, resultado);
+        
+        // Procesar crédito al comercio
+        procesarCreditoComercio(transaccion, resultado);
+        
+        // Transacción completada exitosamente
+        actualizarEstadoTransaccion(transaccion, resultado, ESTADO_COMPLETADA, 
+                "Transacción procesada exitosamente");
+        
+        log.info("Transacción procesada exitosamente: {}", transaccion.getCodTransaccion());
+        return resultado;
+    }
+    
+    private void manejarErrorInesperado(Transaccion transaccion, Exception e) {
+        log.error("Error inesperado procesando transacción: {}", e.getMessage(), e);
+        try {
+            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
+                    "Error inesperado: " + e.getMessage());
+        } catch (Exception ex) {
+            log.error("No se pudo actualizar estado de error en transacción: {}", ex.getMessage());
+            // Si falló la actualización del estado, intentamos eliminar la transacción de Redis directamente
+            try {
+                if (transaccion.getId() != null) {
+                    cacheTransacciones.deleteTransaccion(transaccion.getId());
+                }
+                if (transaccion.getCodTransaccion() != null) {
+                    cacheTransacciones.deleteTransaccionByCodigo(transaccion.getCodTransaccion());
+                }
+                log.info("Transacción eliminada de Redis por error crítico");
+            } catch (Exception deleteEx) {
+                log.error("No se pudo eliminar la transacción de Redis: {}", deleteEx.getMessage());
             }
-            throw new RuntimeException("Error procesando transacción: " + e.getMessage(), e);
         }
     }
     
@@ -173,9 +346,7 @@ public class TransaccionService {
         transaccion.setFechaTransaccion(LocalDateTime.now());
         transaccion.setEstado(ESTADO_PENDIENTE);
         
-        if (transaccion.getCodTransaccion() == null || transaccion.getCodTransaccion().isEmpty()) {
-            transaccion.setCodTransaccion(UUID.randomUUID().toString().substring(0, 10));
-        }
+        asignarCodigoTransaccion(transaccion);
         
             // Guardado en la base de datos primero
             try {
@@ -185,7 +356,7 @@ public class TransaccionService {
                 
                 // SOLO si se guarda exitosamente en PostgreSQL, intentamos guardar en Redis
                 try {
-                    redisService.saveTransaccion(transaccion);
+                    cacheTransacciones.saveTransaccion(transaccion);
                     log.info("Transacción guardada en Redis con código: {}", transaccion.getCodTransaccion());
                 } catch (Exception ex) {
                     log.error("Error al guardar transacción en Redis (continuando proceso): {}", ex.getMessage(), ex);
@@ -193,13 +364,26 @@ public class TransaccionService {
                 
                 // SOLO si se guarda exitosamente en PostgreSQL, registramos el evento inicial
                 try {
-        registrarHistorialEstado(transaccion, ESTADO_PENDIENTE, "Transacción recibida del gateway");
+        HistorialEstadoTransaccion inicial = registrarHistorialEstado(transaccion, ESTADO_PENDIENTE,
+                "Transacción recibida del gateway");
+                    if (inicial != null) {
+                        // Se combina con la escritura anterior: inicia el seguimiento en la caché
+                        cacheTransacciones.registrarTransiciones(transaccion, List.of(inicial));
+                    }
                     log.debug("Historial de estado inicial registrado");
                 } catch (Exception ex) {
                     log.error("Error al registrar historial de estado inicial: {}", ex.getMessage(), ex);
                 }
         
         log.info("Transacción inicializada con código: {}", transaccion.getCodTransaccion());
+            } catch (DataIntegrityViolationException ex) {
+                // Otra solicitud con el mismo código único ya registró la transacción
+                if (!transaccionRepository.findByCodigoUnico(transaccion.getCodigoUnico()).isEmpty()) {
+                    log.warn("Código único {} ya registrado por otra solicitud", transaccion.getCodigoUnico());
+                    throw new TransaccionDuplicadaException(transaccion.getCodigoUnico());
+                }
+                log.error("Error crítico al guardar transacción en PostgreSQL: {}", ex.getMessage(), ex);
+                throw new RuntimeException("Error al guardar transacción en base de datos: no se guardará en Redis ni en historial", ex);
             } catch (Exception ex) {
                 log.error("Error crítico al guardar transacción en PostgreSQL: {}", ex.getMessage(), ex);
                 throw new RuntimeException("Error al guardar transacción en base de datos: no se guardará en Redis ni en historial", ex);
@@ -210,276 +394,73 @@ public class TransaccionService {
         }
     }
     
-    private void validarFraude(Transaccion transaccion) {
-        log.debug("Validando fraude para transacción: {}", transaccion.getCodTransaccion());
-        actualizarEstadoTransaccion(transaccion, ESTADO_VALIDACION_FRAUDE, 
-                "Iniciando validación de fraude");
-        
-        // Validar datos necesarios antes de enviar
-        if (transaccion.getNumeroTarjeta() == null || transaccion.getNumeroTarjeta().trim().isEmpty()) {
-            String mensaje = "Número de tarjeta no proporcionado";
-            log.error(mensaje);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensaje);
-            throw new TransaccionRechazadaException(mensaje);
-        }
-        
-        if (transaccion.getMonto() == null || transaccion.getMonto().compareTo(BigDecimal.ZERO) <= 0) {
-            String mensaje = "Monto no válido";
-            log.error(mensaje);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensaje);
-            throw new TransaccionRechazadaException(mensaje);
-        }
-        
-        // Registro seguro de información (ocultar datos sensibles)
-        if (transaccion.getNumeroTarjeta().length() >= 4) {
-            log.info("Datos de transacción para validar fraude: numeroTarjeta={}****, monto={}, codigoUnico={}",
-                transaccion.getNumeroTarjeta().substring(0, 4),
-                transaccion.getMonto(),
-                transaccion.getCodigoUnico());
-        }
-        
-        ValidacionFraudeRequest fraudeRequest = new ValidacionFraudeRequest();
-        fraudeRequest.setNumeroTarjeta(transaccion.getNumeroTarjeta());
-        fraudeRequest.setMonto(transaccion.getMonto());
-        fraudeRequest.setCodigoUnico(transaccion.getCodigoUnico());
-        
-        // Determinar y establecer el tipo de transacción
-        String tipoTransaccion = "COMPRA"; // Valor por defecto
-        if (transaccion.getTipo() != null) {
-            // Mapeo de tipos de transacción según la nomenclatura esperada por el servicio de fraude
-            switch (transaccion.getTipo()) {
-                case "PAG":
-                    tipoTransaccion = "PAGO";
-                    break;
-                case "TRA":
-                    tipoTransaccion = "TRANSFERENCIA";
-                    break;
-                case "RET":
-                    tipoTransaccion = "RETIRO";
-                    break;
-                default:
-                    tipoTransaccion = "COMPRA";
-            }
-        }
-        fraudeRequest.setTipoTransaccion(tipoTransaccion);
-        
-        // Establecer el código de comercio (si está disponible)
-        String codigoComercio = "COM123"; // Valor por defecto
-        if (transaccion.getSwiftBancoComercio() != null && !transaccion.getSwiftBancoComercio().isEmpty()) {
-            codigoComercio = transaccion.getSwiftBancoComercio();
-        }
-        fraudeRequest.setCodigoComercio(codigoComercio);
-        
-        log.debug("Enviando solicitud de validación de fraude: {}", fraudeRequest);
-        
-        try {
-            log.debug("Llamando al servicio de fraude en URL: ${app.fraude-service.url}/api/v1/fraude/validar");
-            
-            ValidacionFraudeResponse fraudeResponse = fraudeClient.validarTransaccion(fraudeRequest);
-            
-            if (fraudeResponse == null) {
-                String mensaje = "Respuesta de validación de fraude es null";
-                log.error(mensaje);
-                actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensaje);
-                throw new TransaccionRechazadaException(mensaje);
-            }
-            
-            log.debug("Respuesta del servicio de fraude: {}", fraudeResponse);
-            
-            // Verificar si la transacción es fraudulenta
-            if (fraudeResponse.getEsFraude() != null && fraudeResponse.getEsFraude()) {
-                String detalleRazon = "";
-                if (fraudeResponse.getCodigoRegla() != null && !fraudeResponse.getCodigoRegla().isEmpty()) {
-                    detalleRazon += " Regla: " + fraudeResponse.getCodigoRegla();
-                }
-                
-                if (fraudeResponse.getNivelRiesgo() != null) {
-                    detalleRazon += " Nivel de riesgo: " + fraudeResponse.getNivelRiesgo();
-                }
-                
-                String mensaje = "Posible fraude detectado." + detalleRazon;
-                if (fraudeResponse.getMensaje() != null && !fraudeResponse.getMensaje().isEmpty()) {
-                    mensaje += " Detalle: " + fraudeResponse.getMensaje();
-                }
-                
-                log.warn(mensaje);
-                actualizarEstadoTransaccion(transaccion, ESTADO_FRAUDE, mensaje);
-                throw new TransaccionRechazadaException("Transacción rechazada por posible fraude: " + 
-                        (fraudeResponse.getMensaje() != null ? fraudeResponse.getMensaje() : "Validación de fraude"));
-            }
-            
-            log.info("Validación de fraude exitosa para transacción: {}", 
-                    transaccion.getCodTransaccion());
-            
-        } catch (Exception e) {
-            log.error("Error en validación de fraude: {}", e.getMessage(), e);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
-                    "Error en validación de fraude: " + e.getMessage());
-            throw new TransaccionRechazadaException("Error en validación de fraude: " 
-                    + e.getMessage());
-        }
-    }
-    
-    private void validarMarca(Transaccion transaccion) {
-        log.debug("Validando tarjeta con la marca para transacción: {}", transaccion.getCodTransaccion());
-        actualizarEstadoTransaccion(transaccion, ESTADO_VALIDACION_MARCA, 
+    private void validarTransaccion(Transaccion transaccion, ResultadoProcesamiento resultado) {
+        log.debug("Validando tarjeta con la marca y fraude para transacción: {}", transaccion.getCodTransaccion());
+        actualizarEstadoTransaccion(transaccion, resultado, ESTADO_VALIDACION_MARCA, 
                 "Iniciando validación con marca de tarjeta");
         
         // Validar datos necesarios antes de enviar
         if (transaccion.getNumeroTarjeta() == null || transaccion.getNumeroTarjeta().trim().isEmpty()) {
             String mensaje = "Número de tarjeta no proporcionado";
             log.error(mensaje);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensaje);
+            actualizarEstadoTransaccion(transaccion, resultado, ESTADO_ERROR, mensaje);
             throw new TransaccionRechazadaException(mensaje);
         }
         
         if (transaccion.getCvv() == null || transaccion.getCvv().trim().isEmpty()) {
             String mensaje = "Código de seguridad (CVV) no proporcionado";
             log.error(mensaje);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensaje);
+            actualizarEstadoTransaccion(transaccion, resultado, ESTADO_ERROR, mensaje);
             throw new TransaccionRechazadaException(mensaje);
         }
         
         if (transaccion.getFechaCaducidad() == null || transaccion.getFechaCaducidad().trim().isEmpty()) {
             String mensaje = "Fecha de caducidad no proporcionada";
             log.error(mensaje);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensaje);
+            actualizarEstadoTransaccion(transaccion, resultado, ESTADO_ERROR, mensaje);
             throw new TransaccionRechazadaException(mensaje);
         }
         
         if (transaccion.getMonto() == null || transaccion.getMonto().compareTo(BigDecimal.ZERO) <= 0) {
             String mensaje = "Monto no válido";
             log.error(mensaje);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensaje);
+            actualizarEstadoTransaccion(transaccion, resultado, ESTADO_ERROR, mensaje);
             throw new TransaccionRechazadaException(mensaje);
         }
         
-        // Registrar información de la transacción (ocultando datos sensibles)
-        log.info("Datos de transacción para validar: numeroTarjeta={}****, codigoSeguridad=***, fechaExpiracion={}, monto={}, codigoUnico={}",
-            transaccion.getNumeroTarjeta().substring(0, 4),
-            transaccion.getFechaCaducidad(),
-            transaccion.getMonto(),
-            transaccion.getCodigoUnico());
-        
-        ValidacionMarcaRequest marcaRequest = new ValidacionMarcaRequest();
-        marcaRequest.setNumeroTarjeta(transaccion.getNumeroTarjeta());
-        marcaRequest.setCodigoSeguridad(transaccion.getCvv());
-        marcaRequest.setFechaExpiracion(transaccion.getFechaCaducidad());
-        marcaRequest.setMonto(transaccion.getMonto());
-        marcaRequest.setCodigoUnicoTransaccion(transaccion.getCodigoUnico());
+        // Marca y fraude se consultan al mismo tiempo
+        actualizarEstadoTransaccion(transaccion, resultado, ESTADO_VALIDACION_FRAUDE, 
+                "Iniciando validación de fraude");
+        ResultadoValidacion validacion = validacionParalelaService.validar(transaccion);
         
-        log.debug("Enviando request a marca: numeroTarjeta={}****, codigoSeguridad=***, fechaExpiracion={}, monto={}, codigoUnico={}",
-            marcaRequest.getNumeroTarjeta().substring(0, 4),
-            marcaRequest.getFechaExpiracion(),
-            marcaRequest.getMonto(),
-            marcaRequest.getCodigoUnicoTransaccion());
+        if (validacion.isAprobada()) {
+            // Actualizar la transacción con el SWIFT del banco emisor
+            transaccion.setSwiftBancoTarjeta(validacion.getSwiftBanco());
+            log.info("Validación de marca y fraude exitosa para transacción: {}", transaccion.getCodTransaccion());
+            return;
+        }
         
-        try {
-            // Verificar usando Try-Catch específico para identificar mejor el error
-            ValidacionMarcaResponse marcaResponse = null;
-            try {
-                log.debug("Enviando solicitud a ValidaMServerless en URL: {}/dev/api/v1/marca/validar", 
-                        "${app.marca-service.url}");
-                marcaResponse = marcaClient.validarTarjeta(marcaRequest);
-            } catch (Exception e) {
-                log.error("Error al llamar al servicio de marca: {}", e.getMessage(), e);
-                
-                // Comprobar si es un error de timeout
-                if (e.getMessage() != null && e.getMessage().contains("Read timed out")) {
-                    log.error("Timeout en la conexión con el servicio de marca");
-                    actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
-                            "Timeout en la conexión con servicio de marca");
-                    throw new TransaccionRechazadaException("Timeout en la conexión con servicio de marca");
-                }
-                
-                // Si es otro tipo de error, registrarlo con más detalle
-                actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
-                        "Error en comunicación con servicio de marca: " + e.getMessage());
-                throw new TransaccionRechazadaException("Error en validación con marca: " + e.getMessage());
-            }
-            
-            log.debug("Respuesta de marca recibida: {}", 
-                marcaResponse != null ? marcaResponse.toString() : "null");
-                
-            // Log adicional para diagnosticar la validación
-            if (marcaResponse != null) {
-                log.debug("Detalles de validación: tarjetaValida={}, swiftBanco={}, mensaje={}, resultado isValida()={}",
-                    marcaResponse.getTarjetaValida(),
-                    marcaResponse.getSwiftBanco(),
-                    marcaResponse.getMensaje() != null ? 
-                        (marcaResponse.getMensaje().length() > 100 ? 
-                            marcaResponse.getMensaje().substring(0, 100) + "..." : 
-                            marcaResponse.getMensaje()) : 
-                        "null",
-                    marcaResponse.isValida());
-            }
-            
-            if (marcaResponse == null) {
-                log.error("Servicio de marca devolvió una respuesta nula");
-                actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
-                        "Error en comunicación con servicio de marca: Respuesta nula");
-                throw new TransaccionRechazadaException("Servicio de marca devolvió una respuesta nula");
-            }
-            
-            // Verificar si la tarjeta es válida según la respuesta de la marca
-            if (!marcaResponse.isValida()) {
-                String razonRechazo;
-                if (marcaResponse.getMensaje() != null && !marcaResponse.getMensaje().isEmpty()) {
-                    // Si el mensaje contiene un error HTTP, extraemos solo la parte relevante
-                    if (marcaResponse.getMensaje().contains("[404") || marcaResponse.getMensaje().contains("[400") || 
-                            marcaResponse.getMensaje().contains("[500")) {
-                        
-                        if (marcaResponse.getMensaje().contains("Tarjeta no encontrada")) {
-                            razonRechazo = "Tarjeta no encontrada en el sistema";
-                        } else if (marcaResponse.getMensaje().toLowerCase().contains("incorrectos")) {
-                            razonRechazo = "Datos de la tarjeta incorrectos";
-                        } else {
-                            razonRechazo = "Error en el servicio de validación de tarjeta";
-                        }
-                    } else {
-                        razonRechazo = marcaResponse.getMensaje();
-                    }
-                } else {
-                    razonRechazo = "Validación de tarjeta fallida";
-                }
-                
-                String mensaje = "Tarjeta rechazada: " + razonRechazo;
-                log.warn(mensaje);
-                actualizarEstadoTransaccion(transaccion, ESTADO_RECHAZADA, mensaje);
-                // No lanzamos excepción, simplemente retornamos para terminar el proceso aquí
-                return;
-            }
-            
-            // Actualizar la transacción con la información del banco emisor
-            String swiftBanco = marcaResponse.getSwiftBanco();
-            if (swiftBanco == null || swiftBanco.isEmpty()) {
-                log.warn("Servicio de marca no devolvió el código SWIFT del banco, se usará valor por defecto");
-                swiftBanco = "DESCONOCIDO";
-            } else if ("N/A".equals(swiftBanco)) {
-                log.warn("Servicio de marca devolvió N/A como código SWIFT, se usará valor por defecto");
-                swiftBanco = "DESCONOCIDO";
-            }
-            
-            log.info("Validación de marca exitosa para transacción: {} - Swift del banco: {}", 
-                    transaccion.getCodTransaccion(), swiftBanco);
-            
-            // Actualizar la transacción con el SWIFT del banco
-            transaccion.setSwiftBancoTarjeta(swiftBanco);
-            actualizarEstadoTransaccion(transaccion, ESTADO_VALIDACION_FRAUDE, "Iniciando validación de fraude");
-        } catch (TransaccionRechazadaException e) {
-            // No hacemos nada especial con esta excepción, la propagamos hacia arriba
-            throw e;
-        } catch (Exception e) {
-            log.error("Error general en validación con marca: {}", e.getMessage(), e);
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, 
-                    "Error general en validación con marca: " + e.getMessage());
-            throw new TransaccionRechazadaException("Error general en validación con marca: " + e.getMessage());
+        actualizarEstadoTransaccion(transaccion, resultado, validacion.getEstado(), validacion.getMensaje());
+        if (ESTADO_RECHAZADA.equals(validacion.getEstado())) {
+            // No lanzamos excepción, el pipeline termina con la transacción rechazada
+            return;
         }
+        throw new TransaccionRechazadaException(validacion.getMensajeRechazo());
     }
     
-    private void procesarDebitoTarjeta(Transaccion transaccion) {
+    private void procesarDebitoTarjeta(Transaccion transaccion, ResultadoProcesamiento resultado) {
         log.debug("Procesando débito a tarjeta para transacción: {}", transaccion.getCodTransaccion());
-        actualizarEstadoTransaccion(transaccion, ESTADO_PROCESO_DEBITO, 
+        
+        // Sin tiempo suficiente para el débito no se llama al core: nadie espera ya la respuesta
+        PlazoTransaccion plazo = TransaccionContextHolder.getPlazo();
+        if (plazo != null && plazo.restanteMs() < plazoMinimoDebitoMs) {
+            String mensaje = "Plazo de la transacción agotado antes del débito";
+            log.warn("{}: {}", mensaje, transaccion.getCodTransaccion());
+            actualizarEstadoTransaccion(transaccion, resultado, ESTADO_ERROR, mensaje);
+            throw new TransaccionRechazadaException(mensaje);
+        }
+        
+        actualizarEstadoTransaccion(transaccion, resultado, ESTADO_PROCESO_DEBITO, 
                 "Iniciando proceso de débito a tarjeta");
         
         try {
@@ -518,12 +499,13 @@ public class TransaccionService {
                 request.setCuotas(1);  // 1 por defecto
             }
             
-            ProcesoBancarioResponse response = bancoClient.procesarTransaccion(request);
+            ProcesoBancarioResponse response = limitadorCoreBancario.ejecutar(
+                    LimitadorCoreBancarioService.Operacion.DEBITO, () -> bancoClient.procesarTransaccion(request));
             
             if (!"APROBADO".equals(response.getEstado())) {
                 String mensaje = "Débito rechazado: " + response.getMensaje();
                 log.error(mensaje);
-                actualizarEstadoTransaccion(transaccion, ESTADO_RECHAZADA, mensaje);
+                actualizarEstadoTransaccion(transaccion, resultado, ESTADO_RECHAZADA, mensaje);
                 throw new TransaccionRechazadaException(mensaje);
             }
             
@@ -536,14 +518,30 @@ public class TransaccionService {
             log.error("Error general en proceso de débito: {}", e.getMessage(), e);
             String mensajeError = "Error inesperado en proceso de débito: " + 
                     (e.getMessage() != null ? e.getMessage() : "Error desconocido");
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensajeError);
+            if (debitoPudoAplicarse(e)) {
+                // El débito no es idempotente: si la solicitud salió, se reversa en lugar de dejarla en ERR
+                programarReverso(transaccion, resultado, mensajeError);
+            }
+            actualizarEstadoTransaccion(transaccion, resultado, ESTADO_ERROR, mensajeError);
             throw new TransaccionRechazadaException(mensajeError);
         }
     }
     
-    private void procesarCreditoComercio(Transaccion transaccion) {
+    /**
+     * Indica si el core pudo haber aplicado el débito pese al error: solo se descarta
+     * cuando la solicitud no se envió o el core la rechazó (4xx).
+     */
+    private static boolean debitoPudoAplicarse(Exception e) {
+        if (e instanceof ClienteRemotoException remoto) {
+            return !remoto.getCategoria().isSolicitudNoEnviada()
+                    && remoto.getCategoria() != CategoriaErrorCliente.SOLICITUD_INVALIDA;
+        }
+        return true;
+    }
+    
+    private void procesarCreditoComercio(Transaccion transaccion, ResultadoProcesamiento resultado) {
         log.debug("Procesando crédito a comercio para transacción: {}", transaccion.getCodTransaccion());
-        actualizarEstadoTransaccion(transaccion, ESTADO_PROCESO_CREDITO, 
+        actualizarEstadoTransaccion(transaccion, resultado, ESTADO_PROCESO_CREDITO, 
                 "Iniciando proceso de crédito a comercio");
         
         try {
@@ -582,13 +580,14 @@ public class TransaccionService {
                 request.setCuotas(1);  // 1 por defecto
             }
             
-            ProcesoBancarioResponse response = bancoClient.procesarTransaccion(request);
+            // Completa un débito ya aplicado: se ejecuta aunque el plazo de la transacción haya vencido
+            ProcesoBancarioResponse response = TransaccionContextHolder.sinPlazo(() -> limitadorCoreBancario.ejecutar(
+                    LimitadorCoreBancarioService.Operacion.CREDITO, () -> bancoClient.procesarTransaccion(request)));
             
             if (!"APROBADO".equals(response.getEstado())) {
                 String mensaje = "Crédito rechazado: " + response.getMensaje();
                 log.error(mensaje);
-                actualizarEstadoTransaccion(transaccion, ESTADO_RECHAZADA, mensaje);
-                throw new TransaccionRechazadaException(mensaje);
+                programarReverso(transaccion, resultado, mensaje);
             }
             
             log.info("Crédito a comercio exitoso para transacción: {}", transaccion.getCodTransaccion());
@@ -600,12 +599,32 @@ public class TransaccionService {
             log.error("Error general en proceso de crédito: {}", e.getMessage(), e);
             String mensajeError = "Error inesperado en proceso de crédito: " + 
                     (e.getMessage() != null ? e.getMessage() : "Error desconocido");
-            actualizarEstadoTransaccion(transaccion, ESTADO_ERROR, mensajeError);
-            throw new TransaccionRechazadaException(mensajeError);
+            programarReverso(transaccion, resultado, mensajeError);
         }
     }
     
-    private void reversoDebitoTarjeta(Transaccion transaccion) {
+    /**
+     * El débito ya se aplicó y el crédito falló: se registra el reverso en la cola
+     * persistente y la transacción queda en REV. El reverso se ejecuta en segundo plano
+     * ({@link CompensacionReversosService}), sin demorar la respuesta al gateway.
+     */
+    private void programarReverso(Transaccion transaccion, ResultadoProcesamiento resultado, String motivo) {
+        colaReversosService.encolar(transaccion, TransaccionContextHolder.getDiferido(),
+                TransaccionContextHolder.getCuotas());
+        actualizarEstadoTransaccion(transaccion, resultado, ESTADO_PROCESO_REVERSO,
+                motivo + ". Reverso del débito programado");
+        throw new TransaccionRechazadaException(motivo + ". El débito será reversado");
+    }
+    
+    /**
+     * Reversa el débito de la transacción. Lo invoca {@link CompensacionReversosService}
+     * con el diferido y las cuotas originales ya cargados en el contexto.
+     * @param transaccion La transacción con el débito aplicado
+     * @param ultimoIntento Si es true, un error deja la transacción en ERR_IRRECUPERABLE
+     * @throws TransaccionRechazadaException si el reverso falló de forma definitiva
+     * @throws RuntimeException si falló por un error transitorio y puede reintentarse
+     */
+    public void reversarDebito(Transaccion transaccion, boolean ultimoIntento) {
         log.debug("Procesando reverso de débito para transacción: {}", transaccion.getCodTransaccion());
         actualizarEstadoTransaccion(transaccion, ESTADO_PROCESO_REVERSO, 
                 "Iniciando proceso de reverso de débito");
@@ -647,7 +666,9 @@ public class TransaccionService {
                 request.setCuotas(1);  // 1 por defecto
             }
             
-            ProcesoBancarioResponse response = bancoClient.procesarTransaccion(request);
+            // Deshace un débito ya aplicado: se ejecuta aunque el plazo de la transacción haya vencido
+            ProcesoBancarioResponse response = TransaccionContextHolder.sinPlazo(() -> limitadorCoreBancario.ejecutar(
+                    LimitadorCoreBancarioService.Operacion.REVERSO, () -> bancoClient.procesarTransaccion(request)));
             
             if (!"APROBADO".equals(response.getEstado())) {
                 String mensaje = "Reverso rechazado: " + response.getMensaje();
@@ -660,26 +681,134 @@ public class TransaccionService {
             actualizarEstadoTransaccion(transaccion, ESTADO_REVERSADA, 
                     "Transacción reversada exitosamente");
             
+        } catch (TransaccionRechazadaException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error grave en proceso de reverso: {}", e.getMessage(), e);
             String mensajeError = "Error inesperado en proceso de reverso: " + 
                     (e.getMessage() != null ? e.getMessage() : "Error desconocido");
+            if (!ultimoIntento) {
+                log.warn("Reverso de transacción {} fallido, se reintentará: {}", 
+                        transaccion.getCodTransaccion(), e.getMessage());
+                throw new RuntimeException(mensajeError, e);
+            }
+            log.error("Error grave en proceso de reverso: {}", e.getMessage(), e);
             actualizarEstadoTransaccion(transaccion, ESTADO_ERROR_IRRECUPERABLE, mensajeError);
             throw new TransaccionRechazadaException(mensajeError);
         }
     }
 
+    /**
+     * Retoma una transacción que quedó detenida porque el nodo que la procesaba se detuvo.
+     * Lo invoca {@link RecuperacionTransaccionesService} con el último estado registrado:
+     * - PEN, VMA, VFR: el débito nunca se envió, la transacción pasa a ERR.
+     * - DEB: no se sabe si el core aplicó el débito, se programa su reverso.
+     * - CRE: el crédito pudo haberse aplicado en el core antes de la caída y no es
+     *   idempotente; reenviarlo podría acreditar dos veces al comercio. La transacción pasa a
+     *   ERR_IRRECUPERABLE para conciliación manual (métrica recuperacion.transacciones con
+     *   accion=conciliacion).
+     * - REV: se asegura que el reverso esté en la cola.
+     * El diferido y las cuotas no se guardan con la transacción, por lo que el crédito y el
+     * reverso usan los valores por defecto (sin diferir, una cuota).
+     * @param transaccion La transacción detenida
+     * @param ultimoEstado El último estado de su historial
+     * @return La acción aplicada: fallida, reversada o conciliacion
+     */
+    public String recuperar(Transaccion transaccion, String ultimoEstado) {
+        log.info("Recuperando transacción {} detenida en estado {}", transaccion.getCodTransaccion(), ultimoEstado);
+        switch (ultimoEstado) {
+            case ESTADO_PENDIENTE, ESTADO_VALIDACION_MARCA, ESTADO_VALIDACION_FRAUDE -> {
+                actualizarEstadoTransaccion(transaccion, ESTADO_ERROR,
+                        "Procesamiento interrumpido antes del débito");
+                return "fallida";
+            }
+            case ESTADO_PROCESO_DEBITO -> {
+                colaReversosService.encolar(transaccion, null, null);
+                actualizarEstadoTransaccion(transaccion, ESTADO_PROCESO_REVERSO,
+                        "Procesamiento interrumpido durante el débito. Reverso del débito programado");
+                return "reversada";
+            }
+            case ESTADO_PROCESO_CREDITO -> {
+                log.error("Transacción {} detenida durante el crédito al comercio, requiere conciliación manual",
+                        transaccion.getCodTransaccion());
+                actualizarEstadoTransaccion(transaccion, ESTADO_ERROR_IRRECUPERABLE,
+                        "Procesamiento interrumpido durante el crédito. Conciliar con el core bancario");
+                return "conciliacion";
+            }
+            case ESTADO_PROCESO_REVERSO -> {
+                colaReversosService.encolar(transaccion, null, null);
+                return "reversada";
+            }
+            default -> throw new IllegalArgumentException("Estado no recuperable: " + ultimoEstado);
+        }
+    }
+
     public Transaccion obtenerTransaccionPorCodigo(String codTransaccion) {
-        log.info("Buscando transacción con código: {}", codTransaccion);
+        log.debug("Buscando transacción con código: {}", codTransaccion);
         
-        Transaccion transaccionRedis = redisService.getTransaccionByCodigo(codTransaccion);
+        Transaccion transaccionRedis = cacheTransacciones.getTransaccionByCodigo(codTransaccion);
         if (transaccionRedis != null) {
-            log.info("Transacción encontrada en Redis: {}", transaccionRedis.getCodTransaccion());
             return transaccionRedis;
         }
         
-        return transaccionRepository.findByCodTransaccion(codTransaccion)
-                .orElseThrow(() -> new NotFoundException("Transacción no encontrada con código: " + codTransaccion));
+        if (cacheLocal.esInexistente(codTransaccion)) {
+            throw NotFoundException.sinTraza("Transacción no encontrada con código: " + codTransaccion);
+        }
+        return consultarBaseDatos(codTransaccion)
+                .orElseThrow(() -> NotFoundException.sinTraza("Transacción no encontrada con código: " + codTransaccion));
+    }
+
+    /**
+     * Devuelve la transacción con su historial de estados. Ambos se leen de la caché
+     * cuando están; el historial de una transacción en estado final leído de la base de
+     * datos se vuelve a cargar en la caché.
+     */
+    public SeguimientoTransaccion obtenerSeguimiento(String codTransaccion) {
+        Transaccion transaccion = obtenerTransaccionPorCodigo(codTransaccion);
+
+        List<HistorialEstadoTransaccion> historial = cacheTransacciones.getSeguimiento(codTransaccion);
+        if (historial == null) {
+            historial = historialRepository.findByCodTransaccionOrderByFechaEstadoCambioDesc(codTransaccion);
+            // En curso, la bitácora puede tener transiciones que aún no están en la base de datos
+            if (CacheLocalTransaccionesService.ESTADOS_FINALES.contains(transaccion.getEstado())) {
+                cacheTransacciones.repoblarSeguimiento(codTransaccion, historial);
+            }
+        }
+        return new SeguimientoTransaccion(transaccion, historial);
+    }
+
+    /**
+     * Lee la transacción de PostgreSQL y la vuelve a cargar en Redis y en la caché local;
+     * si no existe, se recuerda por unos segundos. Solo una consulta por código se ejecuta
+     * a la vez en el nodo: las solicitudes que llegan mientras tanto reciben su resultado.
+     */
+    private Optional<Transaccion> consultarBaseDatos(String codTransaccion) {
+        CompletableFuture<Optional<Transaccion>> propia = new CompletableFuture<>();
+        CompletableFuture<Optional<Transaccion>> enCurso = consultasEnCurso.putIfAbsent(codTransaccion, propia);
+        if (enCurso != null) {
+            try {
+                return enCurso.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException causa ? causa : e;
+            }
+        }
+        
+        try {
+            long marca = cacheLocal.marca();
+            Optional<Transaccion> transaccion = transaccionRepository.findByCodTransaccion(codTransaccion);
+            if (transaccion.isPresent()) {
+                cacheTransacciones.repoblarTransaccion(transaccion.get());
+                cacheLocal.guardarLeida(transaccion.get(), marca);
+            } else {
+                cacheLocal.registrarInexistente(codTransaccion, marca);
+            }
+            propia.complete(transaccion);
+            return transaccion;
+        } catch (RuntimeException e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            consultasEnCurso.remove(codTransaccion, propia);
+        }
     }
 
     public List<Transaccion> buscarTransaccionesPorFecha(LocalDateTime desde, LocalDateTime hasta) {
@@ -687,7 +816,12 @@ public class TransaccionService {
         return transaccionRepository.findByFechaTransaccionBetweenOrderByFechaTransaccionDesc(desde, hasta);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    private void actualizarEstadoTransaccion(Transaccion transaccion, ResultadoProcesamiento resultado,
+            String estado, String mensaje) {
+        actualizarEstadoTransaccion(transaccion, estado, mensaje);
+        resultado.registrarEtapa(estado, mensaje);
+    }
+
     private void actualizarEstadoTransaccion(Transaccion transaccion, String estado, String mensaje) {
         // Asegurarse de que la transacción tenga un ID antes de guardar
         if (transaccion.getId() == null) {
@@ -695,68 +829,32 @@ public class TransaccionService {
             throw new RuntimeException("Intento de actualizar transacción sin ID");
         }
         
-        try {
-            // Actualizar en PostgreSQL primero
-            transaccion.setEstado(estado);
-            Transaccion transaccionActualizada = transaccionRepository.save(transaccion);
-            log.info("Transacción con ID {} actualizada en PostgreSQL con estado: {}", transaccion.getId(), estado);
-            
-            // Registrar historial sólo si la actualización en PostgreSQL fue exitosa
-            try {
-                registrarHistorialEstado(transaccion, estado, mensaje);
-            } catch (Exception e) {
-                log.error("Error al registrar historial de estado: {}", e.getMessage(), e);
-                // Continuamos el proceso aunque falle el registro del historial
-            }
-            
-            // MODIFICADO: Actualizar en Redis para TODOS los estados, incluyendo estados de error
-            // Esto mantiene las transacciones con error en Redis para análisis de fraude
-            try {
-        redisService.updateTransaccion(transaccion);
-                log.info("Transacción actualizada en Redis con estado {}: {}", estado, transaccion.getCodTransaccion());
-            } catch (Exception e) {
-                log.error("Error al actualizar transacción en Redis: {}", e.getMessage(), e);
-            }
-        
+        // La bitácora decide si la transición se escribe ahora o se agrupa con las siguientes
+        transaccion.setEstado(estado);
+        bitacoraEstadosService.registrar(transaccion, estado, mensaje);
         log.info("Estado de transacción actualizado a: {} - {}", estado, mensaje);
-        } catch (Exception e) {
-            log.error("Error al actualizar estado de transacción en PostgreSQL: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al actualizar transacción en base de datos", e);
-        }
     }
 
+    /**
+     * @return El historial guardado, o null si no se pudo guardar
+     */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    private void registrarHistorialEstado(Transaccion transaccion, String estado, String mensaje) {
+    private HistorialEstadoTransaccion registrarHistorialEstado(Transaccion transaccion, String estado, String mensaje) {
         // Validación de entradas
         if (transaccion == null || transaccion.getCodTransaccion() == null) {
             log.error("No se puede registrar historial sin una transacción o código válido");
-            return;
-        }
-        
-        // Truncar mensaje si es necesario (máximo 200 caracteres)
-        String mensajeTruncado = null;
-        if (mensaje != null) {
-            if (mensaje.length() > 200) {
-                mensajeTruncado = mensaje.substring(0, 197) + "...";
-                log.debug("Mensaje truncado por exceder longitud máxima: {}", mensajeTruncado);
-            } else {
-                mensajeTruncado = mensaje;
-            }
-        } else {
-            mensajeTruncado = "Sin información adicional";
+            return null;
         }
         
         try {
-        HistorialEstadoTransaccion historial = new HistorialEstadoTransaccion();
-        historial.setCodHistorialEstado(UUID.randomUUID().toString().substring(0, 10));
-        historial.setCodTransaccion(transaccion.getCodTransaccion());
-        historial.setEstado(estado);
-            historial.setMensaje(mensajeTruncado);
-        historial.setFechaEstadoCambio(LocalDateTime.now());
-        historialRepository.save(historial);
-            log.debug("Historial de estado registrado: {} - {}", estado, mensajeTruncado);
+            HistorialEstadoTransaccion historial = BitacoraEstadosService.construirHistorial(
+                    transaccion.getCodTransaccion(), estado, mensaje);
+            historialRepository.save(historial);
+            log.debug("Historial de estado registrado: {} - {}", estado, historial.getMensaje());
+            return historial;
         } catch (Exception e) {
             log.error("Error al registrar historial de estado: {} - {}", estado, e.getMessage(), e);
+            return null;
         }
     }
 
@@ -778,30 +876,4 @@ public class TransaccionService {
     public List<Transaccion> findByEstado(String estado) {
         return transaccionRepository.findByEstado(estado);
     }
-
-    /**
-     * Obtiene el último mensaje registrado para una transacción
-     * @param transaccion La transacción de la que se desea obtener el último mensaje
-     * @return El último mensaje registrado o null si no hay mensajes
-     */
-    public String obtenerUltimoMensaje(Transaccion transaccion) {
-        if (transaccion == null || transaccion.getCodTransaccion() == null) {
-            return null;
-        }
-        
-        try {
-            // Obtener el historial de estados más reciente por código de transacción
-            List<HistorialEstadoTransaccion> historial = historialRepository.findByCodTransaccionOrderByFechaEstadoCambioDesc(
-                    transaccion.getCodTransaccion());
-            
-            if (historial != null && !historial.isEmpty()) {
-                // Retornar el mensaje del estado más reciente
-                return historial.get(0).getMensaje();
-            }
-        } catch (Exception e) {
-            log.error("Error al obtener último mensaje de transacción: {}", e.getMessage(), e);
-        }
-        
-        return null;
-    }
 } 
\ No newline at end of file
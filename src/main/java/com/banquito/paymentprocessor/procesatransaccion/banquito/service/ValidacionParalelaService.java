@@ -0,0 +1,289 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.springframework.stereotype.Service;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.FraudeClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.MarcaClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionFraudeRequest;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionFraudeResponse;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionMarcaRequest;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionMarcaResponse;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoValidacion;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ejecuta la validación con la marca y con el sistema de fraude al mismo tiempo.
+ * Ambas consultas solo comparten número de tarjeta y monto, por lo que no hay
+ * dependencia entre ellas. Cada consulta convierte sus errores en un
+ * {@link ResultadoValidacion}, de modo que nunca lanza excepciones hacia el llamador.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ValidacionParalelaService {
+
+    private final MarcaClient marcaClient;
+    private final FraudeClient fraudeClient;
+    private final CoberturaMarcaService coberturaMarcaService;
+    private final ExecutorService validacionExecutor;
+
+    /**
+     * Valida la transacción con marca y fraude en paralelo y combina los resultados
+     * con la misma prioridad del flujo secuencial: el rechazo de marca prevalece sobre
+     * fraude, y FRA prevalece sobre ERR. Si la primera respuesta ya es decisiva
+     * (rechazo de marca) se cancela la consulta pendiente.
+     * @param transaccion La transacción con los datos de tarjeta ya verificados
+     * @return El resultado combinado de ambas validaciones
+     */
+    public ResultadoValidacion validar(Transaccion transaccion) {
+        CompletionService<ResultadoValidacion> completion = new ExecutorCompletionService<>(validacionExecutor);
+        // El plazo de la transacción viaja explícitamente a los hilos de las consultas
+        Future<ResultadoValidacion> marca = completion.submit(
+                TransaccionContextHolder.conPlazo(() -> consultarMarca(transaccion)));
+        Future<ResultadoValidacion> fraude = completion.submit(
+                TransaccionContextHolder.conPlazo(() -> consultarFraude(transaccion)));
+
+        try {
+            ResultadoValidacion primero = completion.take().get();
+            if (esDecisivo(primero)) {
+                Future<ResultadoValidacion> pendiente =
+                        ResultadoValidacion.ORIGEN_MARCA.equals(primero.getOrigen()) ? fraude : marca;
+                pendiente.cancel(true);
+                log.info("Validación {} decisiva para transacción {}, se cancela la consulta pendiente",
+                        primero.getOrigen(), transaccion.getCodTransaccion());
+                return primero;
+            }
+            return combinar(marca.get(), fraude.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            marca.cancel(true);
+            fraude.cancel(true);
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_MARCA, TransaccionService.ESTADO_ERROR,
+                    "Validación interrumpida", "Validación interrumpida");
+        } catch (ExecutionException e) {
+            // Las consultas capturan sus propios errores; solo ocurre ante fallos inesperados
+            log.error("Error inesperado en validación paralela: {}", e.getMessage(), e);
+            marca.cancel(true);
+            fraude.cancel(true);
+            String mensaje = "Error general en validación: " + e.getCause().getMessage();
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_MARCA, TransaccionService.ESTADO_ERROR,
+                    mensaje, mensaje);
+        }
+    }
+
+    /**
+     * Un resultado es decisivo cuando ningún resultado de la otra validación puede
+     * cambiar el estado final. Solo el rechazo de la marca cumple esta condición.
+     */
+    private boolean esDecisivo(ResultadoValidacion resultado) {
+        return ResultadoValidacion.ORIGEN_MARCA.equals(resultado.getOrigen())
+                && TransaccionService.ESTADO_RECHAZADA.equals(resultado.getEstado());
+    }
+
+    private ResultadoValidacion combinar(ResultadoValidacion marca, ResultadoValidacion fraude) {
+        if (TransaccionService.ESTADO_RECHAZADA.equals(marca.getEstado())) {
+            return marca;
+        }
+        if (TransaccionService.ESTADO_FRAUDE.equals(fraude.getEstado())) {
+            return fraude;
+        }
+        if (!marca.isAprobada()) {
+            return marca;
+        }
+        if (!fraude.isAprobada()) {
+            return fraude;
+        }
+        return marca;
+    }
+
+    ResultadoValidacion consultarMarca(Transaccion transaccion) {
+        // Registrar información de la transacción (ocultando datos sensibles)
+        log.info("Datos de transacción para validar: numeroTarjeta={}****, codigoSeguridad=***, fechaExpiracion={}, monto={}, codigoUnico={}",
+            transaccion.getNumeroTarjeta().substring(0, 4),
+            transaccion.getFechaCaducidad(),
+            transaccion.getMonto(),
+            transaccion.getCodigoUnico());
+
+        ValidacionMarcaRequest marcaRequest = new ValidacionMarcaRequest();
+        marcaRequest.setNumeroTarjeta(transaccion.getNumeroTarjeta());
+        marcaRequest.setCodigoSeguridad(transaccion.getCvv());
+        marcaRequest.setFechaExpiracion(transaccion.getFechaCaducidad());
+        marcaRequest.setMonto(transaccion.getMonto());
+        marcaRequest.setCodigoUnicoTransaccion(transaccion.getCodigoUnico());
+
+        ValidacionMarcaResponse marcaResponse;
+        try {
+            log.debug("Enviando solicitud a ValidaMServerless en URL: {}/dev/api/v1/marca/validar",
+                    "${app.marca-service.url}");
+            marcaResponse = coberturaMarcaService.ejecutar(() -> marcaClient.validarTarjeta(marcaRequest));
+        } catch (Exception e) {
+            log.error("Error al llamar al servicio de marca: {}", e.getMessage(), e);
+
+            // Comprobar si es un error de timeout
+            if (e instanceof ClienteRemotoException remoto && remoto.getCategoria() == CategoriaErrorCliente.TIMEOUT) {
+                log.error("Timeout en la conexión con el servicio de marca");
+                return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_MARCA, TransaccionService.ESTADO_ERROR,
+                        "Timeout en la conexión con servicio de marca",
+                        "Timeout en la conexión con servicio de marca");
+            }
+
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_MARCA, TransaccionService.ESTADO_ERROR,
+                    "Error en comunicación con servicio de marca: " + e.getMessage(),
+                    "Error en validación con marca: " + e.getMessage());
+        }
+
+        log.debug("Respuesta de marca recibida: {}",
+            marcaResponse != null ? marcaResponse.toString() : "null");
+
+        if (marcaResponse == null) {
+            log.error("Servicio de marca devolvió una respuesta nula");
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_MARCA, TransaccionService.ESTADO_ERROR,
+                    "Error en comunicación con servicio de marca: Respuesta nula",
+                    "Servicio de marca devolvió una respuesta nula");
+        }
+
+        // Verificar si la tarjeta es válida según la respuesta de la marca
+        if (!marcaResponse.isValida()) {
+            String razonRechazo;
+            if (marcaResponse.getMensaje() != null && !marcaResponse.getMensaje().isEmpty()) {
+                // Si el mensaje contiene un error HTTP, extraemos solo la parte relevante
+                if (marcaResponse.getMensaje().contains("[404") || marcaResponse.getMensaje().contains("[400") ||
+                        marcaResponse.getMensaje().contains("[500")) {
+
+                    if (marcaResponse.getMensaje().contains("Tarjeta no encontrada")) {
+                        razonRechazo = "Tarjeta no encontrada en el sistema";
+                    } else if (marcaResponse.getMensaje().toLowerCase().contains("incorrectos")) {
+                        razonRechazo = "Datos de la tarjeta incorrectos";
+                    } else {
+                        razonRechazo = "Error en el servicio de validación de tarjeta";
+                    }
+                } else {
+                    razonRechazo = marcaResponse.getMensaje();
+                }
+            } else {
+                razonRechazo = "Validación de tarjeta fallida";
+            }
+
+            String mensaje = "Tarjeta rechazada: " + razonRechazo;
+            log.warn(mensaje);
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_MARCA, TransaccionService.ESTADO_RECHAZADA,
+                    mensaje, mensaje);
+        }
+
+        // Información del banco emisor
+        String swiftBanco = marcaResponse.getSwiftBanco();
+        if (swiftBanco == null || swiftBanco.isEmpty()) {
+            log.warn("Servicio de marca no devolvió el código SWIFT del banco, se usará valor por defecto");
+            swiftBanco = "DESCONOCIDO";
+        } else if ("N/A".equals(swiftBanco)) {
+            log.warn("Servicio de marca devolvió N/A como código SWIFT, se usará valor por defecto");
+            swiftBanco = "DESCONOCIDO";
+        }
+
+        log.info("Validación de marca exitosa para transacción: {} - Swift del banco: {}",
+                transaccion.getCodTransaccion(), swiftBanco);
+        return ResultadoValidacion.aprobada(ResultadoValidacion.ORIGEN_MARCA, swiftBanco);
+    }
+
+    ResultadoValidacion consultarFraude(Transaccion transaccion) {
+        // Registro seguro de información (ocultar datos sensibles)
+        if (transaccion.getNumeroTarjeta().length() >= 4) {
+            log.info("Datos de transacción para validar fraude: numeroTarjeta={}****, monto={}, codigoUnico={}",
+                transaccion.getNumeroTarjeta().substring(0, 4),
+                transaccion.getMonto(),
+                transaccion.getCodigoUnico());
+        }
+
+        ValidacionFraudeRequest fraudeRequest = new ValidacionFraudeRequest();
+        fraudeRequest.setNumeroTarjeta(transaccion.getNumeroTarjeta());
+        fraudeRequest.setMonto(transaccion.getMonto());
+        fraudeRequest.setCodigoUnico(transaccion.getCodigoUnico());
+
+        // Determinar y establecer el tipo de transacción
+        String tipoTransaccion = "COMPRA"; // Valor por defecto
+        if (transaccion.getTipo() != null) {
+            // Mapeo de tipos de transacción según la nomenclatura esperada por el servicio de fraude
+            switch (transaccion.getTipo()) {
+                case "PAG":
+                    tipoTransaccion = "PAGO";
+                    break;
+                case "TRA":
+                    tipoTransaccion = "TRANSFERENCIA";
+                    break;
+                case "RET":
+                    tipoTransaccion = "RETIRO";
+                    break;
+                default:
+                    tipoTransaccion = "COMPRA";
+            }
+        }
+        fraudeRequest.setTipoTransaccion(tipoTransaccion);
+
+        // Establecer el código de comercio (si está disponible)
+        String codigoComercio = "COM123"; // Valor por defecto
+        if (transaccion.getSwiftBancoComercio() != null && !transaccion.getSwiftBancoComercio().isEmpty()) {
+            codigoComercio = transaccion.getSwiftBancoComercio();
+        }
+        fraudeRequest.setCodigoComercio(codigoComercio);
+
+        log.debug("Enviando solicitud de validación de fraude: {}", fraudeRequest);
+
+        ValidacionFraudeResponse fraudeResponse;
+        try {
+            log.debug("Llamando al servicio de fraude en URL: ${app.fraude-service.url}/api/v1/fraude/validar");
+            fraudeResponse = fraudeClient.validarTransaccion(fraudeRequest);
+        } catch (Exception e) {
+            log.error("Error en validación de fraude: {}", e.getMessage(), e);
+            String mensaje = "Error en validación de fraude: " + e.getMessage();
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_FRAUDE, TransaccionService.ESTADO_ERROR,
+                    mensaje, mensaje);
+        }
+
+        if (fraudeResponse == null) {
+            String mensaje = "Respuesta de validación de fraude es null";
+            log.error(mensaje);
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_FRAUDE, TransaccionService.ESTADO_ERROR,
+                    mensaje, mensaje);
+        }
+
+        log.debug("Respuesta del servicio de fraude: {}", fraudeResponse);
+
+        // Verificar si la transacción es fraudulenta
+        if (fraudeResponse.getEsFraude() != null && fraudeResponse.getEsFraude()) {
+            String detalleRazon = "";
+            if (fraudeResponse.getCodigoRegla() != null && !fraudeResponse.getCodigoRegla().isEmpty()) {
+                detalleRazon += " Regla: " + fraudeResponse.getCodigoRegla();
+            }
+
+            if (fraudeResponse.getNivelRiesgo() != null) {
+                detalleRazon += " Nivel de riesgo: " + fraudeResponse.getNivelRiesgo();
+            }
+
+            String mensaje = "Posible fraude detectado." + detalleRazon;
+            if (fraudeResponse.getMensaje() != null && !fraudeResponse.getMensaje().isEmpty()) {
+                mensaje += " Detalle: " + fraudeResponse.getMensaje();
+            }
+
+            log.warn(mensaje);
+            return ResultadoValidacion.rechazada(ResultadoValidacion.ORIGEN_FRAUDE, TransaccionService.ESTADO_FRAUDE,
+                    mensaje, "Transacción rechazada por posible fraude: " +
+                    (fraudeResponse.getMensaje() != null ? fraudeResponse.getMensaje() : "Validación de fraude"));
+        }
+
+        log.info("Validación de fraude exitosa para transacción: {}",
+                transaccion.getCodTransaccion());
+        return ResultadoValidacion.aprobada(ResultadoValidacion.ORIGEN_FRAUDE, null);
+    }
+}
@@ -0,0 +1,71 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Resultado del pipeline de procesamiento: estado final, último mensaje y las etapas
+ * recorridas, para que el llamador arme su respuesta sin volver a consultar el historial.
+ */
+@Getter
+@ToString
+public class ResultadoProcesamiento {
+
+    private final Transaccion transaccion;
+    @ToString.Exclude
+    private final List<Etapa> etapas = new ArrayList<>();
+    private String estado;
+    private String mensaje;
+    /** Respuesta de una solicitud anterior con el mismo código único, sin volver a procesar. */
+    private boolean repetido;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private long ultimoCambioNanos = System.nanoTime();
+
+    /**
+     * Transición registrada durante el procesamiento, con el tiempo transcurrido
+     * desde la transición anterior.
+     */
+    public record Etapa(String estado, String mensaje, long duracionMs) {
+    }
+
+    public ResultadoProcesamiento(Transaccion transaccion) {
+        this.transaccion = transaccion;
+        this.estado = transaccion.getEstado();
+    }
+
+    /**
+     * Resultado ya registrado para una solicitud anterior con el mismo código único.
+     */
+    public static ResultadoProcesamiento repetido(Transaccion transaccion, String estado, String mensaje) {
+        ResultadoProcesamiento resultado = new ResultadoProcesamiento(transaccion);
+        resultado.estado = estado;
+        resultado.mensaje = mensaje;
+        resultado.repetido = true;
+        return resultado;
+    }
+
+    public void registrarEtapa(String estado, String mensaje) {
+        long ahora = System.nanoTime();
+        this.etapas.add(new Etapa(estado, mensaje, TimeUnit.NANOSECONDS.toMillis(ahora - ultimoCambioNanos)));
+        this.ultimoCambioNanos = ahora;
+        this.estado = estado;
+        this.mensaje = mensaje;
+    }
+
+    public List<Etapa> getEtapas() {
+        return Collections.unmodifiableList(etapas);
+    }
+
+    public String getCodTransaccion() {
+        return transaccion.getCodTransaccion();
+    }
+}
@@ -0,0 +1,38 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Resultado de una validación externa (marca o fraude).
+ * Un resultado aprobado no tiene estado; uno rechazado lleva el estado final
+ * que debe registrarse (REC, FRA o ERR) y los mensajes para historial y respuesta.
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResultadoValidacion {
+
+    public static final String ORIGEN_MARCA = "MARCA";
+    public static final String ORIGEN_FRAUDE = "FRAUDE";
+
+    private final String origen;
+    private final String estado;
+    private final String mensaje;
+    private final String mensajeRechazo;
+    private final String swiftBanco;
+
+    public static ResultadoValidacion aprobada(String origen, String swiftBanco) {
+        return new ResultadoValidacion(origen, null, null, null, swiftBanco);
+    }
+
+    public static ResultadoValidacion rechazada(String origen, String estado, String mensaje, String mensajeRechazo) {
+        return new ResultadoValidacion(origen, estado, mensaje, mensajeRechazo, null);
+    }
+
+    public boolean isAprobada() {
+        return estado == null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto;
+
+import java.util.List;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Una transacción con su historial de estados, del más reciente al más antiguo.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SeguimientoTransaccion {
+
+    private final Transaccion transaccion;
+    private final List<HistorialEstadoTransaccion> historial;
+}
@@ -0,0 +1,22 @@
+-- Migra los ids de TRANSACCION e HISTORIAL_ESTADO_TRANSACCION de IDENTITY a secuencias
+-- con incremento 50, que es el allocationSize de las entidades (optimizador pooled-lo).
+-- Ejecutar una sola vez sobre la base existente, con la aplicación detenida:
+--   psql -h <host> -U postgres -d procesa_transaccion -f V2__ids_por_secuencia.sql
+-- En una base nueva Hibernate (ddl-auto=update) crea las secuencias y este script no es necesario.
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS SEQ_TRANSACCION INCREMENT BY 50;
+SELECT setval('SEQ_TRANSACCION', COALESCE((SELECT MAX(ID) FROM TRANSACCION), 0) + 1, false);
+ALTER TABLE TRANSACCION ALTER COLUMN ID DROP IDENTITY IF EXISTS;
+ALTER TABLE TRANSACCION ALTER COLUMN ID SET DEFAULT nextval('SEQ_TRANSACCION');
+ALTER SEQUENCE SEQ_TRANSACCION OWNED BY TRANSACCION.ID;
+
+CREATE SEQUENCE IF NOT EXISTS SEQ_HISTORIAL_ESTADO_TRANSACCION INCREMENT BY 50;
+SELECT setval('SEQ_HISTORIAL_ESTADO_TRANSACCION',
+        COALESCE((SELECT MAX(ID) FROM HISTORIAL_ESTADO_TRANSACCION), 0) + 1, false);
+ALTER TABLE HISTORIAL_ESTADO_TRANSACCION ALTER COLUMN ID DROP IDENTITY IF EXISTS;
+ALTER TABLE HISTORIAL_ESTADO_TRANSACCION ALTER COLUMN ID SET DEFAULT nextval('SEQ_HISTORIAL_ESTADO_TRANSACCION');
+ALTER SEQUENCE SEQ_HISTORIAL_ESTADO_TRANSACCION OWNED BY HISTORIAL_ESTADO_TRANSACCION.ID;
+
+COMMIT;
@@ -0,0 +1,11 @@
+-- Agrega a GATEWAY los límites de tráfico por gateway. Las columnas son opcionales:
+-- un valor nulo usa los valores por defecto de app.gateways.limite.* en application.properties.
+-- En una base nueva Hibernate (ddl-auto=update) crea las columnas y este script no es necesario.
+
+BEGIN;
+
+ALTER TABLE GATEWAY ADD COLUMN IF NOT EXISTS LIMITE_POR_SEGUNDO INTEGER;
+ALTER TABLE GATEWAY ADD COLUMN IF NOT EXISTS RAFAGA INTEGER;
+ALTER TABLE GATEWAY ADD COLUMN IF NOT EXISTS PESO INTEGER;
+
+COMMIT;
@@ -0,0 +1,9 @@
+-- Agrega a GATEWAY el plazo por defecto de sus transacciones, en milisegundos.
+-- Un valor nulo usa app.plazo.por-defecto-ms de application.properties.
+-- En una base nueva Hibernate (ddl-auto=update) crea la columna y este script no es necesario.
+
+BEGIN;
+
+ALTER TABLE GATEWAY ADD COLUMN IF NOT EXISTS PLAZO_MS INTEGER;
+
+COMMIT;
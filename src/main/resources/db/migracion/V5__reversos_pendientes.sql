@@ -0,0 +1,29 @@
+-- Cola persistente de reversos de débito (crédito al comercio fallido tras un débito exitoso).
+-- En una base nueva Hibernate (ddl-auto=update) crea la tabla, pero no el índice parcial;
+-- este script puede ejecutarse igualmente para agregarlo.
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS SEQ_REVERSO_PENDIENTE INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS REVERSO_PENDIENTE (
+    ID                  BIGINT PRIMARY KEY DEFAULT nextval('SEQ_REVERSO_PENDIENTE'),
+    COD_TRANSACCION     VARCHAR(10) NOT NULL UNIQUE,
+    ESTADO              VARCHAR(3) NOT NULL,
+    INTENTOS            INTEGER NOT NULL,
+    DIFERIDO            BOOLEAN,
+    CUOTAS              INTEGER,
+    PROXIMO_INTENTO     TIMESTAMP NOT NULL,
+    BLOQUEADO_HASTA     TIMESTAMP,
+    ULTIMO_ERROR        VARCHAR(200),
+    FECHA_CREACION      TIMESTAMP NOT NULL,
+    FECHA_ACTUALIZACION TIMESTAMP NOT NULL
+);
+ALTER SEQUENCE SEQ_REVERSO_PENDIENTE OWNED BY REVERSO_PENDIENTE.ID;
+
+-- Solo los reversos activos se consultan al tomar trabajo
+CREATE INDEX IF NOT EXISTS IDX_REVERSO_PENDIENTE_ACTIVOS
+    ON REVERSO_PENDIENTE (PROXIMO_INTENTO)
+    WHERE ESTADO IN ('PEN', 'PRO');
+
+COMMIT;
@@ -0,0 +1,9 @@
+-- Índice parcial para la recuperación de transacciones detenidas en estados no terminales.
+-- Solo contiene las transacciones en curso o interrumpidas, por lo que se mantiene pequeño
+-- aunque la tabla TRANSACCION crezca. Los estados deben coincidir con la consulta de
+-- TransaccionRepositoryImpl.buscarIdsDetenidas.
+-- CONCURRENTLY no bloquea las escrituras, pero no puede ejecutarse dentro de BEGIN/COMMIT.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IDX_TRANSACCION_NO_TERMINALES
+    ON TRANSACCION (ID)
+    WHERE ESTADO IN ('PEN', 'VMA', 'VFR', 'DEB', 'CRE', 'REV');
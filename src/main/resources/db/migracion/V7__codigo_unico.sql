@@ -0,0 +1,8 @@
+-- Índice único de CODIGO_UNICO: respalda la idempotencia de IdempotenciaService cuando Redis
+-- no responde y reemplaza la búsqueda secuencial que se hacía en cada solicitud.
+-- Antes de crearlo deben resolverse los duplicados existentes; para revisarlos:
+--   SELECT CODIGO_UNICO, COUNT(*) FROM TRANSACCION GROUP BY CODIGO_UNICO HAVING COUNT(*) > 1;
+-- CONCURRENTLY no bloquea las escrituras, pero no puede ejecutarse dentro de BEGIN/COMMIT.
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UX_TRANSACCION_CODIGO_UNICO
+    ON TRANSACCION (CODIGO_UNICO);
@@ -0,0 +1,7 @@
+-- Elimina una clave de arriendo o reclamo solo si sigue perteneciendo a quien la libera.
+-- KEYS[1]: clave; ARGV[1]: valor esperado (id del nodo o del reclamo)
+-- Retorna 1 si se eliminó, o 0 si venció o pertenece a otro.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
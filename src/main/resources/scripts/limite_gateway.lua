@@ -0,0 +1,26 @@
+-- Cubeta de tokens por gateway, compartida por todos los nodos.
+-- KEYS[1]: clave de la cubeta; ARGV[1]: tokens por segundo; ARGV[2]: capacidad (ráfaga)
+-- Retorna {1, 0} si se admite, o {0, milisegundos hasta el siguiente token}.
+-- Se usa el reloj de Redis para que los nodos no dependan de tener sus relojes sincronizados.
+local tasa = tonumber(ARGV[1])
+local rafaga = tonumber(ARGV[2])
+local tiempo = redis.call('TIME')
+local ahora = tonumber(tiempo[1]) * 1000 + math.floor(tonumber(tiempo[2]) / 1000)
+
+local estado = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(estado[1]) or rafaga
+local ultimo = tonumber(estado[2]) or ahora
+tokens = math.min(rafaga, tokens + math.max(0, ahora - ultimo) * tasa / 1000)
+
+local admitido = 0
+local esperaMs = 0
+if tokens >= 1 then
+    tokens = tokens - 1
+    admitido = 1
+else
+    esperaMs = math.ceil((1 - tokens) * 1000 / tasa)
+end
+
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(ahora))
+redis.call('PEXPIRE', KEYS[1], math.ceil(rafaga * 1000 / tasa) + 1000)
+return {admitido, esperaMs}
@@ -0,0 +1,8 @@
+-- Renueva el arriendo de una partición de recuperación solo si sigue siendo de este nodo.
+-- KEYS[1]: clave del arriendo; ARGV[1]: id del nodo; ARGV[2]: duración en milisegundos
+-- Retorna 1 si se renovó, o 0 si el arriendo venció o lo tomó otro nodo.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
@@ -0,0 +1,123 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.MarcaClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+
+import feign.Client;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.Target;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+public class CircuitoClientesCapabilityTest {
+
+    private static final String SERVICIO = "marca-service";
+
+    private CircuitBreakerRegistry registry;
+    private CircuitoClientesCapability capability;
+
+    @BeforeEach
+    void setUp() {
+        registry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .permittedNumberOfCallsInHalfOpenState(1)
+                .build());
+        capability = new CircuitoClientesCapability(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Thread.interrupted();
+    }
+
+    @Test
+    void respuestas5xxY429_abrenElCircuitoDelServicio() throws Exception {
+        ejecutar(responde(500)).close();
+        ejecutar(responde(429)).close();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuito().getState());
+        ClienteRemotoException rechazo = assertThrows(ClienteRemotoException.class, () -> ejecutar(responde(200)));
+        assertEquals(CategoriaErrorCliente.CIRCUITO_ABIERTO, rechazo.getCategoria());
+        // Los demás servicios no comparten el circuito
+        assertEquals(CircuitBreaker.State.CLOSED, registry.circuitBreaker("fraude-service").getState());
+    }
+
+    @Test
+    void respuestas4xx_noAbrenElCircuito() throws Exception {
+        ejecutar(responde(400)).close();
+        ejecutar(responde(404)).close();
+        ejecutar(responde(422)).close();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuito().getState());
+        assertEquals(0, circuito().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    void llamadaInterrumpida_liberaElPermisoSinContarComoFalla() throws Exception {
+        circuito().transitionToOpenState();
+        circuito().transitionToHalfOpenState();
+
+        // Cancelación de un hedge o de la validación paralela: el hilo llega interrumpido
+        assertThrows(InterruptedIOException.class, () -> ejecutar((solicitud, opciones) -> {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Solicitud cancelada");
+        }));
+        Thread.interrupted();
+
+        assertEquals(0, circuito().getMetrics().getNumberOfFailedCalls());
+        // El único permiso de HALF_OPEN quedó libre: la siguiente llamada pasa y cierra el circuito
+        ejecutar(responde(200)).close();
+        assertEquals(CircuitBreaker.State.CLOSED, circuito().getState());
+    }
+
+    @Test
+    void timeoutSinInterrupcion_cuentaComoFalla() {
+        assertThrows(SocketTimeoutException.class, () -> ejecutar((solicitud, opciones) -> {
+            throw new SocketTimeoutException("Read timed out");
+        }));
+
+        assertEquals(1, circuito().getMetrics().getNumberOfFailedCalls());
+    }
+
+    private CircuitBreaker circuito() {
+        return registry.circuitBreaker(SERVICIO);
+    }
+
+    private Response ejecutar(Client delegate) throws Exception {
+        return capability.enrich(delegate).execute(solicitud(),
+                new Request.Options(5, TimeUnit.SECONDS, 5, TimeUnit.SECONDS, true));
+    }
+
+    private static Client responde(int status) {
+        return (solicitud, opciones) -> Response.builder()
+                .status(status)
+                .request(solicitud)
+                .headers(Collections.emptyMap())
+                .build();
+    }
+
+    private static Request solicitud() {
+        RequestTemplate template = new RequestTemplate();
+        template.feignTarget(new Target.HardCodedTarget<>(MarcaClient.class, SERVICIO, "http://localhost"));
+        return Request.create(Request.HttpMethod.POST, "http://localhost/validar",
+                Collections.emptyMap(), "{}".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, template);
+    }
+}
@@ -0,0 +1,102 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.BancoClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.MarcaClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.RetryableException;
+import feign.Retryer;
+import feign.Target;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ClientRetryerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PresupuestoReintentos presupuesto;
+    private ClientRetryer clientRetryer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        presupuesto = new PresupuestoReintentos(meterRegistry);
+        ReflectionTestUtils.setField(presupuesto, "proporcion", 0.1);
+        ReflectionTestUtils.setField(presupuesto, "maximoTokens", 20);
+        presupuesto.inicializar();
+
+        clientRetryer = new ClientRetryer(presupuesto, meterRegistry);
+        ReflectionTestUtils.setField(clientRetryer, "intentosMaximos", 3);
+        ReflectionTestUtils.setField(clientRetryer, "esperaInicialMs", 1L);
+        ReflectionTestUtils.setField(clientRetryer, "esperaMaximaMs", 2L);
+        ReflectionTestUtils.setField(clientRetryer, "serviciosNoIdempotentes", List.of("banco-service"));
+    }
+
+    @Test
+    void timeoutDeMarca_reintentaHastaAgotarIntentos() {
+        Retryer retryer = clientRetryer.clone();
+        RetryableException timeout = error("marca-service", MarcaClient.class, new SocketTimeoutException("Read timed out"));
+
+        retryer.continueOrPropagate(timeout);
+        retryer.continueOrPropagate(timeout);
+        ClienteRemotoException error = assertThrows(ClienteRemotoException.class,
+                () -> retryer.continueOrPropagate(timeout));
+
+        assertEquals(CategoriaErrorCliente.TIMEOUT, error.getCategoria());
+        assertEquals("marca-service", error.getServicio());
+        assertEquals(18.0, presupuesto.getTokensDisponibles());
+    }
+
+    @Test
+    void timeoutDelCoreBancario_noSeReintenta() {
+        Retryer retryer = clientRetryer.clone();
+
+        ClienteRemotoException error = assertThrows(ClienteRemotoException.class, () -> retryer.continueOrPropagate(
+                error("banco-service", BancoClient.class, new SocketTimeoutException("Read timed out"))));
+
+        assertEquals(CategoriaErrorCliente.TIMEOUT, error.getCategoria());
+        assertEquals(20.0, presupuesto.getTokensDisponibles());
+    }
+
+    @Test
+    void conexionRechazadaEnCoreBancario_seReintenta() {
+        Retryer retryer = clientRetryer.clone();
+
+        assertDoesNotThrow(() -> retryer.continueOrPropagate(
+                error("banco-service", BancoClient.class, new ConnectException("Connection refused"))));
+    }
+
+    @Test
+    void presupuestoAgotado_propagaSinReintentar() {
+        while (presupuesto.intentarConsumir()) {
+            // Consumir todos los tokens
+        }
+        Retryer retryer = clientRetryer.clone();
+
+        assertThrows(ClienteRemotoException.class, () -> retryer.continueOrPropagate(
+                error("marca-service", MarcaClient.class, new SocketTimeoutException("Read timed out"))));
+        assertEquals(1.0, meterRegistry.counter("clientes.reintentos",
+                "servicio", "marca-service", "resultado", "sin_presupuesto").count());
+    }
+
+    private RetryableException error(String servicio, Class<?> cliente, Throwable causa) {
+        RequestTemplate template = new RequestTemplate();
+        template.feignTarget(new Target.HardCodedTarget<>(cliente, servicio, "http://localhost"));
+        Request request = Request.create(Request.HttpMethod.POST, "http://localhost/validar",
+                Collections.emptyMap(), new byte[0], StandardCharsets.UTF_8, template);
+        return new RetryableException(-1, causa.getMessage(), Request.HttpMethod.POST, causa, (Long) null, request);
+    }
+}
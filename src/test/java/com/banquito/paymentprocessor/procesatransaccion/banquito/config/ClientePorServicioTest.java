@@ -0,0 +1,90 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.FraudeClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.MarcaClient;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.Target;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ClientePorServicioTest {
+
+    @RegisterExtension
+    static WireMockExtension wireMockServer = WireMockExtension.newInstance().build();
+
+    private SimpleMeterRegistry meterRegistry;
+    private ClientePorServicio cliente;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ClientesHttpProperties properties = new ClientesHttpProperties();
+        ClientesHttpProperties.Pool poolMarca = new ClientesHttpProperties.Pool();
+        poolMarca.setMaximoConexiones(5);
+        properties.getServicios().put("marca-service", poolMarca);
+        cliente = new ClientePorServicio(properties, meterRegistry);
+
+        wireMockServer.stubFor(post(urlEqualTo("/validar")).willReturn(aResponse().withStatus(200).withBody("{}")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cliente.close();
+    }
+
+    @Test
+    void llamadasSecuenciales_reutilizanLaConexion() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            try (Response response = cliente.execute(solicitud("marca-service", MarcaClient.class), opciones())) {
+                assertEquals(200, response.status());
+            }
+        }
+
+        assertEquals(1.0, conexiones("marca-service", "available"));
+        assertEquals(0.0, conexiones("marca-service", "leased"));
+        assertEquals(5.0, meterRegistry.get("httpcomponents.httpclient.pool.total.max")
+                .tag("httpclient", "marca-service").gauge().value());
+    }
+
+    @Test
+    void cadaServicio_usaSuPropioPool() throws Exception {
+        cliente.execute(solicitud("marca-service", MarcaClient.class), opciones()).close();
+        cliente.execute(solicitud("fraude-service", FraudeClient.class), opciones()).close();
+
+        assertEquals(1.0, conexiones("marca-service", "available"));
+        assertEquals(1.0, conexiones("fraude-service", "available"));
+        assertEquals(20.0, meterRegistry.get("httpcomponents.httpclient.pool.total.max")
+                .tag("httpclient", "fraude-service").gauge().value());
+    }
+
+    private double conexiones(String servicio, String estado) {
+        return meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tag("httpclient", servicio).tag("state", estado).gauge().value();
+    }
+
+    private Request solicitud(String servicio, Class<?> tipoCliente) {
+        RequestTemplate template = new RequestTemplate();
+        template.feignTarget(new Target.HardCodedTarget<>(tipoCliente, servicio, wireMockServer.baseUrl()));
+        return Request.create(Request.HttpMethod.POST, wireMockServer.baseUrl() + "/validar",
+                Collections.emptyMap(), "{}".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, template);
+    }
+
+    private Request.Options opciones() {
+        return new Request.Options(5, TimeUnit.SECONDS, 5, TimeUnit.SECONDS, true);
+    }
+}
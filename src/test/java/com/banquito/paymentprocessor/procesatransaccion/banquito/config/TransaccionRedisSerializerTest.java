@@ -0,0 +1,107 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.TransaccionService;
+
+public class TransaccionRedisSerializerTest {
+
+    private Jackson2JsonRedisSerializer<Transaccion> json;
+    private TransaccionRedisSerializer serializer;
+
+    @BeforeEach
+    void setUp() {
+        json = new Jackson2JsonRedisSerializer<>(new RedisConfig().redisObjectMapper(), Transaccion.class);
+        serializer = new TransaccionRedisSerializer(json);
+    }
+
+    @Test
+    void serializar_idaYVuelta_conservaTodosLosCampos() {
+        Transaccion transaccion = transaccionCompleta();
+
+        Transaccion leida = serializer.deserialize(serializer.serialize(transaccion));
+
+        assertEquals(transaccion.toString(), leida.toString());
+        assertEquals(0, transaccion.getMonto().compareTo(leida.getMonto()));
+        assertEquals(transaccion.getMonto().scale(), leida.getMonto().scale());
+    }
+
+    @Test
+    void serializar_camposNulosYValoresFueraDeFormato() {
+        Transaccion transaccion = new Transaccion("TRX0000001");
+        transaccion.setEstado("APR");
+        transaccion.setNumeroTarjeta("0532123456789012");
+        transaccion.setMonto(new BigDecimal("1E+3"));
+        transaccion.setReferencia("Pago en línea ñandú");
+        transaccion.setCodigoMoneda("");
+
+        Transaccion leida = serializer.deserialize(serializer.serialize(transaccion));
+
+        assertEquals(transaccion.toString(), leida.toString());
+        assertNull(leida.getId());
+        assertNull(leida.getFechaTransaccion());
+        assertEquals("", leida.getCodigoMoneda());
+    }
+
+    @Test
+    void deserializar_jsonAnterior_seLeeConElSerializadorJson() {
+        Transaccion transaccion = transaccionCompleta();
+
+        Transaccion leida = serializer.deserialize(json.serialize(transaccion));
+
+        assertEquals(transaccion.getCodTransaccion(), leida.getCodTransaccion());
+        assertEquals(transaccion.getEstado(), leida.getEstado());
+    }
+
+    @Test
+    void serializar_ocupaMenosDeLaMitadQueElJson() {
+        Transaccion transaccion = transaccionCompleta();
+
+        int binario = serializer.serialize(transaccion).length;
+        int jsonBytes = json.serialize(transaccion).length;
+
+        assertTrue(binario * 2 < jsonBytes, "binario=" + binario + " json=" + jsonBytes);
+    }
+
+    @Test
+    void deserializar_versionDesconocidaOIncompleta_falla() {
+        byte[] bytes = serializer.serialize(transaccionCompleta());
+
+        byte[] incompleto = Arrays.copyOf(bytes, bytes.length / 2);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(incompleto));
+        bytes[0] = 99;
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    private Transaccion transaccionCompleta() {
+        Transaccion transaccion = new Transaccion("TRX1234567");
+        transaccion.setId(123456L);
+        transaccion.setCodigoUnico("TRANS20240301123456");
+        transaccion.setCodigoGtw("PAYPAL");
+        transaccion.setNumeroTarjeta("4532123456789012");
+        transaccion.setCvv("123");
+        transaccion.setFechaCaducidad("12/25");
+        transaccion.setMonto(new BigDecimal("100.50"));
+        transaccion.setCodigoMoneda("USD");
+        transaccion.setMarca("VISA");
+        transaccion.setEstado(TransaccionService.ESTADO_PROCESO_DEBITO);
+        transaccion.setFechaTransaccion(LocalDateTime.of(2024, 3, 1, 12, 34, 56, 789_123_000));
+        transaccion.setReferencia("Compra en línea");
+        transaccion.setPais("EC");
+        transaccion.setTipo("COM");
+        transaccion.setSwiftBancoComercio("BANKECXXXX");
+        transaccion.setCuentaIbanComercio("EC1234567890123456789012");
+        transaccion.setSwiftBancoTarjeta("BANKUS33XXX");
+        return transaccion;
+    }
+}
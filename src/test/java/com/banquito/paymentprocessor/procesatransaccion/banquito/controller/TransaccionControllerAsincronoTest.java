@@ -0,0 +1,88 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.dto.TransaccionDTO;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.mapper.HistorialEstadoTransaccionMapper;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.mapper.TransaccionMapper;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ServicioSaturadoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.TransaccionService;
+
+/**
+ * Modo asíncrono (cabecera Prefer: respond-async): 202 con la ubicación para consultar
+ * el estado, o 503 con Retry-After cuando el executor no tiene capacidad.
+ */
+@ExtendWith(MockitoExtension.class)
+public class TransaccionControllerAsincronoTest {
+
+    private static final String PREFER_ASINCRONO = "respond-async";
+
+    @Mock
+    private TransaccionService service;
+
+    @Mock
+    private TransaccionMapper mapper;
+
+    @Mock
+    private HistorialEstadoTransaccionMapper historialMapper;
+
+    private TransaccionController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new TransaccionController(service, mapper, historialMapper);
+        ReflectionTestUtils.setField(controller, "asincronoHabilitado", true);
+        when(mapper.toEntity(any())).thenAnswer(invocacion -> new Transaccion("TRX1234567"));
+    }
+
+    @AfterEach
+    void limpiar() {
+        TransaccionContextHolder.clear();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void procesarTransaccion_aceptada_respondeAcceptedConLaUbicacion() {
+        when(service.procesarTransaccionAsincrona(any())).thenReturn("TRX1234567");
+
+        ResponseEntity<Object> respuesta = controller.procesarTransaccion(new TransaccionDTO(), PREFER_ASINCRONO, null);
+
+        assertEquals(HttpStatus.ACCEPTED, respuesta.getStatusCode());
+        assertEquals(URI.create("/v1/transacciones/TRX1234567"), respuesta.getHeaders().getLocation());
+        assertEquals(PREFER_ASINCRONO, respuesta.getHeaders().getFirst("Preference-Applied"));
+        Map<String, Object> cuerpo = (Map<String, Object>) respuesta.getBody();
+        assertEquals("TRX1234567", cuerpo.get("codTransaccion"));
+        assertEquals(TransaccionService.ESTADO_PENDIENTE, cuerpo.get("estado"));
+        verify(service, never()).procesarTransaccion(any());
+    }
+
+    @Test
+    void procesarTransaccion_colaLlena_respondeServiceUnavailableConRetryAfter() {
+        when(service.procesarTransaccionAsincrona(any())).thenThrow(
+                new ServicioSaturadoException("Capacidad de procesamiento agotada, reintente más tarde", 5));
+
+        ResponseEntity<Object> respuesta = controller.procesarTransaccion(new TransaccionDTO(), PREFER_ASINCRONO, null);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, respuesta.getStatusCode());
+        assertEquals("5", respuesta.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertNull(respuesta.getHeaders().getLocation());
+    }
+}
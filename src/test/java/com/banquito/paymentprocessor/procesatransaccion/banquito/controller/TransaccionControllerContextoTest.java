@@ -0,0 +1,90 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.PlazoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.dto.TransaccionDTO;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.mapper.HistorialEstadoTransaccionMapper;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.controller.mapper.TransaccionMapper;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionRechazadaException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.TransaccionService;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoProcesamiento;
+
+/**
+ * El contexto de la transacción vive en el hilo de Tomcat, que atiende solicitudes
+ * sucesivas: nada de una solicitud debe llegar a la siguiente.
+ */
+@ExtendWith(MockitoExtension.class)
+public class TransaccionControllerContextoTest {
+
+    @Mock
+    private TransaccionService service;
+
+    @Mock
+    private TransaccionMapper mapper;
+
+    @Mock
+    private HistorialEstadoTransaccionMapper historialMapper;
+
+    private TransaccionController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new TransaccionController(service, mapper, historialMapper);
+        when(mapper.toEntity(any())).thenAnswer(invocacion -> new Transaccion("TRX1234567"));
+    }
+
+    @AfterEach
+    void limpiar() {
+        TransaccionContextHolder.clear();
+    }
+
+    @Test
+    void procesarTransaccion_rechazadaYLuegoSinCabecera_noHeredaElPlazoAnterior() {
+        when(service.procesarTransaccion(any()))
+                .thenThrow(new TransaccionRechazadaException("Código de gateway no proporcionado"));
+
+        ResponseEntity<Object> rechazada = controller.procesarTransaccion(new TransaccionDTO(), null, 1L);
+        assertEquals(HttpStatus.OK, rechazada.getStatusCode());
+        assertNull(TransaccionContextHolder.getPlazo());
+
+        AtomicReference<PlazoTransaccion> plazoVisto = new AtomicReference<>();
+        reset(service);
+        when(service.procesarTransaccion(any())).thenAnswer(invocacion -> {
+            plazoVisto.set(TransaccionContextHolder.getPlazo());
+            return new ResultadoProcesamiento(invocacion.getArgument(0));
+        });
+
+        controller.procesarTransaccion(new TransaccionDTO(), null, null);
+
+        // Sin cabecera el servicio recibe null y aplica el plazo del gateway
+        assertNull(plazoVisto.get());
+        assertNull(TransaccionContextHolder.getPlazo());
+    }
+
+    @Test
+    void procesarTransaccion_errorInesperado_limpiaElContexto() {
+        when(service.procesarTransaccion(any())).thenThrow(new IllegalStateException("Fallo"));
+
+        ResponseEntity<Object> respuesta = controller.procesarTransaccion(new TransaccionDTO(), null, 5000L);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, respuesta.getStatusCode());
+        assertNull(TransaccionContextHolder.getPlazo());
+        assertNull(TransaccionContextHolder.getDiferido());
+    }
+}
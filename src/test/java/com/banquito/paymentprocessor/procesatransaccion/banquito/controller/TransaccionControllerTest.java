@@ -23,6 +23,7 @@ import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.NotFo
 import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionRechazadaException;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.service.TransaccionService;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoProcesamiento;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(TransaccionController.class)
@@ -117,7 +118,8 @@ public class TransaccionControllerTest {
 
     @Test
     void procesarTransaccion_Exitoso() throws Exception {
-        when(transaccionService.procesarTransaccion(any(Transaccion.class))).thenReturn(transaccion);
+        when(transaccionService.procesarTransaccion(any(Transaccion.class)))
+                .thenReturn(new ResultadoProcesamiento(transaccion));
 
         mockMvc.perform(post("/api/v1/transacciones")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -0,0 +1,214 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class BitacoraEstadosServiceTest {
+
+    @Mock
+    private TransaccionRepository transaccionRepository;
+
+    @Mock
+    private TransaccionCacheStore cacheTransacciones;
+
+    private BitacoraEstadosService bitacora;
+    private Transaccion transaccion;
+
+    @BeforeEach
+    void setUp() {
+        bitacora = new BitacoraEstadosService(transaccionRepository, cacheTransacciones);
+        ReflectionTestUtils.setField(bitacora, "habilitada", true);
+        ReflectionTestUtils.setField(bitacora, "retardoMaximoMs", 60_000L);
+        ReflectionTestUtils.setField(bitacora, "esperaMaximaReintentoMs", 60_000L);
+
+        transaccion = new Transaccion("TRX1234567");
+        transaccion.setId(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void registrar_estadosIntermediosSeAgrupanConElDebito() {
+        when(transaccionRepository.actualizarEstadoConHistorial(eq("TRX1234567"), eq("DEB"), isNull(), anyList()))
+                .thenReturn(Optional.of("DEB"));
+
+        registrar(TransaccionService.ESTADO_VALIDACION_MARCA, "Iniciando validación con marca");
+        registrar(TransaccionService.ESTADO_VALIDACION_FRAUDE, "Iniciando validación de fraude");
+
+        verifyNoInteractions(transaccionRepository, cacheTransacciones);
+        assertEquals(1, bitacora.getTransaccionesPendientes());
+
+        registrar(TransaccionService.ESTADO_PROCESO_DEBITO, "Iniciando proceso de débito");
+
+        ArgumentCaptor<List<HistorialEstadoTransaccion>> lote = ArgumentCaptor.forClass(List.class);
+        verify(transaccionRepository, times(1))
+                .actualizarEstadoConHistorial(eq("TRX1234567"), eq("DEB"), isNull(), lote.capture());
+        verify(transaccionRepository, never()).save(any());
+        verify(cacheTransacciones, times(1)).registrarTransiciones(eq(transaccion), eq(lote.getValue()));
+        assertEquals(List.of("VMA", "VFR", "DEB"),
+                lote.getValue().stream().map(HistorialEstadoTransaccion::getEstado).toList());
+        assertEquals(0, bitacora.getTransaccionesPendientes());
+    }
+
+    @Test
+    void escribirVencidas_escribeTransicionesTrasElRetardo() {
+        ReflectionTestUtils.setField(bitacora, "retardoMaximoMs", 0L);
+        when(transaccionRepository.actualizarEstadoConHistorial(any(), any(), any(), anyList()))
+                .thenReturn(Optional.of("VMA"));
+
+        registrar(TransaccionService.ESTADO_VALIDACION_MARCA, "Iniciando validación con marca");
+        bitacora.escribirVencidas();
+
+        verify(transaccionRepository).actualizarEstadoConHistorial(eq("TRX1234567"), eq("VMA"), isNull(), anyList());
+        assertEquals(0, bitacora.getTransaccionesPendientes());
+    }
+
+    @Test
+    void registrar_errorDeBaseDeDatosConservaLasTransiciones() {
+        when(transaccionRepository.actualizarEstadoConHistorial(any(), any(), any(), anyList()))
+                .thenThrow(new RuntimeException("Conexión rechazada"));
+
+        registrar(TransaccionService.ESTADO_VALIDACION_MARCA, "Iniciando validación con marca");
+        assertThrows(RuntimeException.class, () ->
+                registrar(TransaccionService.ESTADO_PROCESO_DEBITO, "Iniciando proceso de débito"));
+
+        assertEquals(1, bitacora.getTransaccionesPendientes());
+        verify(cacheTransacciones, never()).registrarTransiciones(any(), anyList());
+    }
+
+    @Test
+    void escribirVencidas_estadoFinalNuncaSeDescarta() {
+        ReflectionTestUtils.setField(bitacora, "retardoMaximoMs", 0L);
+        ReflectionTestUtils.setField(bitacora, "esperaMaximaReintentoMs", 0L);
+        when(transaccionRepository.actualizarEstadoConHistorial(any(), any(), any(), anyList()))
+                .thenThrow(new RuntimeException("Conexión rechazada"));
+
+        assertThrows(RuntimeException.class, () ->
+                registrar(TransaccionService.ESTADO_COMPLETADA, "Transacción completada"));
+        for (int i = 0; i < 10; i++) {
+            bitacora.escribirVencidas();
+        }
+
+        assertEquals(1, bitacora.getTransaccionesPendientes());
+        verify(transaccionRepository, times(11)).actualizarEstadoConHistorial(eq("TRX1234567"), eq("COM"), isNull(), anyList());
+    }
+
+    @Test
+    void escribirVencidas_sinEstadoFinalSeDescartaTrasLosIntentos() {
+        ReflectionTestUtils.setField(bitacora, "retardoMaximoMs", 0L);
+        ReflectionTestUtils.setField(bitacora, "esperaMaximaReintentoMs", 0L);
+        when(transaccionRepository.actualizarEstadoConHistorial(any(), any(), any(), anyList()))
+                .thenThrow(new RuntimeException("Conexión rechazada"));
+
+        registrar(TransaccionService.ESTADO_VALIDACION_MARCA, "Iniciando validación con marca");
+        for (int i = 0; i < 10; i++) {
+            bitacora.escribirVencidas();
+        }
+
+        assertEquals(0, bitacora.getTransaccionesPendientes());
+        verify(transaccionRepository, times(5)).actualizarEstadoConHistorial(eq("TRX1234567"), eq("VMA"), isNull(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void registrar_debitoFallidoNoSeReescribeConElError() {
+        when(transaccionRepository.actualizarEstadoConHistorial(eq("TRX1234567"), eq("DEB"), isNull(), anyList()))
+                .thenThrow(new RuntimeException("Conexión rechazada"));
+        when(transaccionRepository.actualizarEstadoConHistorial(eq("TRX1234567"), eq("ERR"), isNull(), anyList()))
+                .thenReturn(Optional.of("ERR"));
+
+        registrar(TransaccionService.ESTADO_VALIDACION_MARCA, "Iniciando validación con marca");
+        assertThrows(RuntimeException.class, () ->
+                registrar(TransaccionService.ESTADO_PROCESO_DEBITO, "Iniciando proceso de débito"));
+        registrar(TransaccionService.ESTADO_ERROR, "Error al persistir el débito");
+
+        ArgumentCaptor<List<HistorialEstadoTransaccion>> lote = ArgumentCaptor.forClass(List.class);
+        verify(transaccionRepository).actualizarEstadoConHistorial(eq("TRX1234567"), eq("ERR"), isNull(), lote.capture());
+        assertEquals(List.of("VMA", "ERR"),
+                lote.getValue().stream().map(HistorialEstadoTransaccion::getEstado).toList());
+        assertEquals(0, bitacora.getTransaccionesPendientes());
+    }
+
+    @Test
+    void escribirVencidas_usaElEstadoDeLaTransicionRegistrada() {
+        ReflectionTestUtils.setField(bitacora, "retardoMaximoMs", 0L);
+        when(transaccionRepository.actualizarEstadoConHistorial(any(), any(), any(), anyList()))
+                .thenReturn(Optional.of("VMA"));
+
+        registrar(TransaccionService.ESTADO_VALIDACION_MARCA, "Iniciando validación con marca");
+        // El pipeline sigue avanzando sobre el mismo objeto antes de registrar la siguiente transición
+        transaccion.setEstado(TransaccionService.ESTADO_PROCESO_DEBITO);
+        bitacora.escribirVencidas();
+
+        verify(transaccionRepository).actualizarEstadoConHistorial(eq("TRX1234567"), eq("VMA"), isNull(), anyList());
+    }
+
+    @Test
+    void escribirVencidas_enCursoSeConfirmaAntesDelDebito() throws Exception {
+        ReflectionTestUtils.setField(bitacora, "retardoMaximoMs", 0L);
+        CountDownLatch escribiendo = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(transaccionRepository.actualizarEstadoConHistorial(eq("TRX1234567"), eq("VFR"), isNull(), anyList()))
+                .thenAnswer(invocacion -> {
+                    escribiendo.countDown();
+                    liberar.await(5, TimeUnit.SECONDS);
+                    return Optional.of("VFR");
+                });
+        when(transaccionRepository.actualizarEstadoConHistorial(eq("TRX1234567"), eq("DEB"), isNull(), anyList()))
+                .thenReturn(Optional.of("DEB"));
+
+        registrar(TransaccionService.ESTADO_VALIDACION_FRAUDE, "Iniciando validación de fraude");
+        CompletableFuture<Void> revision = CompletableFuture.runAsync(bitacora::escribirVencidas);
+        assertTrue(escribiendo.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> debito = CompletableFuture.runAsync(() ->
+                registrar(TransaccionService.ESTADO_PROCESO_DEBITO, "Iniciando proceso de débito"));
+        Thread.sleep(100);
+        assertFalse(debito.isDone());
+
+        liberar.countDown();
+        revision.get(5, TimeUnit.SECONDS);
+        debito.get(5, TimeUnit.SECONDS);
+
+        InOrder orden = inOrder(transaccionRepository);
+        orden.verify(transaccionRepository).actualizarEstadoConHistorial(eq("TRX1234567"), eq("VFR"), isNull(), anyList());
+        orden.verify(transaccionRepository).actualizarEstadoConHistorial(eq("TRX1234567"), eq("DEB"), isNull(), anyList());
+    }
+
+    private void registrar(String estado, String mensaje) {
+        transaccion.setEstado(estado);
+        bitacora.registrar(transaccion, estado, mensaje);
+    }
+
+    @Test
+    void construirHistorial_truncaMensajesLargos() {
+        HistorialEstadoTransaccion historial = BitacoraEstadosService.construirHistorial(
+                "TRX1234567", TransaccionService.ESTADO_ERROR, "x".repeat(250));
+
+        assertEquals(200, historial.getMensaje().length());
+        assertTrue(historial.getMensaje().endsWith("..."));
+    }
+}
@@ -0,0 +1,124 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class CacheLocalTransaccionesServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheLocalTransaccionesService cache;
+    private final AtomicLong reloj = new AtomicLong(1_000_000);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CacheLocalTransaccionesService(stringRedisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(cache, "habilitada", true);
+        ReflectionTestUtils.setField(cache, "maximoEntradas", 100);
+        ReflectionTestUtils.setField(cache, "ttlTerminalSegundos", 300L);
+        ReflectionTestUtils.setField(cache, "ttlEnCursoMs", 1000L);
+        ReflectionTestUtils.setField(cache, "reloj", (LongSupplier) reloj::get);
+        cache.inicializar();
+    }
+
+    @Test
+    void obtener_estadoFinal_seSirveDesdeMemoriaHastaVencer() {
+        cache.guardarLeida(transaccion("TRX0000001", TransaccionService.ESTADO_COMPLETADA), cache.marca());
+
+        reloj.addAndGet(299_000);
+        Transaccion leida = cache.obtener("TRX0000001");
+        assertEquals(TransaccionService.ESTADO_COMPLETADA, leida.getEstado());
+        // Cada consulta recibe su propia copia
+        leida.setEstado(TransaccionService.ESTADO_ERROR);
+        assertEquals(TransaccionService.ESTADO_COMPLETADA, cache.obtener("TRX0000001").getEstado());
+
+        reloj.addAndGet(2_000);
+        assertNull(cache.obtener("TRX0000001"));
+        assertEquals(2.0, meterRegistry.counter("cache.local.transacciones", "resultado", "acierto").count());
+        assertEquals(1.0, meterRegistry.counter("cache.local.transacciones", "resultado", "fallo").count());
+    }
+
+    @Test
+    void obtener_estadoEnCurso_venceConElTtlCorto() {
+        cache.guardarLeida(transaccion("TRX0000002", TransaccionService.ESTADO_PROCESO_DEBITO), cache.marca());
+
+        assertNotNull(cache.obtener("TRX0000002"));
+        reloj.addAndGet(1_000);
+        assertNull(cache.obtener("TRX0000002"));
+    }
+
+    @Test
+    void guardarLeida_lecturaAnteriorAUnaInvalidacion_noSeGuarda() {
+        long marca = cache.marca();
+        // Mientras se leía de Redis, otro nodo actualizó la transacción
+        cache.onMessage(mensaje("otro-nodo:TRX0000003"), null);
+        cache.guardarLeida(transaccion("TRX0000003", TransaccionService.ESTADO_PROCESO_DEBITO), marca);
+
+        assertNull(cache.obtener("TRX0000003"));
+
+        cache.guardarLeida(transaccion("TRX0000003", TransaccionService.ESTADO_COMPLETADA), cache.marca());
+        assertEquals(TransaccionService.ESTADO_COMPLETADA, cache.obtener("TRX0000003").getEstado());
+    }
+
+    @Test
+    void actualizar_reemplazaLaCopiaLocalYAvisaALosDemasNodos() {
+        cache.guardarLeida(transaccion("TRX0000004", TransaccionService.ESTADO_PROCESO_CREDITO), cache.marca());
+
+        cache.actualizar(transaccion("TRX0000004", TransaccionService.ESTADO_COMPLETADA));
+        cache.publicarInvalidacion("TRX0000004");
+
+        assertEquals(TransaccionService.ESTADO_COMPLETADA, cache.obtener("TRX0000004").getEstado());
+        verify(stringRedisTemplate).convertAndSend(eq(CacheLocalTransaccionesService.CANAL_INVALIDACION),
+                startsWith(ReflectionTestUtils.getField(cache, "idNodo") + ":"));
+    }
+
+    @Test
+    void guardarLeida_sobreElMaximo_desalojaLasMenosUsadas() {
+        cache.guardarLeida(transaccion("TRX-USADA", TransaccionService.ESTADO_COMPLETADA), cache.marca());
+        for (int i = 0; i < 150; i++) {
+            reloj.incrementAndGet();
+            cache.obtener("TRX-USADA");
+            cache.guardarLeida(transaccion("TRX" + i, TransaccionService.ESTADO_COMPLETADA), cache.marca());
+        }
+
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(cache, "entradas")).size() <= 100);
+        assertNotNull(cache.obtener("TRX-USADA"));
+        assertNull(cache.obtener("TRX0"));
+    }
+
+    private static Transaccion transaccion(String cod, String estado) {
+        Transaccion transaccion = new Transaccion(cod);
+        transaccion.setId(1L);
+        transaccion.setEstado(estado);
+        return transaccion;
+    }
+
+    private static DefaultMessage mensaje(String contenido) {
+        return new DefaultMessage(CacheLocalTransaccionesService.CANAL_INVALIDACION.getBytes(StandardCharsets.UTF_8),
+                contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CoberturaMarcaServiceTest {
+
+    private ExecutorService executor;
+    private SimpleMeterRegistry meterRegistry;
+    private CoberturaMarcaService coberturaMarcaService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        coberturaMarcaService = new CoberturaMarcaService(executor, meterRegistry);
+        ReflectionTestUtils.setField(coberturaMarcaService, "habilitada", true);
+        ReflectionTestUtils.setField(coberturaMarcaService, "percentil", 95.0);
+        ReflectionTestUtils.setField(coberturaMarcaService, "proporcionMaxima", 0.05);
+        ReflectionTestUtils.setField(coberturaMarcaService, "maximoTokens", 1);
+        ReflectionTestUtils.setField(coberturaMarcaService, "minimoMuestras", 32);
+        ReflectionTestUtils.setField(coberturaMarcaService, "umbralMinimoMs", 20L);
+        coberturaMarcaService.inicializar();
+
+        // Latencias rápidas para fijar el umbral en el mínimo
+        for (int i = 0; i < 32; i++) {
+            coberturaMarcaService.ejecutar(() -> "ok");
+        }
+        assertEquals(20, coberturaMarcaService.getUmbralMs());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void primariaLenta_ganaLaCoberturaYSeCancelaLaPrimaria() throws Exception {
+        AtomicInteger llamadas = new AtomicInteger();
+        CountDownLatch primariaCancelada = new CountDownLatch(1);
+
+        String resultado = coberturaMarcaService.ejecutar(() -> {
+            if (llamadas.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    primariaCancelada.countDown();
+                    throw e;
+                }
+                return "primaria";
+            }
+            return "cobertura";
+        });
+
+        assertEquals("cobertura", resultado);
+        assertTrue(primariaCancelada.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.counter("marca.cobertura", "resultado", "disparada").count());
+        assertEquals(1.0, meterRegistry.counter("marca.cobertura", "resultado", "ganadora").count());
+    }
+
+    @Test
+    void presupuestoAgotado_esperaLaPrimariaSinCobertura() throws Exception {
+        coberturaMarcaService.ejecutar(() -> {
+            Thread.sleep(60);
+            return "primaria";
+        });
+        AtomicInteger llamadas = new AtomicInteger();
+
+        String resultado = coberturaMarcaService.ejecutar(() -> {
+            llamadas.incrementAndGet();
+            Thread.sleep(60);
+            return "primaria";
+        });
+
+        assertEquals("primaria", resultado);
+        assertEquals(1, llamadas.get());
+        assertEquals(1.0, meterRegistry.counter("marca.cobertura", "resultado", "sin_presupuesto").count());
+    }
+}
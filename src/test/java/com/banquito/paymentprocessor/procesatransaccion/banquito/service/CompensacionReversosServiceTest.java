@@ -0,0 +1,86 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionRechazadaException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.ReversoPendiente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class CompensacionReversosServiceTest {
+
+    @Mock
+    private ColaReversosService colaReversos;
+
+    @Mock
+    private TransaccionService transaccionService;
+
+    @Mock
+    private TransaccionRepository transaccionRepository;
+
+    @Mock
+    private ThreadPoolTaskExecutor reversoExecutor;
+
+    private CompensacionReversosService compensacion;
+    private ReversoPendiente reverso;
+    private Transaccion transaccion;
+
+    @BeforeEach
+    void setUp() {
+        compensacion = new CompensacionReversosService(colaReversos, transaccionService, transaccionRepository,
+                reversoExecutor, new SimpleMeterRegistry());
+
+        reverso = new ReversoPendiente();
+        reverso.setId(1L);
+        reverso.setCodTransaccion("TRX1234567");
+        reverso.setIntentos(1);
+        transaccion = new Transaccion("TRX1234567");
+
+        when(colaReversos.obtener(1L)).thenReturn(Optional.of(reverso));
+        when(transaccionRepository.findByCodTransaccion("TRX1234567")).thenReturn(Optional.of(transaccion));
+    }
+
+    @Test
+    void procesar_reversoAprobado_completaElReverso() {
+        compensacion.procesar(1L);
+
+        verify(transaccionService).reversarDebito(eq(transaccion), anyBoolean());
+        verify(colaReversos).completar(reverso);
+    }
+
+    @Test
+    void procesar_errorTransitorio_reprogramaElReverso() {
+        doThrow(new RuntimeException("Timeout")).when(transaccionService).reversarDebito(any(), anyBoolean());
+
+        compensacion.procesar(1L);
+
+        verify(colaReversos).reprogramar(reverso, "Timeout");
+        verify(colaReversos, never()).completar(any());
+    }
+
+    @Test
+    void procesar_reversoRechazado_descartaElReverso() {
+        doThrow(new TransaccionRechazadaException("Reverso rechazado")).when(transaccionService)
+                .reversarDebito(any(), anyBoolean());
+
+        compensacion.procesar(1L);
+
+        verify(colaReversos).descartar(reverso, "Reverso rechazado");
+        verify(colaReversos, never()).reprogramar(any(), any());
+    }
+}
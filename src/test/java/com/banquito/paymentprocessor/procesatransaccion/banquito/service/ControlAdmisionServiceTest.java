@@ -0,0 +1,73 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ServicioSaturadoException;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ControlAdmisionServiceTest {
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private ControlAdmisionService controlAdmision;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        controlAdmision = new ControlAdmisionService(mock(DataSource.class), circuitBreakerRegistry,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(controlAdmision, "habilitada", true);
+        ReflectionTestUtils.setField(controlAdmision, "maximoEnCurso", 2);
+        ReflectionTestUtils.setField(controlAdmision, "minimoEnCurso", 8);
+        ReflectionTestUtils.setField(controlAdmision, "latenciaObjetivoMs", 3000L);
+        ReflectionTestUtils.setField(controlAdmision, "esperaColaObjetivoMs", 500L);
+        ReflectionTestUtils.setField(controlAdmision, "maximoEsperandoConexion", 10);
+        ReflectionTestUtils.setField(controlAdmision, "reintentarDespuesSegundos", 2L);
+    }
+
+    @Test
+    void admitir_maximoEnCursoAlcanzado_rechazaHastaQueTermineUna() {
+        ControlAdmisionService.Admision primera = controlAdmision.admitir();
+        controlAdmision.admitir();
+
+        ServicioSaturadoException rechazo = assertThrows(ServicioSaturadoException.class, controlAdmision::admitir);
+        assertEquals(2, rechazo.getReintentarDespuesSegundos());
+
+        primera.close();
+        primera.close();
+        assertEquals(1, controlAdmision.getEnCurso());
+        assertDoesNotThrow(controlAdmision::admitir);
+    }
+
+    @Test
+    void close_sinIniciarProceso_noRegistraLatencia() {
+        ReflectionTestUtils.setField(controlAdmision, "latenciaMs", 1000.0);
+
+        // Rechazada por el límite del gateway o por la cola llena tras admitirla
+        controlAdmision.admitir().close();
+        assertEquals(0, controlAdmision.getEnCurso());
+        assertEquals(1000.0, controlAdmision.getLatenciaMs());
+
+        ControlAdmisionService.Admision procesada = controlAdmision.admitir();
+        procesada.iniciarProceso();
+        procesada.close();
+        assertEquals(0, controlAdmision.getEnCurso());
+        assertTrue(controlAdmision.getLatenciaMs() < 1000.0);
+    }
+
+    @Test
+    void admitir_circuitoDelBancoAbierto_rechazaSinOcuparLugar() {
+        circuitBreakerRegistry.circuitBreaker("banco-service").transitionToOpenState();
+
+        assertThrows(ServicioSaturadoException.class, controlAdmision::admitir);
+        assertEquals(0, controlAdmision.getEnCurso());
+    }
+}
@@ -0,0 +1,91 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class GeneradorCodigosTest {
+
+    @Test
+    void siguiente_codigosDeDiezCaracteresOrdenadosEnElTiempo() {
+        AtomicLong reloj = new AtomicLong(GeneradorCodigos.EPOCA_MS + 1_000);
+        GeneradorCodigos generador = new GeneradorCodigos(3, reloj::get);
+
+        String anterior = generador.siguiente();
+        for (int i = 0; i < 1_000; i++) {
+            if (i % 10 == 0) {
+                reloj.addAndGet(1);
+            }
+            String codigo = generador.siguiente();
+            assertEquals(10, codigo.length());
+            assertTrue(codigo.matches("[0-9A-Z]{10}"));
+            assertTrue(codigo.compareTo(anterior) > 0, codigo + " debe ser mayor que " + anterior);
+            anterior = codigo;
+        }
+    }
+
+    @Test
+    void siguiente_relojDetenidoORetrocedido_noRepiteCodigos() {
+        AtomicLong reloj = new AtomicLong(GeneradorCodigos.EPOCA_MS + 5_000);
+        GeneradorCodigos generador = new GeneradorCodigos(0, reloj::get);
+        Set<String> codigos = new HashSet<>();
+
+        // Más códigos que la secuencia de un milisegundo, y luego el reloj retrocede
+        for (int i = 0; i < 200; i++) {
+            assertTrue(codigos.add(generador.siguiente()));
+        }
+        reloj.addAndGet(-1_000);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(codigos.add(generador.siguiente()));
+        }
+    }
+
+    @Test
+    void siguiente_nodosDistintosEnElMismoMilisegundo_noChocan() {
+        GeneradorCodigos nodoA = new GeneradorCodigos(1, () -> GeneradorCodigos.EPOCA_MS + 42);
+        GeneradorCodigos nodoB = new GeneradorCodigos(2, () -> GeneradorCodigos.EPOCA_MS + 42);
+
+        assertNotEquals(nodoA.siguiente(), nodoB.siguiente());
+        assertThrows(IllegalArgumentException.class, () -> new GeneradorCodigos(GeneradorCodigos.NODOS, System::currentTimeMillis));
+    }
+
+    @Test
+    void siguiente_concurrente_generaCodigosUnicos() throws Exception {
+        GeneradorCodigos generador = new GeneradorCodigos(7, System::currentTimeMillis);
+        Set<String> codigos = ConcurrentHashMap.newKeySet();
+        int hilos = 8;
+        int porHilo = 10_000;
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(hilos)) {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                tareas.add(executor.submit(() -> {
+                    for (int i = 0; i < porHilo; i++) {
+                        codigos.add(generador.siguiente());
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        }
+
+        assertEquals(hilos * porHilo, codigos.size());
+    }
+
+    @Test
+    void codificar_valorMaximoCabeEnDiezCaracteres() {
+        assertEquals("0000000000", GeneradorCodigos.codificar(0));
+        assertEquals(10, GeneradorCodigos.codificar((1L << 51) - 1).length());
+    }
+}
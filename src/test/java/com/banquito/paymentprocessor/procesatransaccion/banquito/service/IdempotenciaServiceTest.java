@@ -0,0 +1,132 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoProcesamiento;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotenciaServiceTest {
+
+    private static final String CLAVE = "procesatransaccion:idempotencia:UNICO-001";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private TransaccionRepository transaccionRepository;
+
+    @Mock
+    private SaludRedisService salud;
+
+    private IdempotenciaService idempotencia;
+    private Transaccion transaccion;
+
+    @BeforeEach
+    void setUp() {
+        idempotencia = new IdempotenciaService(stringRedisTemplate, transaccionRepository, new SimpleMeterRegistry(),
+                salud);
+        ReflectionTestUtils.setField(idempotencia, "habilitada", true);
+        ReflectionTestUtils.setField(idempotencia, "reclamoSegundos", 60L);
+        ReflectionTestUtils.setField(idempotencia, "ventanaHoras", 24L);
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(salud.disponible()).thenReturn(true);
+
+        transaccion = new Transaccion("TRX7654321");
+        transaccion.setCodigoUnico("UNICO-001");
+    }
+
+    @Test
+    void reclamar_codigoNuevo_permiteProcesar() {
+        when(valueOperations.setIfAbsent(CLAVE, "TRX7654321", Duration.ofSeconds(60))).thenReturn(true);
+
+        assertTrue(idempotencia.reclamar(transaccion).isEmpty());
+    }
+
+    @Test
+    void reclamar_respuestaRegistrada_devuelveLaRespuestaOriginal() {
+        when(valueOperations.setIfAbsent(any(), any(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(CLAVE)).thenReturn("TRX1234567|COM|Transacción procesada exitosamente");
+
+        Optional<ResultadoProcesamiento> repetido = idempotencia.reclamar(transaccion);
+
+        assertTrue(repetido.isPresent());
+        assertTrue(repetido.get().isRepetido());
+        assertEquals("TRX1234567", repetido.get().getCodTransaccion());
+        assertEquals(TransaccionService.ESTADO_COMPLETADA, repetido.get().getEstado());
+        assertEquals("Transacción procesada exitosamente", repetido.get().getMensaje());
+        verifyNoInteractions(transaccionRepository);
+    }
+
+    @Test
+    void reclamar_solicitudOriginalEnCurso_devuelveSuEstadoActual() {
+        Transaccion original = new Transaccion("TRX1234567");
+        original.setEstado(TransaccionService.ESTADO_PROCESO_DEBITO);
+        when(valueOperations.setIfAbsent(any(), any(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(CLAVE)).thenReturn("TRX1234567");
+        when(transaccionRepository.findByCodTransaccion("TRX1234567")).thenReturn(Optional.of(original));
+
+        ResultadoProcesamiento repetido = idempotencia.reclamar(transaccion).orElseThrow();
+
+        assertEquals("TRX1234567", repetido.getCodTransaccion());
+        assertEquals(TransaccionService.ESTADO_PROCESO_DEBITO, repetido.getEstado());
+    }
+
+    @Test
+    void reclamar_redisNoResponde_permiteProcesarYLoInformaALaSalud() {
+        RuntimeException falla = new RuntimeException("Connection refused");
+        when(valueOperations.setIfAbsent(any(), any(), any(Duration.class))).thenThrow(falla);
+
+        assertTrue(idempotencia.reclamar(transaccion).isEmpty());
+        verify(salud).registrarFalla(falla);
+    }
+
+    @Test
+    void reclamar_redisOmitido_permiteProcesarSinConsultarlo() {
+        when(salud.disponible()).thenReturn(false);
+
+        assertTrue(idempotencia.reclamar(transaccion).isEmpty());
+        verifyNoInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    void registrar_guardaLaRespuestaDuranteLaVentana() {
+        idempotencia.registrar(transaccion, TransaccionService.ESTADO_RECHAZADA, "Fondos insuficientes");
+
+        verify(valueOperations).set(eq(CLAVE), eq("TRX7654321|REC|Fondos insuficientes"), eq(Duration.ofHours(24)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void liberar_eliminaElReclamoSoloSiSigueSiendoSuyo() {
+        idempotencia.liberar(transaccion);
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of(CLAVE)), eq("TRX7654321"));
+        verify(stringRedisTemplate, never()).delete(anyString());
+        verifyNoInteractions(valueOperations);
+    }
+}
@@ -0,0 +1,81 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.LimitadorCoreBancarioService.Operacion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LimitadorCoreBancarioServiceTest {
+
+    private LimitadorCoreBancarioService limitador;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        limitador = new LimitadorCoreBancarioService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(limitador, "limiteInicial", 1);
+        ReflectionTestUtils.setField(limitador, "limiteMinimo", 1);
+        ReflectionTestUtils.setField(limitador, "limiteMaximo", 1);
+        ReflectionTestUtils.setField(limitador, "tolerancia", 1.5);
+        ReflectionTestUtils.setField(limitador, "suavizado", 0.2);
+        ReflectionTestUtils.setField(limitador, "colaMaxima", 10);
+        ReflectionTestUtils.setField(limitador, "esperaMaximaMs", 5_000L);
+        limitador.inicializar();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void ejecutar_limiteAlcanzado_rechazaDebitoYEncolaCredito() throws Exception {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Future<String> debito = executor.submit(() -> limitador.ejecutar(Operacion.DEBITO, () -> {
+            enCurso.countDown();
+            esperar(liberar);
+            return "DEB";
+        }));
+        assertTrue(enCurso.await(5, TimeUnit.SECONDS));
+
+        ClienteRemotoException rechazo = assertThrows(ClienteRemotoException.class,
+                () -> limitador.ejecutar(Operacion.DEBITO, () -> "DEB"));
+        assertEquals(CategoriaErrorCliente.LIMITE_CONCURRENCIA, rechazo.getCategoria());
+        assertTrue(rechazo.getCategoria().isSolicitudNoEnviada());
+
+        Future<String> credito = executor.submit(() -> limitador.ejecutar(Operacion.CREDITO, () -> "CRE"));
+        while (limitador.getEnCola() == 0) {
+            Thread.onSpinWait();
+        }
+        liberar.countDown();
+
+        assertEquals("DEB", debito.get(5, TimeUnit.SECONDS));
+        assertEquals("CRE", credito.get(5, TimeUnit.SECONDS));
+        assertEquals(0, limitador.getEnVuelo());
+        assertEquals(0, limitador.getEnCola());
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.LimiteExcedidoException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+public class LimiteGatewayServiceTest {
+
+    @Mock
+    private RegistroGatewayService registroGatewayService;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LimiteGatewayService limites;
+
+    @BeforeEach
+    void setUp() {
+        limites = new LimiteGatewayService(registroGatewayService, stringRedisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(limites, "habilitado", true);
+        ReflectionTestUtils.setField(limites, "limitePorSegundoPorDefecto", 100);
+        ReflectionTestUtils.setField(limites, "rafagaPorDefecto", 200);
+        ReflectionTestUtils.setField(limites, "pesoPorDefecto", 1);
+        ReflectionTestUtils.setField(limites, "nodosEstimados", 2);
+        ReflectionTestUtils.setField(limites, "capacidadNodo", 10);
+        ReflectionTestUtils.setField(limites, "umbralReparto", 0.5);
+        ReflectionTestUtils.setField(limites, "pausaRedisMs", 60_000L);
+
+        lenient().when(registroGatewayService.obtener(any())).thenAnswer(invocacion ->
+                Optional.of(gateway(invocacion.getArgument(0), 1, 2)));
+    }
+
+    @Test
+    void admitir_resultadoDelScript_admiteORechazaConLaEsperaIndicada() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(1L, 0L), List.of(0L, 1_500L));
+
+        limites.admitir("GTW01").close();
+        LimiteExcedidoException rechazo = assertThrows(LimiteExcedidoException.class,
+                () -> limites.admitir("GTW01"));
+
+        assertEquals(2, rechazo.getReintentarDespuesSegundos());
+        assertEquals(1.0, meterRegistry.counter("gateways.limite.rechazadas",
+                "gateway", "GTW01", "motivo", "tasa").count());
+    }
+
+    @Test
+    void admitir_redisNoResponde_usaLaCubetaLocalSinConsultarRedisDuranteLaPausa() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("Redis caído"));
+
+        // Ráfaga 2 repartida entre 2 nodos: la cubeta local admite una sola transacción
+        limites.admitir("GTW01").close();
+        assertThrows(LimiteExcedidoException.class, () -> limites.admitir("GTW01"));
+
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+
+    @Test
+    void admitir_nodoSaturado_limitaAlGatewayASuParteDeLaCapacidad() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(1L, 0L));
+
+        // Por debajo del umbral (5 de 10) cualquier gateway usa la holgura
+        for (int i = 0; i < 4; i++) {
+            limites.admitir("GTW01");
+        }
+        limites.admitir("GTW02");
+
+        // Saturado: con pesos iguales a cada gateway le corresponden 5
+        limites.admitir("GTW01");
+        assertThrows(LimiteExcedidoException.class, () -> limites.admitir("GTW01"));
+        assertDoesNotThrow(() -> limites.admitir("GTW02"));
+        assertEquals(1.0, meterRegistry.counter("gateways.limite.rechazadas",
+                "gateway", "GTW01", "motivo", "reparto").count());
+    }
+
+    @Test
+    void cupo_cerradoDosVeces_liberaUnaSolaVez() {
+        ReflectionTestUtils.setField(limites, "capacidadNodo", 1);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(1L, 0L));
+
+        LimiteGatewayService.Cupo cupo = limites.admitir("GTW01");
+        cupo.close();
+        cupo.close();
+
+        limites.admitir("GTW01");
+        assertThrows(LimiteExcedidoException.class, () -> limites.admitir("GTW01"));
+    }
+
+    private static Gateway gateway(String codigo, int limitePorSegundo, int rafaga) {
+        Gateway gateway = new Gateway();
+        gateway.setCodGateway(codigo);
+        gateway.setLimitePorSegundo(limitePorSegundo);
+        gateway.setRafaga(rafaga);
+        return gateway;
+    }
+}
@@ -0,0 +1,74 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MemoriaDirectaCacheStoreTest extends TransaccionCacheStoreContractTest {
+
+    private final AtomicLong ahora = new AtomicLong(1_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Override
+    protected TransaccionCacheStore crearAlmacen() {
+        return crear(1, 1);
+    }
+
+    private MemoriaDirectaCacheStore crear(int capacidadMb, int segmentos) {
+        MemoriaDirectaCacheStore memoria = new MemoriaDirectaCacheStore(meterRegistry);
+        ReflectionTestUtils.setField(memoria, "expiracionSegundos", 60L);
+        ReflectionTestUtils.setField(memoria, "maximoSeguimiento", 50);
+        ReflectionTestUtils.setField(memoria, "capacidadMb", capacidadMb);
+        ReflectionTestUtils.setField(memoria, "tamanoEntrada", 512);
+        ReflectionTestUtils.setField(memoria, "cantidadSegmentos", segmentos);
+        ReflectionTestUtils.setField(memoria, "reloj", (LongSupplier) ahora::get);
+        memoria.inicializar();
+        return memoria;
+    }
+
+    @Test
+    void entradaVencida_noSeDevuelveYSeRepuebla() {
+        almacen.saveTransaccion(transaccion("TRX0000001", 1L));
+
+        ahora.addAndGet(60_000L);
+
+        assertNull(almacen.getTransaccionByCodigo("TRX0000001"));
+        assertNull(almacen.getTransaccion(1L));
+
+        almacen.repoblarTransaccion(transaccion("TRX0000001", 1L));
+        assertNotNull(almacen.getTransaccionByCodigo("TRX0000001"));
+    }
+
+    @Test
+    void llena_desalojaLaMasProximaAVencer() {
+        // Un segmento de 2048 ranuras: el doble de transacciones obliga a desalojar
+        for (int i = 0; i < 4096; i++) {
+            ahora.incrementAndGet();
+            almacen.saveTransaccion(transaccion(String.format("TRX%07d", i), null));
+        }
+
+        assertTrue(meterRegistry.counter("cache.memoria.desalojadas").count() > 0);
+        assertTrue(((MemoriaDirectaCacheStore) almacen).getEntradas() <= 2048);
+        assertNotNull(almacen.getTransaccionByCodigo("TRX0004095"));
+    }
+
+    @Test
+    void transaccionQueNoCabe_noSeGuardaYDescartaLaAnterior() {
+        Transaccion transaccion = transaccion("TRX0000001", 1L);
+        almacen.saveTransaccion(transaccion);
+
+        transaccion.setTransaccionEncriptada("x".repeat(600));
+        almacen.updateTransaccion(transaccion);
+
+        assertNull(almacen.getTransaccionByCodigo("TRX0000001"));
+        assertEquals(1, meterRegistry.counter("cache.memoria.omitidas").count());
+    }
+}
@@ -0,0 +1,118 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+public class NodoCodigosServiceTest {
+
+    private static final String PREFIJO = "procesatransaccion:codigos:nodo:";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private NodoCodigosService servicio;
+
+    @BeforeEach
+    void setUp() {
+        servicio = new NodoCodigosService(stringRedisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(servicio, "nodoConfigurado", -1);
+        ReflectionTestUtils.setField(servicio, "redisHabilitado", true);
+        ReflectionTestUtils.setField(servicio, "arriendoSegundos", 600L);
+    }
+
+    @Test
+    void asignarNodo_sinConfigurar_arriendaUnNumeroLibre() {
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        // Solo el número 9 está libre; si la búsqueda empieza en él no consulta los demás
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.setIfAbsent(eq(PREFIJO + 9), anyString(), any(Duration.class))).thenReturn(true);
+
+        servicio.asignarNodo();
+
+        assertEquals(9, servicio.getNodo());
+    }
+
+    @Test
+    void asignarNodo_sinNumerosLibres_iniciaConElNodoDelHostYLuegoArrienda() {
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+
+        servicio.asignarNodo();
+
+        int provisional = servicio.getNodo();
+        assertTrue(provisional >= 0 && provisional < GeneradorCodigos.NODOS);
+
+        // Se libera el número 7: la siguiente renovación lo arrienda
+        when(valueOperations.setIfAbsent(eq(PREFIJO + 7), anyString(), any(Duration.class))).thenReturn(true);
+        servicio.renovarArriendo();
+
+        assertEquals(7, servicio.getNodo());
+    }
+
+    @Test
+    void asignarNodo_redisCaidoODeshabilitado_iniciaConElNodoDelHost() {
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+        assertDoesNotThrow(servicio::asignarNodo);
+        assertTrue(servicio.getNodo() >= 0);
+
+        NodoCodigosService sinRedis = new NodoCodigosService(stringRedisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(sinRedis, "nodoConfigurado", -1);
+        ReflectionTestUtils.setField(sinRedis, "redisHabilitado", false);
+        sinRedis.asignarNodo();
+        sinRedis.renovarArriendo();
+
+        assertEquals(servicio.getNodo(), sinRedis.getNodo());
+        verify(stringRedisTemplate, times(1)).opsForValue();
+    }
+
+    @Test
+    void renovarArriendo_perdido_tomaOtroNumero() {
+        // Cada búsqueda empieza en un número al azar: según dónde empiece no pasa por todos
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.setIfAbsent(eq(PREFIJO + 4), anyString(), any(Duration.class))).thenReturn(true);
+        servicio.asignarNodo();
+
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(0L);
+        lenient().when(valueOperations.setIfAbsent(eq(PREFIJO + 4), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.setIfAbsent(eq(PREFIJO + 11), anyString(), any(Duration.class))).thenReturn(true);
+        servicio.renovarArriendo();
+
+        assertEquals(11, servicio.getNodo());
+        assertEquals(1, meterRegistry.counter("codigos.nodo.arriendos.perdidos").count());
+    }
+
+    @Test
+    void asignarNodo_configurado_noUsaRedis() {
+        ReflectionTestUtils.setField(servicio, "nodoConfigurado", 5);
+
+        servicio.asignarNodo();
+
+        assertEquals(5, servicio.getNodo());
+        verifyNoInteractions(stringRedisTemplate);
+    }
+}
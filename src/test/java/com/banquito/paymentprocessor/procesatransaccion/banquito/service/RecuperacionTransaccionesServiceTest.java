@@ -0,0 +1,134 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.HistorialEstadoTransaccionRepository;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class RecuperacionTransaccionesServiceTest {
+
+    @Mock
+    private TransaccionRepository transaccionRepository;
+
+    @Mock
+    private HistorialEstadoTransaccionRepository historialRepository;
+
+    @Mock
+    private TransaccionService transaccionService;
+
+    @Mock
+    private ControlAdmisionService controlAdmision;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ThreadPoolTaskExecutor recuperacionExecutor;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private RecuperacionTransaccionesService recuperacion;
+    private Transaccion transaccion;
+
+    @BeforeEach
+    void setUp() {
+        recuperacion = new RecuperacionTransaccionesService(transaccionRepository, historialRepository,
+                transaccionService, controlAdmision, stringRedisTemplate, recuperacionExecutor,
+                new SimpleMeterRegistry());
+
+        transaccion = new Transaccion("TRX1234567");
+        transaccion.setId(1L);
+        lenient().when(transaccionRepository.findById(1L)).thenReturn(Optional.of(transaccion));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recuperarDetenidas_unSoloNodo_recorreTodasLasParticiones() {
+        ReflectionTestUtils.setField(recuperacion, "habilitada", true);
+        ReflectionTestUtils.setField(recuperacion, "particiones", 8);
+        ReflectionTestUtils.setField(recuperacion, "maximoParticionesPorNodo", 2);
+        ReflectionTestUtils.setField(recuperacion, "arriendoSegundos", 120L);
+        ReflectionTestUtils.setField(recuperacion, "tamanoPagina", 50);
+        ReflectionTestUtils.setField(recuperacion, "maximoEnCurso", 150);
+        when(recuperacionExecutor.getMaxPoolSize()).thenReturn(2);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        // Ninguna transacción detenida: cada partición se recorre en una sola página
+        when(transaccionRepository.buscarIdsDetenidas(any(), anyLong(), anyInt(), anyInt(), anyInt()))
+                .thenReturn(List.of());
+
+        // Con 2 particiones a la vez, 4 ciclos alcanzan para las 8
+        for (int i = 0; i < 4; i++) {
+            recuperacion.recuperarDetenidas();
+        }
+
+        ArgumentCaptor<Integer> recorridas = ArgumentCaptor.forClass(Integer.class);
+        verify(transaccionRepository, times(8)).buscarIdsDetenidas(any(), anyLong(), eq(8), recorridas.capture(),
+                anyInt());
+        assertEquals(Set.of(0, 1, 2, 3, 4, 5, 6, 7), Set.copyOf(recorridas.getAllValues()));
+        // Cada partición recorrida se libera con el script de comparar y eliminar
+        verify(stringRedisTemplate, times(8)).execute(any(RedisScript.class), anyList(), anyString());
+    }
+
+    @Test
+    void recuperar_usaElUltimoEstadoDelHistorial() {
+        transaccion.setEstado(TransaccionService.ESTADO_PENDIENTE);
+        when(historialRepository.findFirstByCodTransaccionOrderByFechaEstadoCambioDescIdDesc("TRX1234567"))
+                .thenReturn(Optional.of(BitacoraEstadosService.construirHistorial(
+                        "TRX1234567", TransaccionService.ESTADO_PROCESO_CREDITO, "Iniciando proceso de crédito")));
+        when(transaccionService.recuperar(transaccion, TransaccionService.ESTADO_PROCESO_CREDITO))
+                .thenReturn("conciliacion");
+
+        recuperacion.recuperar(1L);
+
+        verify(transaccionService).recuperar(transaccion, TransaccionService.ESTADO_PROCESO_CREDITO);
+    }
+
+    @Test
+    void recuperar_transaccionYaTerminada_noHaceNada() {
+        transaccion.setEstado(TransaccionService.ESTADO_COMPLETADA);
+
+        recuperacion.recuperar(1L);
+
+        verifyNoInteractions(historialRepository);
+        verify(transaccionService, never()).recuperar(any(), any());
+    }
+
+    @Test
+    void recuperar_sinHistorial_usaElEstadoDeLaTransaccion() {
+        transaccion.setEstado(TransaccionService.ESTADO_PROCESO_DEBITO);
+        when(historialRepository.findFirstByCodTransaccionOrderByFechaEstadoCambioDescIdDesc("TRX1234567"))
+                .thenReturn(Optional.<HistorialEstadoTransaccion>empty());
+        when(transaccionService.recuperar(transaccion, TransaccionService.ESTADO_PROCESO_DEBITO))
+                .thenReturn("reversada");
+
+        recuperacion.recuperar(1L);
+
+        verify(transaccionService).recuperar(transaccion, TransaccionService.ESTADO_PROCESO_DEBITO);
+    }
+}
@@ -0,0 +1,153 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.config.TransaccionRedisSerializer;
+
+/**
+ * Contrato de {@link TransaccionCacheStore} sobre {@link RedisService}. Redis se simula con un
+ * mapa en memoria detrás de las plantillas, incluidos los dos scripts Lua; las escrituras se
+ * ejecutan en el mismo hilo. La caché local no guarda nada, así toda lectura llega a Redis.
+ * No cubre vencimientos ni la atomicidad real de los scripts.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class RedisServiceCacheStoreTest extends TransaccionCacheStoreContractTest {
+
+    private final Map<String, Object> claves = new ConcurrentHashMap<>();
+    private final TransaccionRedisSerializer serializador = new TransaccionRedisSerializer();
+
+    @Override
+    protected TransaccionCacheStore crearAlmacen() {
+        SaludRedisService salud = mock(SaludRedisService.class);
+        when(salud.disponible()).thenReturn(true);
+
+        RedisService redisService = new RedisService(plantillaTransacciones(), plantillaTexto(),
+                mock(CacheLocalTransaccionesService.class), salud, Runnable::run);
+        ReflectionTestUtils.setField(redisService, "transaccionExpiration", 3600L);
+        ReflectionTestUtils.setField(redisService, "maximoSeguimiento", 50);
+        ReflectionTestUtils.setField(redisService, "maximoPendientes", 100);
+        ReflectionTestUtils.setField(redisService, "tamanoLote", 10);
+        ReflectionTestUtils.setField(redisService, "maximoPorResincronizar", 100);
+        return redisService;
+    }
+
+    private RedisTemplate plantillaTransacciones() {
+        ValueOperations valores = mock(ValueOperations.class, invocacion -> switch (invocacion.getMethod().getName()) {
+            case "set" -> {
+                claves.put(invocacion.getArgument(0), serializador.serialize(invocacion.getArgument(1)));
+                yield null;
+            }
+            case "setIfAbsent" -> claves.putIfAbsent(invocacion.getArgument(0),
+                    serializador.serialize(invocacion.getArgument(1))) == null;
+            case "get" -> claves.get(invocacion.getArgument(0)) instanceof byte[] datos
+                    ? serializador.deserialize(datos) : null;
+            default -> throw new UnsupportedOperationException(invocacion.getMethod().getName());
+        });
+
+        RedisTemplate[] plantilla = new RedisTemplate[1];
+        plantilla[0] = mock(RedisTemplate.class, invocacion -> switch (invocacion.getMethod().getName()) {
+            case "opsForValue" -> valores;
+            case "delete" -> eliminar(invocacion.getArgument(0));
+            case "executePipelined" -> {
+                ((SessionCallback) invocacion.getArgument(0)).execute(plantilla[0]);
+                yield List.of();
+            }
+            case "execute" -> ejecutarScript(invocacion);
+            default -> throw new UnsupportedOperationException(invocacion.getMethod().getName());
+        });
+        return plantilla[0];
+    }
+
+    private StringRedisTemplate plantillaTexto() {
+        ValueOperations punteros = mock(ValueOperations.class, invocacion -> switch (invocacion.getMethod().getName()) {
+            case "set" -> {
+                claves.put(invocacion.getArgument(0), invocacion.getArgument(1));
+                yield null;
+            }
+            case "setIfAbsent" -> claves.putIfAbsent(invocacion.getArgument(0), invocacion.getArgument(1)) == null;
+            case "get" -> claves.get(invocacion.getArgument(0)) instanceof String codigo ? codigo : null;
+            default -> throw new UnsupportedOperationException(invocacion.getMethod().getName());
+        });
+        ListOperations listas = mock(ListOperations.class, invocacion -> {
+            if (!"range".equals(invocacion.getMethod().getName())) {
+                throw new UnsupportedOperationException(invocacion.getMethod().getName());
+            }
+            // Las pruebas solo piden la lista completa (0, -1)
+            Object lista = claves.get(invocacion.getArgument(0));
+            return lista instanceof List entradas ? List.copyOf(entradas) : List.of();
+        });
+
+        return mock(StringRedisTemplate.class, invocacion -> switch (invocacion.getMethod().getName()) {
+            case "opsForValue" -> punteros;
+            case "opsForList" -> listas;
+            default -> throw new UnsupportedOperationException(invocacion.getMethod().getName());
+        });
+    }
+
+    private Object eliminar(Object argumento) {
+        if (argumento instanceof Collection lista) {
+            long eliminadas = 0;
+            for (Object clave : lista) {
+                eliminadas += claves.remove(clave) != null ? 1 : 0;
+            }
+            return eliminadas;
+        }
+        return claves.remove(argumento) != null;
+    }
+
+    /**
+     * Reproduce REGISTRAR_TRANSICIONES (dos claves) y REPOBLAR_SEGUIMIENTO (una clave).
+     */
+    private Long ejecutarScript(InvocationOnMock invocacion) {
+        List<String> keys = invocacion.getArgument(3);
+        Object[] argv = new Object[invocacion.getArguments().length - 4];
+        System.arraycopy(invocacion.getArguments(), 4, argv, 0, argv.length);
+
+        if (keys.size() == 1) {
+            if (claves.containsKey(keys.get(0))) {
+                return 0L;
+            }
+            claves.put(keys.get(0), textos(argv, 1));
+            return 1L;
+        }
+
+        claves.put(keys.get(0), argv[0]);
+        if ("1".equals(texto(argv[3]))) {
+            claves.remove(keys.get(1));
+        } else if (!claves.containsKey(keys.get(1))) {
+            return 0L;
+        }
+        List<String> lista = new ArrayList<>((List<String>) claves.getOrDefault(keys.get(1), List.of()));
+        lista.addAll(textos(argv, 4));
+        int maximo = Integer.parseInt(texto(argv[2]));
+        claves.put(keys.get(1), List.copyOf(lista.subList(Math.max(0, lista.size() - maximo), lista.size())));
+        return 1L;
+    }
+
+    private static List<String> textos(Object[] argv, int desde) {
+        List<String> textos = new ArrayList<>();
+        for (int i = desde; i < argv.length; i++) {
+            textos.add(texto(argv[i]));
+        }
+        return textos;
+    }
+
+    private static String texto(Object valor) {
+        return new String((byte[]) valor, StandardCharsets.UTF_8);
+    }
+}
@@ -6,21 +6,28 @@ import static org.mockito.Mockito.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
 
 @ExtendWith(MockitoExtension.class)
+@SuppressWarnings({ "rawtypes", "unchecked" })
 public class RedisServiceTest {
 
     @Mock
@@ -29,12 +36,27 @@ public class RedisServiceTest {
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
-    @InjectMocks
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> punteros;
+
+    @Mock
+    private CacheLocalTransaccionesService cacheLocal;
+
+    @Mock
+    private SaludRedisService salud;
+
+    // Escrituras programadas; cada prueba decide cuándo ejecutarlas
+    private final List<Runnable> escrituras = new ArrayList<>();
+
     private RedisService redisService;
 
     private Transaccion transaccion;
     private static final String KEY_PREFIX = "transaccion:";
     private static final String CODE_PREFIX = "transaccion:codigo:";
+    private static final String SEGUIMIENTO_SUFFIX = ":seguimiento";
 
     @BeforeEach
     void setUp() {
@@ -48,33 +70,134 @@ public class RedisServiceTest {
         transaccion.setEstado("APR");
         transaccion.setSwiftBancoTarjeta("BANKEC21XXX");
 
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        // Las pruebas de eliminación y del puntero por id no usan las operaciones de valor
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        
+        lenient().when(salud.disponible()).thenReturn(true);
+        lenient().when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocacion -> {
+            ((SessionCallback) invocacion.getArgument(0)).execute(redisTemplate);
+            return List.of();
+        });
         
+        redisService = new RedisService((RedisTemplate) redisTemplate, stringRedisTemplate, cacheLocal, salud,
+                escrituras::add);
         ReflectionTestUtils.setField(redisService, "transaccionExpiration", 3600L);
+        ReflectionTestUtils.setField(redisService, "maximoPendientes", 100);
+        ReflectionTestUtils.setField(redisService, "tamanoLote", 10);
+        ReflectionTestUtils.setField(redisService, "maximoPorResincronizar", 100);
     }
 
     @Test
     void saveTransaccion_guardaDatosEnRedis() {
+        when(stringRedisTemplate.opsForValue()).thenReturn(punteros);
+
         redisService.saveTransaccion(transaccion);
+        verifyNoInteractions(valueOperations);
+        ejecutarEscrituras();
 
-        // Verifica que se guarda por ID
-        verify(valueOperations).set(eq(KEY_PREFIX + transaccion.getId()), eq(transaccion));
-        verify(redisTemplate).expire(eq(KEY_PREFIX + transaccion.getId()), eq(3600L), eq(TimeUnit.SECONDS));
+        // La transacción se guarda una sola vez, por código
+        verify(valueOperations).set(eq(CODE_PREFIX + transaccion.getCodTransaccion()), eq(transaccion),
+                eq(Duration.ofSeconds(3600)));
+        verify(valueOperations, never()).set(eq(KEY_PREFIX + transaccion.getId()), any(), any(Duration.class));
         
-        // Verifica que se guarda por Código
-        verify(valueOperations).set(eq(CODE_PREFIX + transaccion.getCodTransaccion()), eq(transaccion));
-        verify(redisTemplate).expire(eq(CODE_PREFIX + transaccion.getCodTransaccion()), eq(3600L), eq(TimeUnit.SECONDS));
+        // Por ID solo se guarda el puntero al código
+        verify(punteros).set(eq(KEY_PREFIX + transaccion.getId()), eq(transaccion.getCodTransaccion()),
+                eq(Duration.ofSeconds(3600)));
+        verify(cacheLocal).publicarInvalidacion(transaccion.getCodTransaccion());
+    }
+
+    @Test
+    void updateTransaccion_variasVersionesPendientes_soloEscribeLaUltima() {
+        transaccion.setEstado(TransaccionService.ESTADO_PROCESO_DEBITO);
+        redisService.updateTransaccion(transaccion);
+        transaccion.setEstado(TransaccionService.ESTADO_PROCESO_CREDITO);
+        redisService.updateTransaccion(transaccion);
+        transaccion.setEstado(TransaccionService.ESTADO_COMPLETADA);
+
+        assertEquals(1, escrituras.size());
+        ejecutarEscrituras();
+
+        ArgumentCaptor<Object> escrita = ArgumentCaptor.forClass(Object.class);
+        verify(valueOperations).set(eq(CODE_PREFIX + transaccion.getCodTransaccion()), escrita.capture(),
+                eq(Duration.ofSeconds(3600)));
+        // Se escribe la copia tomada al encolar, no el objeto que siguió cambiando
+        assertEquals(TransaccionService.ESTADO_PROCESO_CREDITO, ((Transaccion) escrita.getValue()).getEstado());
+    }
+
+    @Test
+    void updateTransaccion_redisNoDisponible_noLoUsaYResincronizaAlVolver() {
+        when(salud.disponible()).thenReturn(false);
+        redisService.updateTransaccion(transaccion);
+        assertNull(redisService.getTransaccionByCodigo(transaccion.getCodTransaccion()));
+        assertTrue(escrituras.isEmpty());
+        verifyNoInteractions(valueOperations);
+        verify(cacheLocal).actualizar(any(Transaccion.class));
+
+        when(salud.disponible()).thenReturn(true);
+        redisService.alRecuperarseRedis(new SaludRedisService.RedisRecuperado());
+        ejecutarEscrituras();
+
+        // La clave pudo quedar con un estado anterior: se elimina y la próxima lectura la repuebla
+        verify(redisTemplate).delete(List.of(CODE_PREFIX + transaccion.getCodTransaccion(),
+                CODE_PREFIX + transaccion.getCodTransaccion() + SEGUIMIENTO_SUFFIX));
+    }
+
+    @Test
+    void escribirPendientes_errorDeRedis_registraLaFallaYResincroniza() {
+        RuntimeException caida = new RedisConnectionFailureException("Connection refused");
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenThrow(caida);
+
+        redisService.updateTransaccion(transaccion);
+        ejecutarEscrituras();
+
+        verify(salud).registrarFalla(caida);
+        redisService.alRecuperarseRedis(new SaludRedisService.RedisRecuperado());
+        ejecutarEscrituras();
+        verify(redisTemplate).delete(List.of(CODE_PREFIX + transaccion.getCodTransaccion(),
+                CODE_PREFIX + transaccion.getCodTransaccion() + SEGUIMIENTO_SUFFIX));
+    }
+
+    @Test
+    void registrarTransiciones_pendientes_escribenTransaccionYSeguimientoEnUnScript() {
+        ReflectionTestUtils.setField(redisService, "maximoSeguimiento", 50);
+        transaccion.setEstado(TransaccionService.ESTADO_PENDIENTE);
+        redisService.registrarTransiciones(transaccion, List.of(
+                BitacoraEstadosService.construirHistorial("TRX1234567", "PEN", "Transacción recibida del gateway")));
+        transaccion.setEstado(TransaccionService.ESTADO_VALIDACION_MARCA);
+        redisService.registrarTransiciones(transaccion, List.of(
+                BitacoraEstadosService.construirHistorial("TRX1234567", "VMA", "Iniciando validación con marca")));
+        ejecutarEscrituras();
+
+        ArgumentCaptor<Object[]> argumentos = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(any(RedisScript.class), any(), any(),
+                eq(List.of(CODE_PREFIX + "TRX1234567", CODE_PREFIX + "TRX1234567" + SEGUIMIENTO_SUFFIX)),
+                argumentos.capture());
+        verifyNoInteractions(valueOperations);
+        // Transacción, vencimiento, máximo, inicio y las dos transiciones en orden
+        Object[] enviados = argumentos.getValue();
+        assertEquals(6, enviados.length);
+        assertEquals("1", new String((byte[]) enviados[3]));
+        assertTrue(new String((byte[]) enviados[4]).contains("PEN"));
+        assertTrue(new String((byte[]) enviados[5]).contains("VMA"));
+    }
+
+    private void ejecutarEscrituras() {
+        while (!escrituras.isEmpty()) {
+            escrituras.remove(0).run();
+        }
     }
 
     @Test
     void getTransaccion_existente_retornaTransaccion() {
-        when(valueOperations.get(KEY_PREFIX + "1")).thenReturn(transaccion);
+        when(stringRedisTemplate.opsForValue()).thenReturn(punteros);
+        when(punteros.get(KEY_PREFIX + "1")).thenReturn("TRX1234567");
+        when(valueOperations.get(CODE_PREFIX + "TRX1234567")).thenReturn(transaccion);
         
         Transaccion resultado = redisService.getTransaccion(1L);
         
         assertNotNull(resultado);
         assertEquals(transaccion, resultado);
-        verify(valueOperations).get(KEY_PREFIX + "1");
+        verify(punteros).get(KEY_PREFIX + "1");
     }
 
     @Test
@@ -90,12 +213,13 @@ public class RedisServiceTest {
 
     @Test
     void getTransaccion_noExistente_retornaNull() {
-        when(valueOperations.get(KEY_PREFIX + "99")).thenReturn(null);
+        when(stringRedisTemplate.opsForValue()).thenReturn(punteros);
+        when(punteros.get(KEY_PREFIX + "99")).thenReturn(null);
         
         Transaccion resultado = redisService.getTransaccion(99L);
         
         assertNull(resultado);
-        verify(valueOperations).get(KEY_PREFIX + "99");
+        verify(punteros).get(KEY_PREFIX + "99");
     }
 
     @Test
@@ -119,6 +243,6 @@ public class RedisServiceTest {
     void deleteTransaccionByCodigo_eliminaDatosDeRedis() {
         redisService.deleteTransaccionByCodigo("TRX1234567");
         
-        verify(redisTemplate).delete(CODE_PREFIX + "TRX1234567");
+        verify(redisTemplate).delete(List.of(CODE_PREFIX + "TRX1234567", CODE_PREFIX + "TRX1234567" + SEGUIMIENTO_SUFFIX));
     }
 } 
\ No newline at end of file
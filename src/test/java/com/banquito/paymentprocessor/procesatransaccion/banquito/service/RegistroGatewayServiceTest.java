@@ -0,0 +1,127 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.event.TransactionalEventListenerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Gateway;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.GatewayRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class RegistroGatewayServiceTest {
+
+    @Mock
+    private GatewayRepository gatewayRepository;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private RegistroGatewayService registro;
+
+    @BeforeEach
+    void setUp() {
+        registro = new RegistroGatewayService(gatewayRepository, stringRedisTemplate);
+        ReflectionTestUtils.setField(registro, "habilitado", true);
+    }
+
+    @Test
+    void cargarAlIniciar_atiendeLasConsultasDesdeLaCopiaEnMemoria() {
+        when(gatewayRepository.findAll()).thenReturn(List.of(gateway("GTW01")));
+
+        registro.cargarAlIniciar();
+
+        assertTrue(registro.existe("GTW01"));
+        assertFalse(registro.existe("GTW99"));
+        assertEquals("GTW01", registro.obtener("GTW01").orElseThrow().getCodGateway());
+        verify(gatewayRepository, never()).existsById(any());
+        verify(gatewayRepository, never()).findById(any());
+    }
+
+    @Test
+    void sinCargaInicial_consultaLaBaseDeDatos() {
+        when(gatewayRepository.findAll()).thenThrow(new DataAccessResourceFailureException("Sin conexión"));
+        when(gatewayRepository.existsById("GTW01")).thenReturn(true);
+        when(gatewayRepository.findById("GTW01")).thenReturn(Optional.of(gateway("GTW01")));
+
+        registro.cargarAlIniciar();
+
+        assertTrue(registro.existe("GTW01"));
+        assertTrue(registro.obtener("GTW01").isPresent());
+    }
+
+    @Test
+    void alModificarGateway_recargaTrasElCommitYAvisaALosDemasNodos() {
+        when(gatewayRepository.findAll()).thenReturn(List.of(gateway("GTW01")));
+
+        try (AnnotationConfigApplicationContext contexto = new AnnotationConfigApplicationContext()) {
+            contexto.registerBean(TransactionalEventListenerFactory.class);
+            contexto.registerBean(RegistroGatewayService.class, () -> registro);
+            contexto.refresh();
+
+            TransactionSynchronizationManager.initSynchronization();
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                contexto.publishEvent(new RegistroGatewayService.GatewayModificado("GTW01"));
+                verifyNoInteractions(gatewayRepository, stringRedisTemplate);
+
+                // Lo que hace el gestor de transacciones al confirmar
+                TransactionSynchronizationUtils.triggerAfterCommit();
+                TransactionSynchronizationUtils.invokeAfterCompletion(
+                        TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        verify(gatewayRepository).findAll();
+        verify(stringRedisTemplate).convertAndSend(eq(RegistroGatewayService.CANAL_INVALIDACION), endsWith(":GTW01"));
+        assertTrue(registro.existe("GTW01"));
+    }
+
+    @Test
+    void onMessage_ignoraLasInvalidacionesDelPropioNodo() {
+        when(gatewayRepository.findAll()).thenReturn(List.of(gateway("GTW01")));
+        registro.alModificarGateway(new RegistroGatewayService.GatewayModificado("GTW01"));
+        ArgumentCaptor<String> publicado = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate).convertAndSend(eq(RegistroGatewayService.CANAL_INVALIDACION), publicado.capture());
+
+        registro.onMessage(mensaje(publicado.getValue()), null);
+        verify(gatewayRepository, times(1)).findAll();
+
+        registro.onMessage(mensaje("otro-nodo:GTW01"), null);
+        verify(gatewayRepository, times(2)).findAll();
+    }
+
+    private static DefaultMessage mensaje(String contenido) {
+        return new DefaultMessage(RegistroGatewayService.CANAL_INVALIDACION.getBytes(StandardCharsets.UTF_8),
+                contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Gateway gateway(String codigo) {
+        Gateway gateway = new Gateway();
+        gateway.setCodGateway(codigo);
+        gateway.setNombre("Gateway " + codigo);
+        return gateway;
+    }
+}
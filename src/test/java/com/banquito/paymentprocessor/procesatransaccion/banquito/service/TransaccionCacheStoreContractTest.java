@@ -0,0 +1,153 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+
+/**
+ * Contrato de {@link TransaccionCacheStore}; cada implementación lo hereda con su propio
+ * {@link #crearAlmacen()}.
+ */
+public abstract class TransaccionCacheStoreContractTest {
+
+    protected TransaccionCacheStore almacen;
+
+    protected abstract TransaccionCacheStore crearAlmacen();
+
+    @BeforeEach
+    void crear() {
+        almacen = crearAlmacen();
+    }
+
+    protected static Transaccion transaccion(String codigo, Long id) {
+        Transaccion transaccion = new Transaccion(codigo);
+        transaccion.setId(id);
+        transaccion.setNumeroTarjeta("4111111111111111");
+        transaccion.setCvv("123");
+        transaccion.setFechaCaducidad("12/25");
+        transaccion.setMonto(new BigDecimal("100.00"));
+        transaccion.setFechaTransaccion(LocalDateTime.of(2024, 3, 1, 10, 15));
+        transaccion.setEstado("PEN");
+        transaccion.setSwiftBancoTarjeta("BANKEC21XXX");
+        return transaccion;
+    }
+
+    private static HistorialEstadoTransaccion historial(String codigo, String estado) {
+        return BitacoraEstadosService.construirHistorial(codigo, estado, "Transición a " + estado);
+    }
+
+    private static List<String> estados(List<HistorialEstadoTransaccion> historial) {
+        return historial.stream().map(HistorialEstadoTransaccion::getEstado).toList();
+    }
+
+    @Test
+    void saveTransaccion_seLeePorCodigoYPorId() {
+        almacen.saveTransaccion(transaccion("TRX0000001", 1L));
+
+        assertEquals("TRX0000001", almacen.getTransaccionByCodigo("TRX0000001").getCodTransaccion());
+        assertEquals("TRX0000001", almacen.getTransaccion(1L).getCodTransaccion());
+        assertEquals(new BigDecimal("100.00"), almacen.getTransaccion(1L).getMonto());
+    }
+
+    @Test
+    void getTransaccionByCodigo_devuelveUnaCopia() {
+        almacen.saveTransaccion(transaccion("TRX0000001", 1L));
+
+        almacen.getTransaccionByCodigo("TRX0000001").setEstado("COM");
+
+        assertEquals("PEN", almacen.getTransaccionByCodigo("TRX0000001").getEstado());
+    }
+
+    @Test
+    void updateTransaccion_reemplazaElEstado() {
+        Transaccion guardada = transaccion("TRX0000001", 1L);
+        almacen.saveTransaccion(guardada);
+
+        guardada.setEstado("COM");
+        almacen.updateTransaccion(guardada);
+
+        assertEquals("COM", almacen.getTransaccionByCodigo("TRX0000001").getEstado());
+        assertEquals("COM", almacen.getTransaccion(1L).getEstado());
+    }
+
+    @Test
+    void repoblarTransaccion_noReemplazaLaExistente() {
+        Transaccion guardada = transaccion("TRX0000001", 1L);
+        guardada.setEstado("DEB");
+        almacen.saveTransaccion(guardada);
+
+        almacen.repoblarTransaccion(transaccion("TRX0000001", 1L));
+        almacen.repoblarTransaccion(transaccion("TRX0000002", 2L));
+
+        assertEquals("DEB", almacen.getTransaccionByCodigo("TRX0000001").getEstado());
+        assertEquals("TRX0000002", almacen.getTransaccion(2L).getCodTransaccion());
+    }
+
+    @Test
+    void deleteTransaccion_eliminanPorCodigoYPorId() {
+        almacen.saveTransaccion(transaccion("TRX0000001", 1L));
+        almacen.saveTransaccion(transaccion("TRX0000002", 2L));
+
+        almacen.deleteTransaccionByCodigo("TRX0000001");
+        almacen.deleteTransaccion(2L);
+
+        assertNull(almacen.getTransaccionByCodigo("TRX0000001"));
+        assertNull(almacen.getTransaccion(2L));
+        assertNotNull(almacen.getTransaccionByCodigo("TRX0000002"));
+    }
+
+    @Test
+    void registrarTransiciones_acumulaElSeguimientoDesdePen() {
+        Transaccion guardada = transaccion("TRX0000001", 1L);
+        almacen.saveTransaccion(guardada);
+        almacen.registrarTransiciones(guardada, List.of(historial("TRX0000001", "PEN")));
+
+        guardada.setEstado("DEB");
+        almacen.registrarTransiciones(guardada, List.of(historial("TRX0000001", "VMA"),
+                historial("TRX0000001", "VFR"), historial("TRX0000001", "DEB")));
+
+        assertEquals("DEB", almacen.getTransaccionByCodigo("TRX0000001").getEstado());
+        assertEquals(List.of("DEB", "VFR", "VMA", "PEN"), estados(almacen.getSeguimiento("TRX0000001")));
+        assertEquals("TRX0000001", almacen.getSeguimiento("TRX0000001").get(0).getCodTransaccion());
+    }
+
+    @Test
+    void registrarTransiciones_sinInicio_noCreaUnSeguimientoIncompleto() {
+        Transaccion guardada = transaccion("TRX0000001", 1L);
+        guardada.setEstado("COM");
+        almacen.registrarTransiciones(guardada, List.of(historial("TRX0000001", "COM")));
+
+        assertEquals("COM", almacen.getTransaccionByCodigo("TRX0000001").getEstado());
+        assertNull(almacen.getSeguimiento("TRX0000001"));
+    }
+
+    @Test
+    void repoblarSeguimiento_noReemplazaElExistenteYSeEliminaConLaTransaccion() {
+        almacen.repoblarSeguimiento("TRX0000001",
+                List.of(historial("TRX0000001", "COM"), historial("TRX0000001", "PEN")));
+        almacen.repoblarSeguimiento("TRX0000001", List.of(historial("TRX0000001", "ERR")));
+
+        assertEquals(List.of("COM", "PEN"), estados(almacen.getSeguimiento("TRX0000001")));
+
+        almacen.deleteTransaccionByCodigo("TRX0000001");
+        assertNull(almacen.getSeguimiento("TRX0000001"));
+    }
+
+    @Test
+    void desconocidasONulas_devuelvenNull() {
+        assertNull(almacen.getTransaccionByCodigo("TRX9999999"));
+        assertNull(almacen.getTransaccion(99L));
+        assertNull(almacen.getTransaccionByCodigo(null));
+        assertNull(almacen.getTransaccion(null));
+        assertDoesNotThrow(() -> almacen.saveTransaccion(null));
+        assertDoesNotThrow(() -> almacen.deleteTransaccionByCodigo(null));
+    }
+}
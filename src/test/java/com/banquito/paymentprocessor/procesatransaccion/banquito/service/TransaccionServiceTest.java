@@ -9,6 +9,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,18 +17,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.BancoClient;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.FraudeClient;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.MarcaClient;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionFraudeRequest;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionFraudeResponse;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionMarcaRequest;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionMarcaResponse;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.context.TransaccionContextHolder;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.CategoriaErrorCliente;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ClienteRemotoException;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.NotFoundException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.ServicioSaturadoException;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.exception.TransaccionRechazadaException;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.HistorialEstadoTransaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.HistorialEstadoTransaccionRepository;
 import com.banquito.paymentprocessor.procesatransaccion.banquito.repository.TransaccionRepository;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoProcesamiento;
 
 @ExtendWith(MockitoExtension.class)
 public class TransaccionServiceTest {
@@ -45,7 +55,40 @@ public class TransaccionServiceTest {
     private MarcaClient marcaClient;
 
     @Mock
-    private RedisService redisService;
+    private TransaccionCacheStore cacheTransacciones;
+
+    @Mock
+    private LimiteGatewayService limiteGatewayService;
+
+    @Mock
+    private ControlAdmisionService controlAdmision;
+
+    @Mock
+    private RegistroGatewayService registroGatewayService;
+
+    @Mock
+    private ColaReversosService colaReversosService;
+
+    @Mock
+    private IdempotenciaService idempotenciaService;
+
+    @Mock
+    private CacheLocalTransaccionesService cacheLocal;
+
+    @Mock
+    private BancoClient bancoClient;
+
+    @Mock
+    private LimitadorCoreBancarioService limitadorCoreBancario;
+
+    @Mock
+    private BitacoraEstadosService bitacoraEstadosService;
+
+    @Mock
+    private GatewayService gatewayService;
+
+    @Mock
+    private ThreadPoolTaskExecutor procesamientoAsincronoExecutor;
 
     @InjectMocks
     private TransaccionService transaccionService;
@@ -58,6 +101,8 @@ public class TransaccionServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Otras pruebas del mismo hilo pueden dejar un plazo en el contexto
+        TransaccionContextHolder.clear();
         transaccion = new Transaccion("TRX1234567");
         transaccion.setNumeroTarjeta("4532123456789012");
         transaccion.setCvv("123");
@@ -65,6 +110,7 @@ public class TransaccionServiceTest {
         transaccion.setMonto(new BigDecimal("100.50"));
         transaccion.setFechaTransaccion(LocalDateTime.now());
         transaccion.setEstado("PEN");
+        lenient().when(controlAdmision.admitir()).thenReturn(mock(ControlAdmisionService.Admision.class));
         
         fraudeResponseValido = new ValidacionFraudeResponse();
         fraudeResponseValido.setEsFraude(false);
@@ -92,12 +138,12 @@ public class TransaccionServiceTest {
         when(marcaClient.validarTarjeta(any())).thenReturn(marcaResponseValida);
         when(transaccionRepository.save(any(Transaccion.class))).thenReturn(transaccion);
         
-        Transaccion resultado = transaccionService.procesarTransaccion(transaccion);
+        ResultadoProcesamiento resultado = transaccionService.procesarTransaccion(transaccion);
         
         assertNotNull(resultado);
         assertEquals("TRX1234567", resultado.getCodTransaccion());
-        assertEquals("BANKEC21XXX", resultado.getSwiftBancoTarjeta());
-        verify(redisService).saveTransaccion(any(Transaccion.class));
+        assertEquals("BANKEC21XXX", resultado.getTransaccion().getSwiftBancoTarjeta());
+        verify(cacheTransacciones).saveTransaccion(any(Transaccion.class));
         verify(historialRepository).save(any());
     }
     
@@ -109,7 +155,7 @@ public class TransaccionServiceTest {
             transaccionService.procesarTransaccion(transaccion);
         });
         
-        verify(redisService, never()).saveTransaccion(any(Transaccion.class));
+        verify(cacheTransacciones, never()).saveTransaccion(any(Transaccion.class));
     }
     
     @Test
@@ -121,12 +167,12 @@ public class TransaccionServiceTest {
             transaccionService.procesarTransaccion(transaccion);
         });
         
-        verify(redisService, never()).saveTransaccion(any(Transaccion.class));
+        verify(cacheTransacciones, never()).saveTransaccion(any(Transaccion.class));
     }
     
     @Test
     void obtenerTransaccionPorCodigo_encontradaEnRedis() {
-        when(redisService.getTransaccionByCodigo("TRX1234567")).thenReturn(transaccion);
+        when(cacheTransacciones.getTransaccionByCodigo("TRX1234567")).thenReturn(transaccion);
         
         Transaccion resultado = transaccionService.obtenerTransaccionPorCodigo("TRX1234567");
         
@@ -137,25 +183,122 @@ public class TransaccionServiceTest {
     
     @Test
     void obtenerTransaccionPorCodigo_encontradaEnRepo() {
-        when(redisService.getTransaccionByCodigo("TRX1234567")).thenReturn(null);
+        when(cacheTransacciones.getTransaccionByCodigo("TRX1234567")).thenReturn(null);
         when(transaccionRepository.findByCodTransaccion("TRX1234567")).thenReturn(Optional.of(transaccion));
         
         Transaccion resultado = transaccionService.obtenerTransaccionPorCodigo("TRX1234567");
         
         assertNotNull(resultado);
         assertEquals(transaccion, resultado);
+        verify(cacheTransacciones).repoblarTransaccion(transaccion);
+        verify(cacheLocal).guardarLeida(eq(transaccion), anyLong());
     }
     
     @Test
     void obtenerTransaccionPorCodigo_noEncontrada() {
-        when(redisService.getTransaccionByCodigo("TRX1234567")).thenReturn(null);
+        when(cacheTransacciones.getTransaccionByCodigo("TRX1234567")).thenReturn(null);
         when(transaccionRepository.findByCodTransaccion("TRX1234567")).thenReturn(Optional.empty());
         
         assertThrows(NotFoundException.class, () -> {
             transaccionService.obtenerTransaccionPorCodigo("TRX1234567");
         });
+        verify(cacheLocal).registrarInexistente(eq("TRX1234567"), anyLong());
+    }
+    
+    @Test
+    void obtenerTransaccionPorCodigo_inexistenteReciente_noConsultaLaBaseDeDatos() {
+        when(cacheTransacciones.getTransaccionByCodigo("TRX1234567")).thenReturn(null);
+        when(cacheLocal.esInexistente("TRX1234567")).thenReturn(true);
+        
+        assertThrows(NotFoundException.class, () -> transaccionService.obtenerTransaccionPorCodigo("TRX1234567"));
+        verify(transaccionRepository, never()).findByCodTransaccion(any());
     }
     
+    @Test
+    void obtenerSeguimiento_fueraDeLaCache_loLeeDeLaBaseYSoloRepueblaLosFinales() {
+        List<HistorialEstadoTransaccion> historial = List.of(
+                BitacoraEstadosService.construirHistorial("TRX1234567", "COM", "Transacción procesada exitosamente"),
+                BitacoraEstadosService.construirHistorial("TRX1234567", "PEN", "Transacción recibida del gateway"));
+        when(cacheTransacciones.getTransaccionByCodigo("TRX1234567")).thenReturn(transaccion);
+        when(cacheTransacciones.getSeguimiento("TRX1234567")).thenReturn(null);
+        when(historialRepository.findByCodTransaccionOrderByFechaEstadoCambioDesc("TRX1234567")).thenReturn(historial);
+
+        transaccion.setEstado(TransaccionService.ESTADO_VALIDACION_FRAUDE);
+        assertEquals(historial, transaccionService.obtenerSeguimiento("TRX1234567").getHistorial());
+        verify(cacheTransacciones, never()).repoblarSeguimiento(any(), anyList());
+
+        transaccion.setEstado(TransaccionService.ESTADO_COMPLETADA);
+        transaccionService.obtenerSeguimiento("TRX1234567");
+        verify(cacheTransacciones).repoblarSeguimiento("TRX1234567", historial);
+    }
+    
+    @Test
+    void recuperar_detenidaEnCredito_noReenviaElCreditoYPasaAConciliacion() {
+        transaccion.setId(1L);
+        transaccion.setEstado(TransaccionService.ESTADO_PROCESO_CREDITO);
+
+        String accion = transaccionService.recuperar(transaccion, TransaccionService.ESTADO_PROCESO_CREDITO);
+
+        assertEquals("conciliacion", accion);
+        // El crédito pudo haberse aplicado: reenviarlo acreditaría dos veces al comercio
+        verifyNoInteractions(bancoClient, limitadorCoreBancario);
+        verify(bitacoraEstadosService).registrar(eq(transaccion),
+                eq(TransaccionService.ESTADO_ERROR_IRRECUPERABLE), anyString());
+    }
+    
+    @Test
+    void procesarTransaccionAsincrona_colaLlena_rechazaConServicioSaturado() {
+        ReflectionTestUtils.setField(transaccionService, "reintentarDespuesSegundos", 5L);
+        transaccion.setCodigoGtw("GTW01");
+        LimiteGatewayService.Cupo cupo = mock(LimiteGatewayService.Cupo.class);
+        when(limiteGatewayService.admitir("GTW01")).thenReturn(cupo);
+        when(gatewayService.verificarCodigoGateway("GTW01")).thenReturn(true);
+        when(transaccionRepository.save(any(Transaccion.class))).thenAnswer(invocacion -> {
+            Transaccion guardada = invocacion.getArgument(0);
+            guardada.setId(1L);
+            return guardada;
+        });
+        doThrow(new RejectedExecutionException("Cola llena"))
+                .when(procesamientoAsincronoExecutor).execute(any(Runnable.class));
+
+        ServicioSaturadoException rechazo = assertThrows(ServicioSaturadoException.class,
+                () -> transaccionService.procesarTransaccionAsincrona(transaccion));
+
+        assertEquals(5, rechazo.getReintentarDespuesSegundos());
+        verify(bitacoraEstadosService).registrar(eq(transaccion), eq(TransaccionService.ESTADO_ERROR), anyString());
+        verify(cupo).close();
+    }
+
+    @Test
+    void procesarDebito_timeoutTrasEnviarlo_programaElReverso() {
+        transaccion.setId(1L);
+        when(limitadorCoreBancario.ejecutar(eq(LimitadorCoreBancarioService.Operacion.DEBITO), any()))
+                .thenThrow(new ClienteRemotoException("banco-service", CategoriaErrorCliente.TIMEOUT, -1,
+                        "Read timed out", null));
+
+        assertThrows(TransaccionRechazadaException.class, () -> ReflectionTestUtils.invokeMethod(
+                transaccionService, "procesarDebitoTarjeta", transaccion, new ResultadoProcesamiento(transaccion)));
+
+        // El core pudo haber aplicado el débito: se reversa en lugar de quedar en ERR
+        verify(colaReversosService).encolar(eq(transaccion), any(), any());
+        assertEquals(TransaccionService.ESTADO_PROCESO_REVERSO, transaccion.getEstado());
+        verify(bitacoraEstadosService, never()).registrar(any(), eq(TransaccionService.ESTADO_ERROR), anyString());
+    }
+
+    @Test
+    void procesarDebito_noEnviado_quedaEnErrorSinReverso() {
+        transaccion.setId(1L);
+        when(limitadorCoreBancario.ejecutar(eq(LimitadorCoreBancarioService.Operacion.DEBITO), any()))
+                .thenThrow(new ClienteRemotoException("banco-service", CategoriaErrorCliente.CIRCUITO_ABIERTO, -1,
+                        "Circuito abierto", null));
+
+        assertThrows(TransaccionRechazadaException.class, () -> ReflectionTestUtils.invokeMethod(
+                transaccionService, "procesarDebitoTarjeta", transaccion, new ResultadoProcesamiento(transaccion)));
+
+        verifyNoInteractions(colaReversosService);
+        assertEquals(TransaccionService.ESTADO_ERROR, transaccion.getEstado());
+    }
+
     @Test
     void findAll_retornaListaTransacciones() {
         List<Transaccion> transacciones = Arrays.asList(
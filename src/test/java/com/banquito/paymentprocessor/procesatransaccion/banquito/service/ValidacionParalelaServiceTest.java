@@ -0,0 +1,154 @@
+package com.banquito.paymentprocessor.procesatransaccion.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.FraudeClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.MarcaClient;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionFraudeResponse;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.client.dto.ValidacionMarcaResponse;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.model.Transaccion;
+import com.banquito.paymentprocessor.procesatransaccion.banquito.service.dto.ResultadoValidacion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class ValidacionParalelaServiceTest {
+
+    @Mock
+    private MarcaClient marcaClient;
+
+    @Mock
+    private FraudeClient fraudeClient;
+
+    private ExecutorService executor;
+    private ValidacionParalelaService validacionParalelaService;
+    private Transaccion transaccion;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        validacionParalelaService = new ValidacionParalelaService(marcaClient, fraudeClient,
+                new CoberturaMarcaService(executor, new SimpleMeterRegistry()), executor);
+
+        transaccion = new Transaccion("TRX1234567");
+        transaccion.setNumeroTarjeta("4532123456789012");
+        transaccion.setCvv("123");
+        transaccion.setFechaCaducidad("12/25");
+        transaccion.setMonto(new BigDecimal("100.50"));
+        transaccion.setCodigoUnico("UNICO-001");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void validar_ambasAprobadas_retornaSwiftDeMarca() {
+        when(marcaClient.validarTarjeta(any())).thenReturn(marcaValida());
+        when(fraudeClient.validarTransaccion(any())).thenReturn(fraude(false));
+
+        ResultadoValidacion resultado = validacionParalelaService.validar(transaccion);
+
+        assertTrue(resultado.isAprobada());
+        assertEquals("BANKEC21XXX", resultado.getSwiftBanco());
+    }
+
+    @Test
+    void validar_rechazoMarcaPrevaleceSobreFraude() {
+        when(marcaClient.validarTarjeta(any())).thenReturn(marcaInvalida());
+        lenient().when(fraudeClient.validarTransaccion(any())).thenReturn(fraude(true));
+
+        ResultadoValidacion resultado = validacionParalelaService.validar(transaccion);
+
+        assertEquals(TransaccionService.ESTADO_RECHAZADA, resultado.getEstado());
+        assertEquals(ResultadoValidacion.ORIGEN_MARCA, resultado.getOrigen());
+    }
+
+    @Test
+    void validar_fraudePrevaleceSobreErrorDeMarca() {
+        when(marcaClient.validarTarjeta(any())).thenThrow(new RuntimeException("Connection refused"));
+        when(fraudeClient.validarTransaccion(any())).thenReturn(fraude(true));
+
+        ResultadoValidacion resultado = validacionParalelaService.validar(transaccion);
+
+        assertEquals(TransaccionService.ESTADO_FRAUDE, resultado.getEstado());
+        assertTrue(resultado.getMensajeRechazo().startsWith("Transacción rechazada por posible fraude"));
+    }
+
+    @Test
+    void validar_errorDeFraudeConMarcaAprobada_retornaError() {
+        when(marcaClient.validarTarjeta(any())).thenReturn(marcaValida());
+        when(fraudeClient.validarTransaccion(any())).thenReturn(null);
+
+        ResultadoValidacion resultado = validacionParalelaService.validar(transaccion);
+
+        assertEquals(TransaccionService.ESTADO_ERROR, resultado.getEstado());
+        assertEquals(ResultadoValidacion.ORIGEN_FRAUDE, resultado.getOrigen());
+    }
+
+    @Test
+    void validar_rechazoMarcaCancelaFraudePendiente() throws Exception {
+        CountDownLatch fraudeIniciado = new CountDownLatch(1);
+        CountDownLatch fraudeInterrumpido = new CountDownLatch(1);
+        when(marcaClient.validarTarjeta(any())).thenAnswer(invocation -> {
+            fraudeIniciado.await(5, TimeUnit.SECONDS);
+            return marcaInvalida();
+        });
+        when(fraudeClient.validarTransaccion(any())).thenAnswer(invocation -> {
+            fraudeIniciado.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                fraudeInterrumpido.countDown();
+                throw e;
+            }
+            return fraude(false);
+        });
+
+        long inicio = System.nanoTime();
+        ResultadoValidacion resultado = validacionParalelaService.validar(transaccion);
+        long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertEquals(TransaccionService.ESTADO_RECHAZADA, resultado.getEstado());
+        assertTrue(duracionMs < 5_000, "No debe esperar a la consulta de fraude");
+        assertTrue(fraudeInterrumpido.await(5, TimeUnit.SECONDS));
+    }
+
+    private ValidacionMarcaResponse marcaValida() {
+        ValidacionMarcaResponse response = new ValidacionMarcaResponse();
+        response.setTarjetaValida(true);
+        response.setSwiftBanco("BANKEC21XXX");
+        return response;
+    }
+
+    private ValidacionMarcaResponse marcaInvalida() {
+        ValidacionMarcaResponse response = new ValidacionMarcaResponse();
+        response.setTarjetaValida(false);
+        response.setMensaje("Fondos insuficientes");
+        return response;
+    }
+
+    private ValidacionFraudeResponse fraude(boolean esFraude) {
+        ValidacionFraudeResponse response = new ValidacionFraudeResponse();
+        response.setEsFraude(esFraude);
+        response.setCodigoRegla(esFraude ? "REGLA001" : "VALIDA");
+        response.setMensaje(esFraude ? "Posible fraude detectado" : "Transacción válida");
+        return response;
+    }
+}